@@ -0,0 +1,299 @@
+/**
+ * The class which holds a game shared by many players, for
+ * GameServer.class. Every player has their own ship, laser and
+ * collision detector (which holds their explosion and how long their
+ * ship is immune for), and all the players share one field of
+ * asteroids which levels up when they have all been destroyed.
+ * Like World.class, the arena is advanced one tick at a time and
+ * contains no AWT, OpenGL or networking code.
+ *
+ * A ship which is destroyed explodes, then starts again in the centre
+ * of the screen, keeping its score. There is no enemy ship or power
+ * up in the arena.
+ */
+
+public class Arena {
+
+    /**
+     * The random source every random choice in the arena is taken
+     * from.
+     */
+    private RandomSource random;
+
+    /**
+     * A ship which is never moved, in the centre of the screen, so
+     * that each level's asteroids are placed away from the centre,
+     * where ships start.
+     */
+    private SpaceShip centre = new SpaceShip(150.0, 150.0);
+
+    /**
+     * The game which holds the asteroids shared by every player.
+     */
+    private Game game;
+
+    /**
+     * The players in the arena. Only the first count are in use.
+     */
+    private Player[] players = new Player[16];
+    private int count;
+
+    /**
+     * The id the next player to join will be given.
+     */
+    private int nextId;
+
+    /**
+     * The number of ticks the arena has been advanced by.
+     */
+    private long tick;
+
+    /**
+     * Constructor for an arena.
+     * @param a long holding the seed.
+     */
+    public Arena(long seed) {
+		this.random = new RandomSource(seed);
+		this.game = new Game(centre, new CollisionDetector(), random);
+    }
+
+    /**
+     * Method to add a new player, whose ship starts in the centre of
+     * the screen.
+     * @return the player.
+     */
+    public Player join() {
+		if (this.count == this.players.length) {
+			Player[] larger = new Player[2 * this.count];
+			System.arraycopy(this.players, 0, larger, 0, this.count);
+			this.players = larger;
+		}
+		Player player = new Player(this.nextId++);
+		this.players[this.count++] = player;
+		return player;
+    }
+
+    /**
+     * Method to remove a player from the arena.
+     * @param the player.
+     */
+    public void leave(Player player) {
+		for (int i = 0; i < this.count; i++) {
+			if (this.players[i] == player) {
+				// Keep the players in the order they joined
+				System.arraycopy(this.players, i + 1, this.players, i, this.count - i - 1);
+				this.players[--this.count] = null;
+				return;
+			}
+		}
+    }
+
+    /**
+     * Method to advance the arena by one tick, using the controls
+     * each player has sent since the last tick. Moves every object,
+     * checks for collisions and levels up when all asteroids have
+     * been destroyed.
+     */
+    public void step() {
+		this.tick++;
+		for (int i = 0; i < this.count; i++) {
+			Player player = this.players[i];
+			SpaceShip ship = player.ship;
+			if (ship.getExists()) {
+				World.applyControls(ship, player.laser, random, player.held | player.pressed);
+				ship.updateXLocation();
+				ship.updateYLocation();
+				ship.updateRotation();
+				player.shieldTimer = World.updateShield(ship, player.shieldTimer);
+				player.hyperspace = ship.getHyperspace();
+				if (player.laser.getExists()) {
+					player.laser.updateXLocation();
+					player.laser.updateYLocation();
+					player.laser.setExists(player.laser.checkDistance());
+				}
+			}
+			else { // Ship has been destroyed
+				player.cd.startExplosion(ship.getXLocation(), ship.getYLocation(), 3);
+				player.cd.updateExplosion();
+				// Start again once the explosion has finished
+				if (!player.cd.getExplosionExist()) {
+					player.respawn();
+				}
+			}
+			// Presses only act on the tick they were picked up by
+			player.pressed = 0;
+		}
+		// Move the asteroids once, then check every ship against them
+		game.getAsteroids().update();
+		for (int i = 0; i < this.count; i++) {
+			Player player = this.players[i];
+			if (player.ship.getExists()) {
+				player.cd.checkCollisions(player.ship, player.laser, game);
+				player.cd.updateExplosion();
+			}
+			if (player.cd.getShockWaveExist()) {
+				player.cd.updateShockWave();
+				if (!player.cd.getShockWaveExist()) {
+					player.laser.setExists(false);
+				}
+			}
+		}
+		game.checkLevel();
+    }
+
+    /**
+     * Accessor method to get the number of players in the arena.
+     * @return an int holding the number of players.
+     */
+    public int getPlayerCount() {
+		return this.count;
+    }
+
+    /**
+     * Accessor method to get a player.
+     * @param an int holding the index of the player, in the order
+     * the players joined.
+     * @return the player.
+     */
+    public Player getPlayer(int i) {
+		return this.players[i];
+    }
+
+    /**
+     * Accessor method to get the game which holds the asteroids.
+     * @return the game.
+     */
+    public Game getGame() {
+		return this.game;
+    }
+
+    /**
+     * Accessor method to get the number of ticks the arena has been
+     * advanced by.
+     * @return a long holding the number of ticks.
+     */
+    public long getTick() {
+		return this.tick;
+    }
+
+    /**
+     * The class which holds one player's ship, laser and controls.
+     */
+    public static class Player {
+
+		/**
+		 * The id of the player, which is never reused in an arena.
+		 */
+		private int id;
+
+		/**
+		 * The player's ship, laser and collision detector.
+		 */
+		private SpaceShip ship = new SpaceShip(150.0, 150.0);
+		private Laser laser = new Laser(0.0, 0.0);
+		private CollisionDetector cd = new CollisionDetector();
+
+		/**
+		 * Counts the ticks the shield has been shown for since the
+		 * ship was last hit.
+		 */
+		private int shieldTimer;
+
+		/**
+		 * Flag indicating whether the ship was in hyperspace during
+		 * the last tick.
+		 */
+		private boolean hyperspace;
+
+		/**
+		 * The control bits held down, and those pressed since the
+		 * last tick.
+		 */
+		private int held;
+		private int pressed;
+
+		/**
+		 * Constructor for a player.
+		 * @param an int holding the id of the player.
+		 */
+		Player(int id) {
+			this.id = id;
+			this.laser.setExists(false);
+		}
+
+		/**
+		 * Method to take the controls sent by the player. LEFT, RIGHT
+		 * and UP are held until controls are next sent. FIRE, BRAKE
+		 * and TELEPORT act once, on the next tick.
+		 * @param an int holding the control bits.
+		 */
+		public void input(int controls) {
+			this.held = controls & (World.LEFT | World.RIGHT | World.UP);
+			this.pressed |= controls & (World.FIRE | World.BRAKE | World.TELEPORT);
+		}
+
+		/**
+		 * Method to start the player again in the centre of the
+		 * screen with a new ship, keeping their score.
+		 */
+		void respawn() {
+			int score = this.ship.getScore();
+			this.ship = new SpaceShip(150.0, 150.0);
+			this.ship.setScore(score);
+			this.laser.setExists(false);
+			this.cd = new CollisionDetector();
+			this.shieldTimer = 0;
+			this.hyperspace = false;
+		}
+
+		/**
+		 * Accessor method to get the id of the player.
+		 * @return an int holding the id.
+		 */
+		public int getId() {
+			return this.id;
+		}
+
+		/**
+		 * Accessor method to get the player's ship.
+		 * @return the ship.
+		 */
+		public SpaceShip getShip() {
+			return this.ship;
+		}
+
+		/**
+		 * Accessor method to get the player's laser.
+		 * @return the laser.
+		 */
+		public Laser getLaser() {
+			return this.laser;
+		}
+
+		/**
+		 * Accessor method to get the player's collision detector.
+		 * @return the collision detector.
+		 */
+		public CollisionDetector getCollisionDetector() {
+			return this.cd;
+		}
+
+		/**
+		 * Accessor method to get the number of ticks the shield has
+		 * been shown for since the ship was last hit.
+		 * @return an int holding the number of ticks.
+		 */
+		public int getShieldTimer() {
+			return this.shieldTimer;
+		}
+
+		/**
+		 * Accessor method to get the flag indicating whether the ship
+		 * was in hyperspace during the last tick.
+		 * @return the flag indicating hyperspace.
+		 */
+		public boolean getHyperspace() {
+			return this.hyperspace;
+		}
+    }
+}
@@ -17,6 +17,8 @@
 import java.applet.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Import OpenGL Java binding libraries
@@ -25,7 +27,6 @@ import gl4java.GLContext;
 import gl4java.awt.GLAnimCanvas;
 import gl4java.utils.glut.*;
 import gl4java.utils.glut.fonts.*;
-import gl4java.utils.textures.*;
 
 /**
  * The main class which renders the various objects on screen and
@@ -38,63 +39,25 @@ public class AstApplication extends Applet {
     private double PI = 3.1415926535;
 
     /**
-     * Declare and instantiate the goodie ship object. Starting
-     * position is centre of screen.
+     * Declare and instantiate the world, which holds the state of
+     * the game and is stepped at a fixed rate on its own thread.
      */
-    private SpaceShip ship = new SpaceShip(150.0, 150.0);
+    private World world = new World();
+    private Game game = world.getGame();
 
     /**
-     * Declare and instantiate the baddie ship. Baddie ship appears
-     * at random times.
+     * The buffer the world's thread publishes a frame to after each
+     * tick, and the canvas takes the latest frame from to draw. The
+     * canvas never reads the world itself.
      */
-    private EnemyShip baddie = new EnemyShip();
+    private RenderBuffer _frames = new RenderBuffer();
 
     /**
-     * Declare and instantiate power up object. Power up object
-     * appears at random times and takes different forms.
+     * The thread which advances the world, and the flag which tells it
+     * to keep running.
      */
-    private PowerUp p = new PowerUp();
-
-    /**
-     * Declare and instantiate collision detector, which is polled
-     * to check for relevant object collisions.
-     */
-    private CollisionDetector cd = new CollisionDetector();
-
-    /**
-     * Declare and instantiate laser object which appears when the
-     * goodie ship fires.
-     */
-    private Laser goodieLaser = new Laser(0.0, 0.0);
-
-    /**
-     * Declare and instantiate baddie laser object which appears when
-     * the baddie ship fires.
-     */
-    private Laser baddieLaser = new Laser(0.0, 0.0);
-
-    /**
-     * Create the game object which creates the asteroids at the
-     * beginning of each level, and also manages the appearance
-     * of random space objects.
-     */
-    private Game game = new Game(ship, cd);
-
-    /**
-     * Float to hold the amount of red to display in glColor commands.
-     * Useful if this value needs to be updated during runtime.
-     */
-    private float _red = 1.0f;
-
-    /**
-     * Float to hold the amount of green to display in glColor commands.
-     */
-    private float _green = 1.0f;
-
-    /**
-     * Float to hold the amount of blue to display in glColor commands.
-     */
-    private float _blue = 1.0f;
+    private Thread _simulation;
+    private volatile boolean _running;
 
     /**
      * Int to hold the current level the player has reached.
@@ -102,22 +65,22 @@ public class AstApplication extends Applet {
     private int _level = game.getLevel();
 
     /**
-     * Int to hold the size of the blast radius when an object is
-     * destroyed.
+     * String to hold the name of the background texture of the level.
      */
-    private int _blastRadius;
+    private String _background = game.getBackground();
 
     /**
-     * Int to hold the size of the waves emitted when the ship is
-     * in hyperspace mode. (Powerup)
+     * The queue which passes key presses and releases from the AWT
+     * event thread to the thread which steps the world.
      */
-    private int _hyperRadius;
+    private InputQueue _input = new InputQueue(256, World.LEFT | World.RIGHT | World.UP);
 
     /**
-     * Int to hold the size of the shock wave when the ship has
-     * seismic lasers. (Powerup)
+     * The recorder which keeps the controls of every tick, so the
+     * game can be replayed by Replay.class.
      */
-    private int _shockRadius;
+    private InputRecorder _recorder = new InputRecorder(world.getSeed());
+
 
     /**
      * Standard init() routine for getting things going.
@@ -131,6 +94,7 @@ public class AstApplication extends Applet {
 
     // Now simply start the canvas going
     public void start() {
+        startSimulation();
         // Start animating the canvas
         canvas.start();
     }
@@ -139,6 +103,93 @@ public class AstApplication extends Applet {
     public void stop() {
         // Stop animating the canvas
         canvas.stop();
+        stopSimulation();
+        saveRecording();
+    }
+
+    /**
+     * Method to start the thread which advances the world, after
+     * publishing the world as it is so the canvas has a frame to draw.
+     */
+    private void startSimulation() {
+        if (_simulation != null) {
+            return;
+        }
+        _frames.publish(world);
+        _running = true;
+        _simulation = new Thread(this::runSimulation, "Simulation");
+        _simulation.setDaemon(true);
+        _simulation.start();
+    }
+
+    /**
+     * Method to stop the thread which advances the world, and wait for
+     * it to finish its tick.
+     */
+    private void stopSimulation() {
+        _running = false;
+        if ((_simulation != null) && (_simulation != Thread.currentThread())) {
+            try {
+                _simulation.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        _simulation = null;
+    }
+
+    /**
+     * Method run by the simulation thread. Steps the world once for
+     * every tick which passes, so the speed of the game does not
+     * depend on the frame rate, and publishes a frame after each.
+     * Never waits for the canvas, so a slow draw never holds up the
+     * game. Stops when the game is over.
+     */
+    private void runSimulation() {
+        long next = System.nanoTime();
+        while (_running && !world.getGameOver()) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+            // Don't try to catch up on more than a few ticks after a stall
+            if (now - next > 5 * World.TICK_NANOS) {
+                next = now - 5 * World.TICK_NANOS;
+            }
+            int controls = _input.drain();
+            _recorder.record(controls);
+            world.step(controls);
+            _frames.publish(world);
+            next += World.TICK_NANOS;
+        }
+    }
+
+    /**
+     * Accessor method to get the queue of key events, which counts how
+     * many have been taken and how long they waited for the tick which
+     * acted on them.
+     * @return the queue.
+     */
+    public InputQueue getInput() {
+        return _input;
+    }
+
+    /**
+     * Method to save the recording of the game so far, if the system
+     * property asteroids.record holds the name of a file to save it to.
+     */
+    private void saveRecording() {
+        String file = System.getProperty("asteroids.record");
+        if (file != null) {
+            try {
+                _recorder.save(file);
+            }
+            catch (IOException e) {
+                System.err.println("Could not save recording to " + file + ": " + e);
+            }
+        }
     }
 
     // Destroy the applet, the last thing to do
@@ -152,77 +203,122 @@ public class AstApplication extends Applet {
 	private class renderCanvas extends GLAnimCanvas implements KeyListener {
 		GLUTFunc glut = null;
 
+		/*
+		* Keeps every texture uploaded, so that changing level does
+		* not load the background again.
+		*/
+		private TextureCache textures;
+
 		/*
 		* Storage for current background texture.
 		*/
-		private final int[] texture = new int[1];
+		private int texture;
 
 		/*
 		* Storage for the asteroid texture.
 		*/
-		private final int[] asteroidTex = new int[1];
+		private int asteroidTex;
+
+		/*
+		* The number of the background to load before it is needed,
+		* on the frame after the level changes, or 0 if there is none.
+		*/
+		private int preload;
+
+		/*
+		* The frame being drawn, taken from the render buffer at the
+		* start of each call to display().
+		*/
+		private RenderFrame frame;
+
+		/*
+		* How far between the tick before the frame and the frame
+		* itself objects are drawn, so that objects move smoothly at
+		* any frame rate.
+		*/
+		private double alpha;
+
+		/*
+		* Times each phase of drawing a frame, if profiling is enabled.
+		*/
+		private TickProfiler.Timer timer = new TickProfiler.Timer(TickProfiler.FRAMES);
+
+		/*
+		* Statistics shown by the overlay, the lines of text it draws,
+		* and the flag which shows it. The overlay is toggled with F3,
+		* or shown from the start if the system property asteroids.hud
+		* is true.
+		*/
+		private FrameStats stats;
+		private HudLine[] overlayLines = {
+			new HudLine(64), new HudLine(64), new HudLine(64), new HudLine(64), new HudLine(64),
+			new HudLine(64)
+		};
+		private volatile boolean showOverlay = Boolean.getBoolean("asteroids.hud");
+
+		/*
+		* Draws text from cached display lists, and the lines of play
+		* information drawn over the game. Each line is only rebuilt
+		* when its value changes.
+		*/
+		private HudText hudText;
+
+		/*
+		* Collects the asteroids, circles and lasers of each frame so
+		* they are drawn together at the end, and draws them.
+		*/
+		private DrawBatch batch = new DrawBatch(4096);
+		private DrawBackend backend;
+
+		/*
+		* Every change of colour, texture or texturing the canvas makes
+		* goes through this, which drops those that change nothing.
+		*/
+		private GLStateCache state;
+		private HudLine brakesLine = new HudLine(32);
+		private HudLine scoreLine = new HudLine(32);
+		private HudLine shieldsLine = new HudLine(32);
+		private HudLine creditLine = new HudLine(32).append("Dan Coupar 2003");
+		private HudLine gameOverLine = new HudLine(32).append("G  A  M  E    O  V  E  R  !");
 
 		public renderCanvas(int w, int h) {
 			super(w, h);
-			setAnimateFps(30);
+			// Objects are interpolated between ticks, so the canvas can
+			// be drawn at any rate without changing the speed of the game.
+			int fps = Integer.getInteger("asteroids.fps", 60).intValue();
+			setAnimateFps(fps);
+			stats = new FrameStats(1000000000L / fps);
 			addKeyListener(this);
 		}
 
 		public void keyPressed(KeyEvent e) {
 			switch (e.getKeyCode()) {
 				// Rotate ship right
-				case KeyEvent.VK_RIGHT: // Check up key is not being pressed
-					if (!ship.getAccelerating()) {
-						ship.setRotateDirection(1);
-					}					
+				case KeyEvent.VK_RIGHT: _input.press(World.RIGHT);
 					break;
 
 				// Rotate ship left
-				case KeyEvent.VK_LEFT: // Check up key is not being pressed
-					if (!ship.getAccelerating()) {
-						ship.setRotateDirection(-1);
-					}
+				case KeyEvent.VK_LEFT: _input.press(World.LEFT);
 					break;
 
 				// Move ship forward
-				case KeyEvent.VK_UP: // Check left or right keys are not being pressed
-					if (ship.getRotateDirection() == 0) {
-						ship.setAccelerating(true);
-					}
+				case KeyEvent.VK_UP: _input.press(World.UP);
 					break;
 
 				// Fire laser
-				case KeyEvent.VK_SPACE: // Check laser is not already being fired
-					if (!goodieLaser.getExist()) {
-						goodieLaser.setExist(true);
-
-						// Point laser in direction of ship
-						goodieLaser.setRotation(ship.getRotation());
-						goodieLaser.laserFire(ship.getXLocation(), ship.getYLocation());
-
-						if (ship.getLaserUpgraded()) {
-							// Reduce number of seismic lasers remaining
-							ship.setShotsRemaining(ship.getShotsRemaining() - 1);
-						}
-					}
+				case KeyEvent.VK_SPACE: _input.press(World.FIRE);
 					break;
 
-				case KeyEvent.VK_B:
-					if (ship.getBrakesUsed() < 2) {			
-						// Avoids wasting emergency brake if ship is not moving
-						if (ship.getXVelocity() == 0 && ship.getYVelocity() != 0) {
-							// Stop ship dead
-							ship.setXVelocity(0);
-							ship.setYVelocity(0);
-							ship.setBrakesUsed(ship.getBrakesUsed()+1);
-						}
-					}
+				// Emergency brake
+				case KeyEvent.VK_B: _input.press(World.BRAKE);
 					break;
 
-				case KeyEvent.VK_C: ship.setXLocation(300* Math.random());
-					ship.setYLocation(300* Math.random());
-					ship.setXVelocity(0);
-					ship.setYVelocity(0);
+				// Teleport ship
+				case KeyEvent.VK_C: _input.press(World.TELEPORT);
+					break;
+
+				// Show or hide the frame time overlay
+				case KeyEvent.VK_F3: showOverlay = !showOverlay;
 					break;
 			}	    
 		}
@@ -232,51 +328,58 @@ public class AstApplication extends Applet {
 		public void keyReleased(KeyEvent e) {
 			switch (e.getKeyCode()) {
 				// Stop rotating when the key is released
-				case KeyEvent.VK_RIGHT: ship.setRotateDirection(0);
+				case KeyEvent.VK_RIGHT: _input.release(World.RIGHT);
 					break;
 
 				// Stop rotating when the key is released
-				case KeyEvent.VK_LEFT: ship.setRotateDirection(0);
+				case KeyEvent.VK_LEFT: _input.release(World.LEFT);
 					break;
 
 				// Stop accelerating when the key is released
-				case KeyEvent.VK_UP: ship.setAccelerating(false);
+				case KeyEvent.VK_UP: _input.release(World.UP);
+					break;
+
+				// Fire, brake and teleport act once for each press
+				case KeyEvent.VK_SPACE: _input.release(World.FIRE);
+					break;
+
+				case KeyEvent.VK_B: _input.release(World.BRAKE);
+					break;
+
+				case KeyEvent.VK_C: _input.release(World.TELEPORT);
 					break;
 			}
 		}
 
 		/**
 		* Method to load textures. Is called at startup and if the next
-		* level is reached.
+		* level is reached. Textures already resident in the cache are
+		* used without loading them again.
+		* @param a String holding the name of the background texture.
 		*/
-		public void loadGLTextures() {
-			// Get current background texture
-			String background = game.getBackground();
-
-			// Texture loader object for the backgound texture.
-			PngTextureLoader texLoader = new PngTextureLoader(gl, glu);
-			texLoader.readTexture(getCodeBase(), background);
-
-			if (texLoader.isOk())  {
-				// Create background texture
-				gl.glGenTextures(1, texture);
-				gl.glBindTexture(GL_TEXTURE_2D, texture[0]);
-				gl.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER,GL_LINEAR);
-				gl.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-				gl.glTexImage2D( GL_TEXTURE_2D, 0, 3, texLoader.getImageWidth(), texLoader.getImageHeight(), 0, GL_RGB, GL_UNSIGNED_BYTE, texLoader.getTexture());
+		public void loadGLTextures(String background) {
+			long start = System.nanoTime();
+			long loads = textures.getMisses();
+			// The asteroid texture is used on every level, so is kept
+			asteroidTex = textures.pin("asteroid.png");
+			texture = textures.get(background);
+			if (textures.getMisses() != loads) {
+				stats.textureLoad(System.nanoTime() - start);
 			}
+		}
 
-			// Texture loader object for the asteroid texture.
-			PngTextureLoader astTexLoader = new PngTextureLoader(gl, glu);
-			astTexLoader.readTexture(getCodeBase(), "asteroid.png");
-
-			if (astTexLoader.isOk()) {
-				//create asteroid texture
-				gl.glGenTextures(1, asteroidTex);
-				gl.glBindTexture(GL_TEXTURE_2D, asteroidTex[0]);
-				gl.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER,GL_LINEAR);
-				gl.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-				gl.glTexImage2D( GL_TEXTURE_2D, 0, 3, astTexLoader.getImageWidth(), astTexLoader.getImageHeight(), 0, GL_RGB, GL_UNSIGNED_BYTE, astTexLoader.getTexture());
+		/**
+		* Method to load backgrounds before they are needed, in turn
+		* from the one given, until they are all resident or the cache
+		* has no more room.
+		* @param an int holding the number of the first background.
+		*/
+		public void preloadBackgrounds(int first) {
+			for (int n = 0; n < Game.BACKGROUNDS; n++) {
+				int number = (first - 1 + n) % Game.BACKGROUNDS + 1;
+				if (!textures.preload(Game.getBackground(number))) {
+					break;
+				}
 			}
 		}
 
@@ -285,8 +388,8 @@ public class AstApplication extends Applet {
 		* screen.
 		*/
 		public void renderBackgroundTexture() { 
-			gl.glBindTexture(GL_TEXTURE_2D, texture[0]);
-			gl.glEnable(GL_TEXTURE_2D);
+			state.bindTexture(texture);
+			state.enable(GL_TEXTURE_2D);
 			gl.glBegin(GL_QUADS);
 			gl.glTexCoord2f(0.0f, 0.0f);
 			gl.glVertex3f(0.0f, 0.0f, -1f); // bottom left
@@ -297,7 +400,7 @@ public class AstApplication extends Applet {
 			gl.glTexCoord2f(0.0f, 1.0f);
 			gl.glVertex3f(0.0f, 300.0f, -1f); // top left
 			gl.glEnd();
-			gl.glDisable(GL_TEXTURE_2D);
+			state.disable(GL_TEXTURE_2D);
 		}
 
 		/**
@@ -307,40 +410,7 @@ public class AstApplication extends Applet {
 		* @param a double holding the radius of the circle.
 		*/
 		public void renderCircle(double x, double y, double radius) {
-			gl.glBegin(GL_LINES);
-			gl.glVertex2d(x + (radius * 1.2d), y + (radius * 0.15d));
-			gl.glVertex2d(x + (radius * 1.05d), y + (radius * 0.6d));
-			gl.glVertex2d(x + (radius * 1.05d), y + (radius * 0.6d));
-			gl.glVertex2d(x + (radius * 0.6d), y + (radius * 1.05d));
-			gl.glVertex2d(x + (radius * 0.6d), y + (radius * 1.05d));
-			gl.glVertex2d(x + (radius * 0.15d), y + (radius * 1.2d));
-			gl.glVertex2d(x + (radius * 0.15d), y + (radius * 1.2d));
-			gl.glVertex2d(x - (radius * 0.15d), y + (radius * 1.2d));
-			gl.glVertex2d(x - (radius * 0.15d), y + (radius * 1.2d));
-			gl.glVertex2d(x - (radius * 0.6d), y + (radius * 1.05d));
-			gl.glVertex2d(x - (radius * 0.6d), y + (radius * 1.05d));
-			gl.glVertex2d(x - (radius * 1.05d), y + (radius * 0.6d));
-			gl.glVertex2d(x - (radius * 1.05d), y + (radius * 0.6d));
-			gl.glVertex2d(x - (radius * 1.2d), y + (radius * 0.15d));
-			gl.glVertex2d(x - (radius * 1.2d), y + (radius * 0.15d));
-			gl.glVertex2d(x - (radius * 1.2d), y - (radius * 0.15d));
-			gl.glVertex2d(x - (radius * 1.2d), y - (radius * 0.15d));
-			gl.glVertex2d(x - (radius * 1.05d), y - (radius * 0.6d));
-			gl.glVertex2d(x - (radius * 1.05d), y - (radius * 0.6d));
-			gl.glVertex2d(x - (radius * 0.6d), y - (radius * 1.05d));
-			gl.glVertex2d(x - (radius * 0.6d), y - (radius * 1.05d));
-			gl.glVertex2d(x - (radius * 0.15d), y - (radius * 1.2d));
-			gl.glVertex2d(x - (radius * 0.15d), y - (radius * 1.2d));
-			gl.glVertex2d(x + (radius * 0.15d), y - (radius * 1.2d));
-			gl.glVertex2d(x + (radius * 0.15d), y - (radius * 1.2d));
-			gl.glVertex2d(x + (radius * 0.6d), y - (radius * 1.05d));
-			gl.glVertex2d(x + (radius * 0.6d), y - (radius * 1.05d));
-			gl.glVertex2d(x + (radius * 1.05d), y - (radius * 0.6d));
-			gl.glVertex2d(x + (radius * 1.05d), y - (radius * 0.6d));
-			gl.glVertex2d(x + (radius * 1.2d), y - (radius * 0.15d));
-			gl.glVertex2d(x + (radius * 1.2d), y - (radius * 0.15d));
-			gl.glVertex2d(x + (radius * 1.2d), y + (radius * 0.15d));
-			gl.glEnd();
+			batch.circle(x, y, radius);
 		}
 
 		/**
@@ -350,35 +420,18 @@ public class AstApplication extends Applet {
 		* @param a double holding the radius of the circle.
 		*/
 		public void renderFilledCircle(double x, double y, double radius) {
-			gl.glBegin(GL_POLYGON);
-			gl.glVertex2d(x + (radius) * 1.2d, y + (radius) * 0.15d);
-			gl.glVertex2d(x + (radius) * 1.05d, y + (radius) * 0.6d);
-			gl.glVertex2d(x + (radius) * 0.6d, y + (radius) * 1.05d);
-			gl.glVertex2d(x + (radius) * 0.15d, y + (radius) * 1.2d);
-			gl.glVertex2d(x - (radius) * 0.15d, y + (radius) * 1.2d);
-			gl.glVertex2d(x - (radius) * 0.6d, y + (radius) * 1.05d);
-			gl.glVertex2d(x - (radius) * 1.05d, y + (radius) * 0.6d);
-			gl.glVertex2d(x - (radius) * 1.2d, y + (radius) * 0.15d);	
-			gl.glVertex2d(x - (radius) * 1.2d, y - (radius) * 0.15d);
-			gl.glVertex2d(x - (radius) * 1.05d, y - (radius) * 0.6d);
-			gl.glVertex2d(x - (radius) * 0.6d, y - (radius) * 1.05d);
-			gl.glVertex2d(x - (radius) * 0.15d, y - (radius) * 1.2d);
-			gl.glVertex2d(x + (radius) * 0.15d, y - (radius) * 1.2d);
-			gl.glVertex2d(x + (radius) * 0.6d, y - (radius) * 1.05d);
-			gl.glVertex2d(x + (radius) * 1.05d, y - (radius) * 0.6d);
-			gl.glVertex2d(x + (radius) * 1.2d, y - (radius) * 0.15d);
-			gl.glEnd();
+			batch.filledCircle(x, y, radius);
 		}
 
 		/**
 		* Method to render the goodie spaceship.
 		*/
 		public void renderSpaceShip() {
-			double x = ship.getXLocation();
-			double y = ship.getYLocation();
+			double x = frame.getXLocation(RenderFrame.SHIP, alpha);
+			double y = frame.getYLocation(RenderFrame.SHIP, alpha);
 
 			gl.glBegin(GL_POLYGON);
-			gl.glColor3f(1.0f, 0.0f, 0.0f);
+			state.color3f(1.0f, 0.0f, 0.0f);
 			gl.glVertex2d(x - 4, y - 7);
 			gl.glVertex2d(x - 3, y - 7);
 			gl.glVertex2d(x - 3, y - 5);
@@ -386,7 +439,7 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 
 			gl.glBegin(GL_POLYGON);	    
-			gl.glColor3f(0.8f, 0.0f, 0.0f);
+			state.color3f(0.8f, 0.0f, 0.0f);
 			gl.glVertex2d(x - 3, y - 7);
 			gl.glVertex2d(x - 1, y - 7);
 			gl.glVertex2d(x - 1, y - 5);
@@ -394,7 +447,7 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 
 			gl.glBegin(GL_POLYGON);
-			gl.glColor3f(0.6f, 0.0f, 0.0f);
+			state.color3f(0.6f, 0.0f, 0.0f);
 			gl.glVertex2d(x - 1, y - 7);
 			gl.glVertex2d(x + 1, y - 7);
 			gl.glVertex2d(x + 1, y - 5);
@@ -402,7 +455,7 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 
 			gl.glBegin(GL_POLYGON);
-			gl.glColor3f(0.8f, 0.0f, 0.0f);
+			state.color3f(0.8f, 0.0f, 0.0f);
 			gl.glVertex2d(x + 1, y - 7);
 			gl.glVertex2d(x + 3, y - 7);
 			gl.glVertex2d(x + 3, y - 5);
@@ -410,7 +463,7 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 
 			gl.glBegin(GL_POLYGON);
-			gl.glColor3f(1.0f, 0.0f, 0.0f);
+			state.color3f(1.0f, 0.0f, 0.0f);
 			gl.glVertex2d(x + 3, y - 7);
 			gl.glVertex2d(x + 4, y - 7);
 			gl.glVertex2d(x + 4, y - 5);
@@ -418,7 +471,7 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 		
 			gl.glBegin(GL_POLYGON);
-			gl.glColor3f(1.0f, 0.7f, 0.6f);
+			state.color3f(1.0f, 0.7f, 0.6f);
 			gl.glVertex2d(x - 3, y - 7);
 			gl.glVertex2d(x - 3.5d, y - 8);
 			gl.glVertex2d(x - 0.5d, y - 8);
@@ -426,7 +479,7 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 		
 			gl.glBegin(GL_POLYGON);
-			gl.glColor3f(1.0f, 0.7f, 0.6f);
+			state.color3f(1.0f, 0.7f, 0.6f);
 			gl.glVertex2d(x + 1, y - 7);
 			gl.glVertex2d(x + 0.5d, y - 8);
 			gl.glVertex2d(x + 3.5d, y - 8);
@@ -434,7 +487,7 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 
 			gl.glBegin(GL_POLYGON);
-			gl.glColor3f(0.6f, 0.0f, 0.0f);
+			state.color3f(0.6f, 0.0f, 0.0f);
 			gl.glVertex2d(x + 1, y - 5);
 			gl.glVertex2d(x - 1, y - 5);
 			gl.glVertex2d(x - 1, y + 4);
@@ -442,7 +495,7 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 
 			gl.glBegin(GL_POLYGON);
-			gl.glColor3f(1.0f, 0.7f, 0.6f);
+			state.color3f(1.0f, 0.7f, 0.6f);
 			gl.glVertex2d(x - 5.5d, y - 4);
 			gl.glVertex2d(x - 5.5d, y - 5);
 			gl.glVertex2d(x - 4.5d, y - 5);
@@ -450,7 +503,7 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 
 			gl.glBegin(GL_POLYGON);
-			gl.glColor3f(1.0f, 0.7f, 0.6f);
+			state.color3f(1.0f, 0.7f, 0.6f);
 			gl.glVertex2d(x + 4.5d, y - 4);
 			gl.glVertex2d(x + 4.5d, y - 5);
 			gl.glVertex2d(x + 5.5d, y - 5);
@@ -459,47 +512,47 @@ public class AstApplication extends Applet {
 			gl.glEnd();
 
 			gl.glBegin(GL_TRIANGLES);
-			gl.glColor3f(0.8f, 0.0f, 0.0f);
+			state.color3f(0.8f, 0.0f, 0.0f);
 			gl.glVertex2d(x - 3, y - 5);
 			gl.glVertex2d(x - 1, y - 5);
 			gl.glVertex2d(x - 1, y + 4);
 
-			gl.glColor3f(0.8f, 0.0f, 0.0f);
+			state.color3f(0.8f, 0.0f, 0.0f);
 			gl.glVertex2d(x + 1, y - 5);
 			gl.glVertex2d(x + 3, y - 5);
 			gl.glVertex2d(x + 1, y + 4);
 
-			gl.glColor3f(0.9f, 0.0f, 0.0f);
+			state.color3f(0.9f, 0.0f, 0.0f);
 			gl.glVertex2d(x - 1, y + 4);
 			gl.glVertex2d(x, y + 10);
 			gl.glVertex2d(x + 1, y + 4);
 
-			gl.glColor3f(1.0f, 0.0f, 0.0f);
+			state.color3f(1.0f, 0.0f, 0.0f);
 			gl.glVertex2d(x - 3, y - 4);
 			gl.glVertex2d(x - 7, y - 4);
 			gl.glVertex2d(x - 1, y + 4);
 
-			gl.glColor3f(1.0f, 0.0f, 0.0f);
+			state.color3f(1.0f, 0.0f, 0.0f);
 			gl.glVertex2d(x + 3, y - 4);
 			gl.glVertex2d(x + 7, y - 4);
 			gl.glVertex2d(x + 1, y + 4);
 
-			gl.glColor3f(1.0f, 1.0f, 0.0f);
+			state.color3f(1.0f, 1.0f, 0.0f);
 			gl.glVertex2d(x + 3, y - 5);
 			gl.glVertex2d(x + 4, y - 5);
 			gl.glVertex2d(x + 1, y + 4);
 
-			gl.glColor3f(1.0f, 1.0f, 0.0f);
+			state.color3f(1.0f, 1.0f, 0.0f);
 			gl.glVertex2d(x - 4, y - 5);
 			gl.glVertex2d(x - 3, y - 5);
 			gl.glVertex2d(x - 1, y + 4);
 
-			gl.glColor3f(0.5f, 0.6f, 1.0f);
+			state.color3f(0.5f, 0.6f, 1.0f);
 			gl.glVertex2d(x - 1.5d, y);
 			gl.glVertex2d(x + 1.5d, y);
 			gl.glVertex2d(x, y + 6);
 
-			gl.glColor3f(0.7f, 0.8f, 1.0f);
+			state.color3f(0.7f, 0.8f, 1.0f);
 			gl.glVertex2d(x - 0.5d, y + 1.5d);
 			gl.glVertex2d(x + 0.5d, y + 1.5d);
 			gl.glVertex2d(x, y + 4);
@@ -512,14 +565,14 @@ public class AstApplication extends Applet {
 		* decreases as the shield is damaged.
 		*/
 		public void renderShield() {
-			if (ship.getShieldsDamaged()) {
+			if (frame.getFlag(RenderFrame.SHIELDS_DAMAGED)) {
 				// Double to hold the brightness of the shield being rendered.
 				// This value decreases as the shields are damaged.		 
 				float shieldBrightness = 0;
 
 				// Switch statement to set the value of shieldBrightness
 				// depending on the amount of shields the ship has left.		 
-				switch(ship.getShieldsRemaining()) {
+				switch(frame.getShieldsRemaining()) {
 					case 100:
 					case 95:
 					case 90:
@@ -562,30 +615,18 @@ public class AstApplication extends Applet {
 						shieldBrightness = 0.0f;
 						break;
 				}		
-				// Multiply colours by the brightness of the shield. Colours
+				// Colours fade out over the ticks since the ship was hit, and
+				// are multiplied by the brightness of the shield. Colours
 				// will be less visible if they are darker.
-				_red = _red * shieldBrightness;
-				_green = _green * shieldBrightness;
-				_blue = _blue * shieldBrightness;
+				int t = frame.getShieldTimer();
+				float red = (1.0f - 0.05f * t) * shieldBrightness;
+				float green = (1.0f - 0.1f * t) * shieldBrightness;
+				float blue = (1.0f - 0.1f * t) * shieldBrightness;
 
-				gl.glColor3f(_red, _green, _blue);
+				batch.color(red, green, blue);
 				
 				// render the shield
-				renderCircle(ship.getXLocation(), ship.getYLocation(), 10);
-
-				_red = _red - 0.05f;
-				_green = _green - 0.1f;
-				_blue = _blue - 0.1f;
-
-				// reset the colours
-				if ((_red < 0.5f) || (_green < 0.0f) || (_blue < 0.0f)) {
-					_red = 1.0f;
-					_green = 1.0f;
-					_blue = 1.0f;
-
-					// set flag to false so shields can stop being shown
-					ship.setShieldsDamaged(false);
-				}
+				renderCircle(frame.getXLocation(RenderFrame.SHIP, alpha), frame.getYLocation(RenderFrame.SHIP, alpha), 10);
 			}
 		}
 
@@ -594,40 +635,28 @@ public class AstApplication extends Applet {
 		* object is destroyed.
 		*/
 		public void renderExplosion() {
-			if (cd.getExplosionExist()) {
-				double x = cd.getXExplosionLocation();
-				double y = cd.getYExplosionLocation();
-				int explosionEnd;
+			if (frame.getExists(RenderFrame.EXPLOSION)) {
+				double x = frame.getXLocation(RenderFrame.EXPLOSION);
+				double y = frame.getYLocation(RenderFrame.EXPLOSION);
 				// type 1: asteroid explosion; small, blue
 				// type 2: enemy ship explosion; small, red
 				// type 3: game over explosion; big, red
-				if (cd.getExplosionType() == 1) {
-					gl.glColor3f(0.7f, 0.8f, 1.0f);
-					explosionEnd = 8;
+				if (frame.getType(RenderFrame.EXPLOSION) == 1) {
+					batch.color(0.7f, 0.8f, 1.0f);
 				}
 				else {
-					gl.glColor3f(1.0f, 0.2f, 0.2f);
-					explosionEnd = 8;
-					if (cd.getExplosionType() == 3) {
-						explosionEnd = 30;
-					}
-				}
-				_blastRadius++;
-				// Expand explosion radius
-				if (_blastRadius > explosionEnd) {
-					_blastRadius = 0;
-					cd.stopExplosion();
+					batch.color(1.0f, 0.2f, 0.2f);
 				}
 				// Render outer explosion
-				renderCircle(x, y, _blastRadius);
-				if (cd.getExplosionType() == 1) {
-					gl.glColor3f(0.8f, 1.0f, 1.0f);
+				renderCircle(x, y, frame.getRadius(RenderFrame.EXPLOSION));
+				if (frame.getType(RenderFrame.EXPLOSION) == 1) {
+					batch.color(0.8f, 1.0f, 1.0f);
 				}
 				else {
-					gl.glColor3f(1.0f, 0.8f, 0.7f);
+					batch.color(1.0f, 0.8f, 0.7f);
 				}
 				// Render inner explosion
-				renderFilledCircle(x, y, _blastRadius /2);
+				renderFilledCircle(x, y, frame.getRadius(RenderFrame.EXPLOSION) /2);
 			}
 		}
 
@@ -637,22 +666,11 @@ public class AstApplication extends Applet {
 		* destroys all the asteroids within its range.
 		*/
 		public void renderShockWave() {
-			if (cd.getShockWaveExist()) {
-				gl.glColor3f(0.9f, 0.7f, 1.0f);
+			if (frame.getExists(RenderFrame.SHOCK_WAVE)) {
+				batch.color(0.9f, 0.7f, 1.0f);
 				// Render shock wave
-				renderCircle(cd.getXShockWaveLocation(), cd.getYShockWaveLocation(),
-				_shockRadius);
-				// Increase shock wave radius
-				_shockRadius = _shockRadius + 4;
-				// Stop shock wave when radius reaches limit
-				if (_shockRadius > 30) {
-					_shockRadius = 0;
-					cd.stopShockWave();
-					goodieLaser.setExist(false);
-				}
-				// Shock wave radius is passed to CollisionDetector.class so
-				// collisions between shock wave and asteroids can be detected.
-				cd.setShockWaveRadius(_shockRadius);
+				renderCircle(frame.getXLocation(RenderFrame.SHOCK_WAVE), frame.getYLocation(RenderFrame.SHOCK_WAVE),
+				frame.getRadius(RenderFrame.SHOCK_WAVE));
 			}
 		}
 
@@ -661,13 +679,11 @@ public class AstApplication extends Applet {
 		* hyperspace mode. (Powerup)
 		*/
 		public void renderHyperspace() {
-			gl.glColor3f(1.0f, 1.0f, 1.0f);
-			renderCircle(ship.getXLocation(), ship.getYLocation(), _hyperRadius);
-			renderCircle(ship.getXLocation(), ship.getYLocation(), _hyperRadius / 2);
-			_hyperRadius++;
-			if (_hyperRadius > 10) {
-				_hyperRadius = 0;
-			}
+			// Waves expand with each tick and start again after ten
+			int hyperRadius = (int)(frame.getTick() % 11);
+			batch.color(1.0f, 1.0f, 1.0f);
+			renderCircle(frame.getXLocation(RenderFrame.SHIP, alpha), frame.getYLocation(RenderFrame.SHIP, alpha), hyperRadius);
+			renderCircle(frame.getXLocation(RenderFrame.SHIP, alpha), frame.getYLocation(RenderFrame.SHIP, alpha), hyperRadius / 2);
 		}
 
 		/**
@@ -676,49 +692,39 @@ public class AstApplication extends Applet {
 		*/
 		public void renderPowerUp() {
 			// Get location of powerup
-			double x = p.getXLocation();
-			double y = p.getYLocation();
-			gl.glColor3f(1.0f, 1.0f, 1.0f);
+			double x = frame.getXLocation(RenderFrame.POWER_UP, alpha);
+			double y = frame.getYLocation(RenderFrame.POWER_UP, alpha);
+			int type = frame.getType(RenderFrame.POWER_UP);
+			batch.color(1.0f, 1.0f, 1.0f);
 			// Render powerup 'bubble'
 			renderCircle(x, y, 4);
 			// Health powerup
-			if (p.getPowerUpType() == 1) {
-				gl.glColor3f(1.0f, 0.0f, 0.0f);
+			if (type == 1) {
+				batch.color(1.0f, 0.0f, 0.0f);
 
 				// Render a red cross in the centre of the bubble
-				gl.glBegin(GL_POLYGON);
-					gl.glVertex2d(x - 1, y + 3);
-					gl.glVertex2d(x - 1, y - 3);
-					gl.glVertex2d(x + 1, y - 3);
-					gl.glVertex2d(x + 1, y + 3);
-				gl.glEnd();
-
-				gl.glBegin(GL_POLYGON);
-					gl.glVertex2d(x - 3, y - 1);
-					gl.glVertex2d(x + 3, y - 1);
-					gl.glVertex2d(x + 3, y + 1);
-					gl.glVertex2d(x - 3, y + 1);
-				gl.glEnd();
+				batch.rectangle(x - 1, y - 3, x + 1, y + 3);
+				batch.rectangle(x - 3, y - 1, x + 3, y + 1);
 			}
 			else {
 				// Emergency Brake powerup
-				if (p.getPowerUpType() == 2) {
-					gl.glColor3f(1.0f, 1.0f, 0.0f);
+				if (type == 2) {
+					state.color3f(1.0f, 1.0f, 0.0f);
 					// Yellow letter 'B' in the centre of the bubble
-					renderString("B", p.getXLocation() - 1.6d, p.getYLocation() - 1.8d);
+					hudText.draw('B', x - 1.6d, y - 1.8d);
 				}
 				else {
 					// Hyperspace powerup
-					if (p.getPowerUpType() == 3) {
-						gl.glColor3f(0.5f, 0.8f, 1.0f);
+					if (type == 3) {
+						state.color3f(0.5f, 0.8f, 1.0f);
 						// Blue letter 'H' in the centre of the bubble
-						renderString("H", p.getXLocation() - 1.7d, p.getYLocation() - 1.8d);
+						hudText.draw('H', x - 1.7d, y - 1.8d);
 					}
 					// Seismic Laser powerup
 					else {
 						// Purple letter 'S' in the centre of the bubble
-						gl.glColor3f(1.0f, 0.0f, 1.0f);
-						renderString("S", p.getXLocation() - 1.6d, p.getYLocation() - 1.8d);
+						state.color3f(1.0f, 0.0f, 1.0f);
+						hudText.draw('S', x - 1.6d, y - 1.8d);
 					}
 				}
 			}			
@@ -728,17 +734,15 @@ public class AstApplication extends Applet {
 		* Method to render the lasers fired by the goodie and baddie ships. 
 		* Lasers disappear after hitting an object or travelling the 
 		* distance of the screen.
-		* @param the laser to be rendered. (Goodie or baddie)
+		* @param the row of the laser to be rendered in the frame.
+		* (RenderFrame.GOODIE_LASER or RenderFrame.ENEMY_LASER)
 		*/
-		public void renderLaser(Laser laser) {
-			double x = laser.getXLocation();
-			double y = laser.getYLocation();
-			int rot = laser.getRotation();
+		public void renderLaser(int laser) {
+			double x = frame.getXLocation(laser, alpha);
+			double y = frame.getYLocation(laser, alpha);
+			double rot = frame.getRotation(laser, alpha);
 			// Draw laser in direction ship is pointing
-			gl.glBegin(GL_LINES);
-			gl.glVertex2d(x, y);
-			gl.glVertex2d(x + 6* Math.sin(rot * ((2* PI) / 360)), y + 6* Math.cos(rot * ((2* PI) / 360)));
-			gl.glEnd();
+			batch.line(x, y, x + 6* Math.sin(rot * ((2* PI) / 360)), y + 6* Math.cos(rot * ((2* PI) / 360)));
 		}
 
 		/**
@@ -747,11 +751,11 @@ public class AstApplication extends Applet {
 		* is accelerating.
 		*/
 		public void renderRetroRockets() {
-			double x = ship.getXLocation();
-			double y = ship.getYLocation();
+			double x = frame.getXLocation(RenderFrame.SHIP, alpha);
+			double y = frame.getYLocation(RenderFrame.SHIP, alpha);
 
 			gl.glBegin(GL_TRIANGLES);
-			gl.glColor3f(0.7f, 0.7f, 1.0f);
+			state.color3f(0.7f, 0.7f, 1.0f);
 			gl.glVertex2d(x - 3, y - 7);
 			gl.glVertex2d(x - 1, y - 7);
 			gl.glVertex2d(x - 2, y - 12);
@@ -774,132 +778,63 @@ public class AstApplication extends Applet {
 		* Renders the enemy ship as a pink flying saucer.
 		*/
 		public void renderEnemyShip() {
-			double x = baddie.getXLocation();
-			double y = baddie.getYLocation();
+			double x = frame.getXLocation(RenderFrame.ENEMY_SHIP, alpha);
+			double y = frame.getYLocation(RenderFrame.ENEMY_SHIP, alpha);
 
-			gl.glColor3f(1.0f, 0.5f, 0.5f);
+			batch.color(1.0f, 0.5f, 0.5f);
 			renderFilledCircle(x, y, 7);
 
-			gl.glColor3f(1.0f, 0.4f, 0.4f);
+			batch.color(1.0f, 0.4f, 0.4f);
 			renderFilledCircle(x, y, 6);
 
-			gl.glColor3f(1.0f, 0.3f, 0.3f);
+			batch.color(1.0f, 0.3f, 0.3f);
 			renderFilledCircle(x, y, 5);
 		
-			gl.glColor3f(0.4f, 0.4f, 1.0f);
+			batch.color(0.4f, 0.4f, 1.0f);
 			renderFilledCircle(x, y, 3);
 
-			gl.glColor3f(0.5f, 0.5f, 1.0f);
+			batch.color(0.5f, 0.5f, 1.0f);
 			renderFilledCircle(x, y, 2);
 
-			gl.glColor3f(0.6f, 0.6f, 1.0f);
+			batch.color(0.6f, 0.6f, 1.0f);
 			renderFilledCircle(x, y, 1);
 
-			gl.glColor3f(0.0f, 1.0f, 0.0f);
+			batch.color(0.0f, 1.0f, 0.0f);
 			renderFilledCircle(x - 5, y - 5, 0.5);
 
-			gl.glColor3f(0.0f, 1.0f, 0.0f);
+			batch.color(0.0f, 1.0f, 0.0f);
 			renderFilledCircle(x + 5, y + 5, 0.5);
 
-			gl.glColor3f(0.0f, 1.0f, 0.0f);
+			batch.color(0.0f, 1.0f, 0.0f);
 			renderFilledCircle(x - 7.2, y, 0.5);
 
-			gl.glColor3f(0.0f, 1.0f, 0.0f);
+			batch.color(0.0f, 1.0f, 0.0f);
 			renderFilledCircle(x + 7.2, y, 0.5);
 
-			gl.glColor3f(0.0f, 1.0f, 0.0f);
+			batch.color(0.0f, 1.0f, 0.0f);
 			renderFilledCircle(x, y - 7.2, 0.5);
 
-			gl.glColor3f(0.0f, 1.0f, 0.0f);
+			batch.color(0.0f, 1.0f, 0.0f);
 			renderFilledCircle(x, y + 7.2, 0.5);
 
-			gl.glColor3f(0.2f, 1.0f, 0.2f);
+			batch.color(0.2f, 1.0f, 0.2f);
 			renderFilledCircle(x + 5, y - 5, 0.5);
 
-			gl.glColor3f(0.2f, 1.0f, 0.2f);
+			batch.color(0.2f, 1.0f, 0.2f);
 			renderFilledCircle(x - 5, y + 5, 0.5);
 		}
 
 		/**
 		* Method to render the asteroids. The shape of the asteroid
 		* is rendered and then texture mapped using a rock texture.
-		* @param the asteroid to be rendered.
+		* @param the index of the asteroid to be rendered in the frame.
 		*/
-		public void renderAsteroid(Asteroid ast) {
-			// Check asteroid hasn't been destroyed
-			if (ast.getExist()) {
-				double x = ast.getXLocation();
-				double y = ast.getYLocation();
-				int rad = ast.getRadius();
-				int rot = ast.getRotation();
-
-				// Move and rotate asteroid
-				ast.updateXLocation();
-				ast.updateYLocation();
-				ast.updateRotation();
-
-				gl.glPushMatrix();
-
-				gl.glTranslated(x, y, 0);
-				gl.glRotated(rot, 0, 0, 1);
-				gl.glTranslated(-1* x, -1* y, 0);
-
-				gl.glBegin(GL_POLYGON);
-			
-				// Size of asteroid depends on its radius
-				gl.glColor3f(0.8f, 0.8f, 0.8f);
-				gl.glVertex2d(x - rad, y); 
-				gl.glVertex2d(x - rad /2, y + rad);
-				gl.glVertex2d(x + rad /2, y + rad);
-				gl.glVertex2d(x + rad, y);
-				gl.glVertex2d(x + rad /2, y - rad);
-				gl.glVertex2d(x - rad /2, y - rad);
-
-				gl.glEnd();
-
-				gl.glBindTexture(GL_TEXTURE_2D, asteroidTex[0]);
-				gl.glEnable(GL_TEXTURE_2D);
-
-				// Map asteroid texture onto polygon
-				gl.glBegin(GL_QUADS);
-
-				gl.glTexCoord2d(0.0d, 0.0d);
-				gl.glVertex2d(x - rad, y);
-
-				gl.glTexCoord2d(1.0d, 0.0d);
-				gl.glVertex2d(x - rad /2, y + rad);
-
-				gl.glTexCoord2d(1.0d, 1.0d);
-				gl.glVertex2d(x + rad /2, y + rad);
-
-				gl.glTexCoord2d(0.0d, 1.0d);
-				gl.glVertex2d(x + rad, y);
-				
-				gl.glEnd();
-
-				gl.glBegin(GL_QUADS);
-
-				gl.glTexCoord2d(0.0d, 1.0d);
-				gl.glVertex2d(x + rad, y);
-
-				gl.glTexCoord2d(1.0d, 1.0d);
-				gl.glVertex2d(x + rad /2, y - rad);
-
-				gl.glTexCoord2d(1.0d, 0.0d);
-				gl.glVertex2d(x - rad /2, y - rad);
-
-				gl.glTexCoord2d(0.0d, 0.0d);
-				gl.glVertex2d(x - rad, y);
-
-				gl.glEnd();
-
-				gl.glDisable(GL_TEXTURE_2D);
-
-				gl.glPopMatrix();
-
-				// Check if this instance of asteroid is colliding with any objects
-				cd.checkCollisions(ship, goodieLaser, ast, game);
-			}
+		public void renderAsteroid(int i) {
+			// Size of asteroid depends on its radius. The texture is
+			// shaded by the colour.
+			batch.color(0.8f, 0.8f, 0.8f);
+			batch.asteroid(frame.getAsteroidX(i, alpha), frame.getAsteroidY(i, alpha),
+				frame.getAsteroidRadius(i), frame.getAsteroidRotation(i, alpha), asteroidTex);
 		}
 
 		/**
@@ -916,6 +851,85 @@ public class AstApplication extends Applet {
 			glut.glutBitmapString(glut.GLUT_BITMAP_HELVETICA_10, renderStr);	
 		}
 
+		/**
+		* Method to render a line of text held in a reused buffer, so no
+		* String needs to be made for it. The line is drawn from a cached
+		* display list unless it has changed.
+		* @param the line of text.
+		* @param a double holding the horizontal location of the text.
+		* @param a double holding the vertical location of the text.
+		*/
+		public void renderLine(HudLine line, double x, double y) {
+			hudText.draw(line, x, y);
+		}
+
+		/**
+		* Method to render the frame time overlay: a graph of the time
+		* between each of the recent frames, against a line showing the
+		* time allowed for a frame, and lines of statistics above it.
+		* Frames which took longer than allowed are drawn in red.
+		*/
+		public void renderOverlay() {
+			int count = stats.getCount();
+			long budget = stats.getBudget();
+			// The graph is 40 high, with the budget half way up
+			double scale = 20.0 / budget;
+			double left = 5;
+			double bottom = 15;
+			state.color3f(1.0f, 1.0f, 0.0f);
+			gl.glBegin(GL_LINES);
+			gl.glVertex2d(left, bottom + 20);
+			gl.glVertex2d(left + FrameStats.HISTORY, bottom + 20);
+			gl.glEnd();
+			gl.glBegin(GL_LINE_STRIP);
+			for (int age = count - 1; age >= 0; age--) {
+				long nanos = stats.getFrameNanos(age);
+				if (nanos > budget) {
+					state.color3f(1.0f, 0.0f, 0.0f);
+				}
+				else {
+					state.color3f(0.0f, 1.0f, 0.0f);
+				}
+				gl.glVertex2d(left + count - 1 - age, bottom + Math.min(40, nanos * scale));
+			}
+			gl.glEnd();
+			state.color3f(1.0f, 1.0f, 1.0f);
+			overlayLines[0].clear().append("Frame ").appendTenths(stats.getMeanFrameNanos() / 1e6)
+				.append(" ms, max ").appendTenths(stats.getMaxFrameNanos() / 1e6)
+				.append(" ms, over: ").append(stats.getOverruns());
+			overlayLines[1].clear().append("Ticks/frame ").appendTenths(stats.getTicksPerFrame())
+				.append(", objects ").append(countObjects())
+				.append(", asteroids ").append(frame.getAsteroidCount());
+			overlayLines[2].clear().append("GC ").append(stats.getRecentGcMillis())
+				.append(" ms recently, ").append(stats.getGcCount()).append(" total");
+			overlayLines[3].clear().append("Textures ").appendTenths(stats.getTextureNanos() / 1e6)
+				.append(" ms, loads: ").append(stats.getTextureLoads())
+				.append(", text rebuilt: ").append(hudText.getRebuilds());
+			overlayLines[4].clear().append("State changes ").append(state.getLastRequested())
+				.append(", dropped ").append(state.getLastDropped())
+				.append(", draws ").append(batch.getLastRunCount());
+			overlayLines[5].clear().append("Resident ").append(textures.getResidentCount())
+				.append(", ").append(textures.getResidentBytes() / 1024).append(" KB, hits ").append(textures.getHits())
+				.append(", evicted ").append(textures.getEvictions());
+			for (int l = 0; l < overlayLines.length; l++) {
+				renderLine(overlayLines[l], left, bottom + 100 - 10 * l);
+			}
+		}
+
+		/**
+		* Method to count the objects other than asteroids in the frame.
+		* @return an int holding the number of objects.
+		*/
+		private int countObjects() {
+			int count = 0;
+			for (int row = RenderFrame.SHIP; row <= RenderFrame.SHOCK_WAVE; row++) {
+				if (frame.getExists(row)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
 		public void preInit() {
 			doubleBuffer = true;
 			stereoView = false;
@@ -930,7 +944,16 @@ public class AstApplication extends Applet {
 			gl.glMatrixMode(GL_MODELVIEW);
 			gl.glLoadIdentity();
 			glut = new GLUTFuncLightImplWithFonts(gl, glu);
-			loadGLTextures();
+			hudText = new HudText(gl, glut);
+			state = new GLStateCache(gl);
+			backend = new GLDrawBackend(gl, state);
+			// Draw the batch sorted by texture and primitive
+			batch.setSorted(true);
+			textures = new TextureCache(gl, glu, state, getCodeBase());
+			loadGLTextures(_background);
+			// Load the other backgrounds while the game starts, rather
+			// than when each level is reached
+			preloadBackgrounds(1);
 		}
 
 		public void destroy() {
@@ -939,8 +962,9 @@ public class AstApplication extends Applet {
 
 		/**
 		* Main drawing routine method. Is called continuously during
-		* runtime. Calls methods to render various objects which appear
-		* during the course of the game.
+		* runtime. Takes the latest frame published by the simulation
+		* thread, then renders the various objects which appear during
+		* the course of the game.
 		*/
 		public void display() {
 			//Ensure GL is initialised correctly
@@ -948,10 +972,21 @@ public class AstApplication extends Applet {
 				return;
 			}
 
+			frame = _frames.take();
+			if (frame == null) {
+				glj.gljFree();
+				return;
+			}
+			long now = System.nanoTime();
+			alpha = frame.getAlpha(now);
+			stats.frame(now, frame.getTick());
+			timer.begin();
+			state.beginFrame();
+
 			gl.glClear (GL_COLOR_BUFFER_BIT);
 
 			// Set colour to default (white)
-			gl.glColor3f(1.0f, 1.0f, 1.0f);
+			state.color3f(1.0f, 1.0f, 1.0f);
 
 			/**
 			* Continualy check AstApplication.class has the same value for
@@ -959,140 +994,127 @@ public class AstApplication extends Applet {
 			* the player must have advanced a level and the next background is
 			* loaded by calling the loadGLTextures() method.
 			*/
-			if (_level != game.getLevel()) {
-				loadGLTextures();
-				_level = game.getLevel();
+			if (_level != frame.getLevel()) {
+				timer.lap(TickProfiler.DRAW);
+				_background = frame.getBackground();
+				loadGLTextures(_background);
+				_level = frame.getLevel();
+				preload = frame.getBackgroundNumber() % Game.BACKGROUNDS + 1;
+				timer.lap(TickProfiler.TEXTURES);
+			}
+			else if (preload != 0) {
+				// If the next background did not fit in the cache,
+				// load it now so that it is ready for the next level
+				timer.lap(TickProfiler.DRAW);
+				textures.preload(Game.getBackground(preload));
+				preload = 0;
+				timer.lap(TickProfiler.TEXTURES);
 			}
 
 			// Render the current background
 			renderBackgroundTexture();
 
 			// Check players ship has not been destroyed
-			if (ship.getExist()) {
-				// Update ship movement and rotation
-				ship.updateXLocation();
-				ship.updateYLocation();
-				ship.updateRotation();
+			if (frame.getExists(RenderFrame.SHIP)) {
+				double x = frame.getXLocation(RenderFrame.SHIP, alpha);
+				double y = frame.getYLocation(RenderFrame.SHIP, alpha);
+				double rot = frame.getRotation(RenderFrame.SHIP, alpha);
 				// Repeatedly draw new position and rotation of ship
 				gl.glPushMatrix();
-				gl.glTranslated(ship.getXLocation(), ship.getYLocation(), 0);
-				gl.glRotated(-1*ship.getRotation(), 0, 0, 1);
-				gl.glTranslated(-1*ship.getXLocation(), -1 * ship.getYLocation(), 0);
+				gl.glTranslated(x, y, 0);
+				gl.glRotated(-1*rot, 0, 0, 1);
+				gl.glTranslated(-1*x, -1 * y, 0);
 				renderSpaceShip();
 				gl.glPopMatrix();
 				// Render ships shield (only appears briefly after collision)
 				renderShield();
 				// Check if ship is accelerating
-				if (ship.getAccelerating()) {
+				if (frame.getFlag(RenderFrame.ACCELERATING)) {
 					// Draw ships rockets with the same position and rotation as the ship
 					gl.glPushMatrix();
-					gl.glTranslated(ship.getXLocation(), ship.getYLocation(), 0);
-					gl.glRotated(-1*ship.getRotation(), 0, 0, 1);
-					gl.glTranslated(-1*ship.getXLocation(), -1 * ship.getYLocation(), 0);
+					gl.glTranslated(x, y, 0);
+					gl.glRotated(-1*rot, 0, 0, 1);
+					gl.glTranslated(-1*x, -1 * y, 0);
 					renderRetroRockets();
 					gl.glPopMatrix();
 				}
 				// Check if hyperspace powerup has been obtained
-				if (ship.getHyperspace()) {
+				if (frame.getFlag(RenderFrame.HYPERSPACE)) {
 					// Render the hyperspace 'waves'
 					renderHyperspace();
 				}
 				// Check to see if goodie ship is firing
-				if (goodieLaser.getExist()) {
-					// Update location of goodie laser
-					goodieLaser.updateXLocation();
-					goodieLaser.updateYLocation();
-					// Get rid of laser if it has travelled distance of screen
-					goodieLaser.setExist(goodieLaser.checkDistance());
+				if (frame.getExists(RenderFrame.GOODIE_LASER)) {
 					// If seismic laser upgrade has been obtained...
-					if (ship.getLaserUpgraded()) {
+					if (frame.getFlag(RenderFrame.LASER_UPGRADED)) {
 						// Render purple lasers
-						gl.glColor3f(1.0f, 0.0f, 1.0f);
+						batch.color(1.0f, 0.0f, 1.0f);
 					}
 					else {
 						// Render green lasers
-						gl.glColor3f(0.0f, 1.0f, 0.0f);
+						batch.color(0.0f, 1.0f, 0.0f);
 					}
-					renderLaser(goodieLaser);
+					renderLaser(RenderFrame.GOODIE_LASER);
 				}
-				// Calls the method which randomly generates enemy ship is Game.class
-				game.showEnemyShip(baddie);
 				// If baddie ship is generated
-				if (baddie.getExist()) {
-					// Update the location of the baddie ship
-					baddie.updateXLocation();
-					baddie.updateYLocation();
-					// Spin the baddie ship continuously
-					baddie.updateRotation();
-					gl.glPushMatrix();
-					gl.glTranslated(baddie.getXLocation(), baddie.getYLocation(), 0);
-					gl.glRotated(-1*baddie.getRotation(), 0, 0, 1);
-					gl.glTranslated(-1*baddie.getXLocation(), -1 * baddie.getYLocation(), 0);
+				if (frame.getExists(RenderFrame.ENEMY_SHIP)) {
+					double bx = frame.getXLocation(RenderFrame.ENEMY_SHIP, alpha);
+					double by = frame.getYLocation(RenderFrame.ENEMY_SHIP, alpha);
+					batch.rotate(bx, by, -1*frame.getRotation(RenderFrame.ENEMY_SHIP, alpha));
 					renderEnemyShip();
-					gl.glPopMatrix();
-					// Calls method in Game.class which randomly generates the baddie laser
-					baddie.generateFiring(baddieLaser, ship);
-					if (baddieLaser.getExist()) {
-						// Update the location of the baddie laser
-						baddieLaser.updateXLocation();
-						baddieLaser.updateYLocation();
-						// Get rid of laser if it had travelled distance of screen
-						baddieLaser.setExist(baddieLaser.checkDistance());
+					batch.identity();
+					if (frame.getExists(RenderFrame.ENEMY_LASER)) {
 						// Baddie laser is light red
-						gl.glColor3f(1.0f, 0.5f, 0.5f);
-						renderLaser(baddieLaser);
+						batch.color(1.0f, 0.5f, 0.5f);
+						renderLaser(RenderFrame.ENEMY_LASER);
 					}
-					// Continously check for all collisions between the goodie ship,
-					// the baddie ship and the two ships' lasers.
-					cd.checkCollisions(baddie, goodieLaser, baddieLaser, ship);
 				}
-				// Call the method in Game.class which randomly generates powerups
-				game.showPowerUp(p);
-				if (p.getExist()) {
-					// Update the location of the powerup
-					p.updateXLocation();
-					p.updateYLocation();
+				if (frame.getExists(RenderFrame.POWER_UP)) {
 					renderPowerUp();
-					// Continuously check for collision between the ship and the powerup
-					cd.checkCollisions(ship, p);
 				}
-				// Load current asteroids from Game.class
-				for (int i = 0; i < game.getAsteroidCount(); i++) {
-					// Get asteroids one at a time...
-					Asteroid ast = game.getAsteroid(i);
-					// Render each asteroid
-					renderAsteroid(ast);
+				// Render each asteroid in the frame
+				for (int i = 0; i < frame.getAsteroidCount(); i++) {
+					renderAsteroid(i);
 				}
-				// Checks to see if the level should be increased
-				game.checkLevel();
 				// Render any explosions. Explosions are only rendered
 				// when an object is destroyed.
 				renderExplosion();
 			}
 			else { // Ship has been destroyed
-				renderString("G  A  M  E    O  V  E  R  !", 125, 150);
-				// Explode the ship!
-				cd.startExplosion(ship.getXLocation(), ship.getYLocation(), 3);
+				renderLine(gameOverLine, 125, 150);
+				// Render the ship exploding
 				renderExplosion();
-				// Stop animating the canvas when the shock wave has finished		
-				if (!cd.getExplosionExist()) {
+				// Stop animating the canvas when the explosion has finished
+				if (frame.getFlag(RenderFrame.GAME_OVER)) {
 					stop();
 				}
 			}
 			// Shock wave only appears when seismic laser has been obtained
 			renderShockWave();
+			// Draw everything batched above in a few calls
+			batch.flush(backend);
 			// Render the play information at the top of the screen
-			gl.glColor3f(1.0f, 1.0f, 1.0f);
-			renderString("Emergency Brakes: " + (2 - ship.getBrakesUsed()), 40, 290);
-			renderString("Score: " + ship.getScore(), 265, 290);
-			renderString("Dan Coupar 2003", 255, 5);
+			state.color3f(1.0f, 1.0f, 1.0f);
+			brakesLine.clear().append("Emergency Brakes: ").append(2 - frame.getBrakesUsed());
+			renderLine(brakesLine, 40, 290);
+			scoreLine.clear().append("Score: ").append(frame.getScore());
+			renderLine(scoreLine, 265, 290);
+			renderLine(creditLine, 255, 5);
 			// Change colour of text to red if shields are down
-			if (ship.getShieldsRemaining() == 0) {
-				gl.glColor3f(1.0f, 0.0f, 0.0f);
+			if (frame.getShieldsRemaining() == 0) {
+				state.color3f(1.0f, 0.0f, 0.0f);
 			}
 			// Display the amount of shields the ship has remaining
-			renderString("Shields: " + ship.getShieldsRemaining() + "%", 5, 290);	    
+			shieldsLine.clear().append("Shields: ").append(frame.getShieldsRemaining()).append('%');
+			renderLine(shieldsLine, 5, 290);
+			if (showOverlay) {
+				renderOverlay();
+			}
+			state.endFrame();
+			timer.lap(TickProfiler.DRAW);
 			glj.gljSwap(); // flush the buffers etc
+			timer.lap(TickProfiler.SWAP);
+			timer.end();
 			glj.gljFree();
 		}
     }
@@ -0,0 +1,464 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The class which holds the asteroids that are in play. Rather than
+ * one object per asteroid, each property of the asteroids is held in
+ * its own array, with the live asteroids kept together at the front.
+ * A destroyed asteroid is removed by moving the last asteroid into
+ * its place, so there are never any dead asteroids to skip over.
+ * The arrays are kept from level to level and grow when they are
+ * full, so once a game has warmed up no more memory is allocated.
+ * Large fields are updated in parallel, split into chunks on the
+ * common fork/join pool.
+ */
+
+public class AsteroidField {
+
+    /**
+     * The most asteroids a field can ever hold. Large enough for
+     * stress runs with a million asteroids.
+     */
+    public static final int MAX_CAPACITY = 1 << 20;
+
+    /**
+     * The fewest asteroids worth updating in parallel, and the size of
+     * the chunks the field is split into. Below this the cost of
+     * handing work to other threads is more than the work itself.
+     */
+    public static final int PARALLEL_THRESHOLD = 8192;
+
+    /**
+     * Arrays to hold the location of each asteroid.
+     */
+    private double[] xLocation;
+    private double[] yLocation;
+
+    /**
+     * Arrays to hold the components of each asteroids velocity.
+     */
+    private double[] xVelocity;
+    private double[] yVelocity;
+
+    /**
+     * Array to hold the angle of rotation of each asteroid.
+     */
+    private int[] rotation;
+
+    /**
+     * Array to hold the speed at which each asteroid rotates. Can be
+     * negative, indicating an anti-clockwise spinning asteroid.
+     */
+    private int[] rotateSpeed;
+
+    /**
+     * Array to hold the radius of each asteroid, since they vary in
+     * size.
+     */
+    private int[] radius;
+
+    /**
+     * Array to hold the id of each asteroid. Each asteroid gets a new
+     * id when it is added, which it keeps while it moves about the
+     * arrays, so it can be followed from tick to tick.
+     */
+    private int[] id;
+
+    /**
+     * The id the next asteroid added will be given.
+     */
+    private int nextId;
+
+    /**
+     * The number of asteroids in play. The asteroids are held in the
+     * first count places of each array.
+     */
+    private int count;
+
+    /**
+     * The most asteroids this field can grow to hold.
+     */
+    private int maxCapacity;
+
+    /**
+     * The random source used to set the velocity and rotate speed of
+     * new asteroids.
+     */
+    private RandomSource random;
+
+    /**
+     * Constructor which creates an empty asteroid field.
+     * @param an int holding the number of asteroids the field can
+     * hold before it needs to grow.
+     * @param an int holding the most asteroids the field can grow to
+     * hold. Cannot be more than MAX_CAPACITY.
+     * @param the random source of the world the field is in.
+     */
+    public AsteroidField(int capacity, int maxCapacity, RandomSource random) {
+		if ((capacity < 1) || (capacity > maxCapacity) || (maxCapacity > MAX_CAPACITY)) {
+			throw new IllegalArgumentException("Invalid asteroid field capacity: "
+				+ capacity + " of " + maxCapacity);
+		}
+		this.maxCapacity = maxCapacity;
+		this.random = random;
+		this.xLocation = new double[capacity];
+		this.yLocation = new double[capacity];
+		this.xVelocity = new double[capacity];
+		this.yVelocity = new double[capacity];
+		this.rotation = new int[capacity];
+		this.rotateSpeed = new int[capacity];
+		this.radius = new int[capacity];
+		this.id = new int[capacity];
+    }
+
+    /**
+     * Method to add a new asteroid to the field. Randomly sets
+     * velocity and rotate speed. The field grows if it is full.
+     * @param an int holding the radius of the asteroid.
+     * @param the horizontal start location of the asteroid.
+     * @param the vertical start location of the asteroid.
+     * @return the index of the new asteroid, or -1 if the field has
+     * already grown to its maximum capacity.
+     */
+    public int add(int radius, double xStartLocation, double yStartLocation) {
+		int i = this.count;
+		if (i == this.radius.length) {
+			// Field is full, so make room for more asteroids
+			if (i == this.maxCapacity) {
+				return -1;
+			}
+			grow(Math.min(this.maxCapacity, 2 * i));
+		}
+		this.xLocation[i] = xStartLocation;
+		this.yLocation[i] = yStartLocation;
+		this.xVelocity[i] = 4* this.random.nextDouble() - 2;
+		this.yVelocity[i] = 4* this.random.nextDouble() - 2;
+		this.rotation[i] = 0;
+		this.rotateSpeed[i] = (int)(20* this.random.nextDouble() - 10);
+		this.radius[i] = radius;
+		this.id[i] = this.nextId++;
+		this.count++;
+		return i;
+    }
+
+    /**
+     * Method to remove an asteroid from the field. The last asteroid
+     * is moved into its place, so the index of that asteroid changes.
+     * @param the index of the asteroid to be removed.
+     */
+    public void remove(int i) {
+		int last = --this.count;
+		this.xLocation[i] = this.xLocation[last];
+		this.yLocation[i] = this.yLocation[last];
+		this.xVelocity[i] = this.xVelocity[last];
+		this.yVelocity[i] = this.yVelocity[last];
+		this.rotation[i] = this.rotation[last];
+		this.rotateSpeed[i] = this.rotateSpeed[last];
+		this.radius[i] = this.radius[last];
+		this.id[i] = this.id[last];
+    }
+
+    /**
+     * Method to remove every asteroid from the field. The memory held
+     * by the field is kept, to be reused by the next level.
+     */
+    public void clear() {
+		this.count = 0;
+    }
+
+    /**
+     * Method to copy the asteroids into larger arrays.
+     * @param an int holding the new capacity of the field.
+     */
+    private void grow(int capacity) {
+		this.xLocation = Arrays.copyOf(this.xLocation, capacity);
+		this.yLocation = Arrays.copyOf(this.yLocation, capacity);
+		this.xVelocity = Arrays.copyOf(this.xVelocity, capacity);
+		this.yVelocity = Arrays.copyOf(this.yVelocity, capacity);
+		this.rotation = Arrays.copyOf(this.rotation, capacity);
+		this.rotateSpeed = Arrays.copyOf(this.rotateSpeed, capacity);
+		this.radius = Arrays.copyOf(this.radius, capacity);
+		this.id = Arrays.copyOf(this.id, capacity);
+    }
+
+    /**
+     * Method to move and rotate every asteroid in the field. Large
+     * fields are split into chunks which are updated in parallel.
+     * Each asteroid is updated on its own, so the result is the same
+     * however the field is split.
+     */
+    public void update() {
+		if (this.count < 2 * PARALLEL_THRESHOLD) {
+			update(0, this.count);
+		}
+		else {
+			ForkJoinPool.commonPool().invoke(new Updater(0, this.count));
+		}
+    }
+
+    /**
+     * Method to move and rotate some of the asteroids in the field.
+     * Works in the same way as the update methods in SpaceObject.class.
+     * @param an int holding the index of the first asteroid to update.
+     * @param an int holding the index after the last asteroid to update.
+     */
+    public void update(int from, int to) {
+		double[] x = this.xLocation;
+		double[] y = this.yLocation;
+		double[] xVel = this.xVelocity;
+		double[] yVel = this.yVelocity;
+		int[] rot = this.rotation;
+		int[] rotSpeed = this.rotateSpeed;
+		for (int i = from; i < to; i++) {
+			x[i] = SpaceObject.checkBounds(x[i] + xVel[i]);
+			y[i] = SpaceObject.checkBounds(y[i] + yVel[i]);
+			rot[i] = rot[i] + rotSpeed[i];
+			if (rot[i] == 360) {
+				rot[i] = 0;
+			}
+		}
+    }
+
+    /**
+     * The task which updates a range of asteroids, splitting it in half
+     * until each half is no larger than PARALLEL_THRESHOLD.
+     */
+    private class Updater extends RecursiveAction {
+
+		/**
+		 * The version of the task's serialised form, which RecursiveAction
+		 * inherits from ForkJoinTask. Tasks are never serialised.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The range of asteroids to update.
+		 */
+		private int from;
+		private int to;
+
+		/**
+		 * Constructor for the task.
+		 * @param an int holding the index of the first asteroid.
+		 * @param an int holding the index after the last asteroid.
+		 */
+		Updater(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Method to update the range. Overrides method in parent class.
+		 */
+		protected void compute() {
+			if (this.to - this.from <= PARALLEL_THRESHOLD) {
+				update(this.from, this.to);
+			}
+			else {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new Updater(this.from, middle), new Updater(middle, this.to));
+			}
+		}
+    }
+
+    /**
+     * Method to find every asteroid in the field which collides with
+     * an object, using BatchCollider.class.
+     * @param the horizontal location of the object.
+     * @param the vertical location of the object.
+     * @param the radius of the object.
+     * @param a boolean which is true if the asteroids should be
+     * treated as points, as they are by shock waves.
+     * @param an array to hold the index of each asteroid hit.
+     * @return the number of asteroids hit.
+     */
+    public int collide(double x, double y, int probeRadius, boolean points, int[] hits) {
+		int[] radii = this.radius;
+		if (points) {
+			radii = null;
+		}
+		return BatchCollider.get().collide(x, y, probeRadius, this.xLocation,
+			this.yLocation, radii, this.count, hits);
+    }
+
+    /**
+     * Accessor method to get the number of asteroids in the field.
+     * @return an int holding the number of asteroids.
+     */
+    public int getCount() {
+		return this.count;
+    }
+
+    /**
+     * Accessor method to get the number of asteroids the field can
+     * hold before it next needs to grow.
+     * @return an int holding the capacity of the field.
+     */
+    public int getCapacity() {
+		return this.radius.length;
+    }
+
+    /**
+     * Accessor method to get the most asteroids the field can grow to
+     * hold.
+     * @return an int holding the maximum capacity of the field.
+     */
+    public int getMaxCapacity() {
+		return this.maxCapacity;
+    }
+
+    /**
+     * Accessor method to get the horizontal location of an asteroid.
+     * @param the index of the asteroid.
+     * @return the horizontal location of the asteroid.
+     */
+    public double getXLocation(int i) {
+		return this.xLocation[i];
+    }
+
+    /**
+     * Accessor method to get the vertical location of an asteroid.
+     * @param the index of the asteroid.
+     * @return the vertical location of the asteroid.
+     */
+    public double getYLocation(int i) {
+		return this.yLocation[i];
+    }
+
+    /**
+     * Accessor method to get the horizontal velocity of an asteroid.
+     * @param the index of the asteroid.
+     * @return the horizontal velocity of the asteroid.
+     */
+    public double getXVelocity(int i) {
+		return this.xVelocity[i];
+    }
+
+    /**
+     * Accessor method to get the vertical velocity of an asteroid.
+     * @param the index of the asteroid.
+     * @return the vertical velocity of the asteroid.
+     */
+    public double getYVelocity(int i) {
+		return this.yVelocity[i];
+    }
+
+    /**
+     * Accessor method to get the angle at which an asteroid is rotated.
+     * @param the index of the asteroid.
+     * @return the angle of rotation of the asteroid.
+     */
+    public int getRotation(int i) {
+		return this.rotation[i];
+    }
+
+    /**
+     * Accessor method to get the speed at which an asteroid rotates.
+     * @param the index of the asteroid.
+     * @return the rotate speed of the asteroid.
+     */
+    public int getRotateSpeed(int i) {
+		return this.rotateSpeed[i];
+    }
+
+    /**
+     * Accessor method to get the radius of an asteroid.
+     * @param the index of the asteroid.
+     * @return the radius of the asteroid.
+     */
+    public int getRadius(int i) {
+		return this.radius[i];
+    }
+
+    /**
+     * Accessor method to get the id of an asteroid, which does not
+     * change while the asteroid is in play.
+     * @param the index of the asteroid.
+     * @return an int holding the id of the asteroid.
+     */
+    public int getId(int i) {
+		return this.id[i];
+    }
+
+    /**
+     * Method to write every asteroid into a snapshot. Each property is
+     * written as a column, so the arrays can be copied in bulk. Rotate
+     * speed and radius are small, so are written as single bytes.
+     * @param the buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+		int n = this.count;
+		buffer.putInt(n);
+		buffer.putInt(this.nextId);
+		buffer.asIntBuffer().put(this.id, 0, n);
+		buffer.position(buffer.position() + 4 * n);
+		putDoubles(buffer, this.xLocation, n);
+		putDoubles(buffer, this.yLocation, n);
+		putDoubles(buffer, this.xVelocity, n);
+		putDoubles(buffer, this.yVelocity, n);
+		buffer.asIntBuffer().put(this.rotation, 0, n);
+		buffer.position(buffer.position() + 4 * n);
+		for (int i = 0; i < n; i++) {
+			buffer.put((byte)this.rotateSpeed[i]);
+		}
+		for (int i = 0; i < n; i++) {
+			buffer.put((byte)this.radius[i]);
+		}
+    }
+
+    /**
+     * Method to replace every asteroid in the field with those in a
+     * snapshot written by writeState(). The field grows if needed.
+     * @param the buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+		int n = buffer.getInt();
+		if ((n < 0) || (n > this.maxCapacity)) {
+			throw new IllegalArgumentException("Invalid asteroid count in snapshot: " + n);
+		}
+		if (n > this.radius.length) {
+			grow(n);
+		}
+		this.nextId = buffer.getInt();
+		buffer.asIntBuffer().get(this.id, 0, n);
+		buffer.position(buffer.position() + 4 * n);
+		getDoubles(buffer, this.xLocation, n);
+		getDoubles(buffer, this.yLocation, n);
+		getDoubles(buffer, this.xVelocity, n);
+		getDoubles(buffer, this.yVelocity, n);
+		buffer.asIntBuffer().get(this.rotation, 0, n);
+		buffer.position(buffer.position() + 4 * n);
+		for (int i = 0; i < n; i++) {
+			this.rotateSpeed[i] = buffer.get();
+		}
+		for (int i = 0; i < n; i++) {
+			this.radius[i] = buffer.get();
+		}
+		this.count = n;
+    }
+
+    /**
+     * Method to copy the start of an array into a buffer in bulk.
+     * @param the buffer to write to.
+     * @param the array.
+     * @param an int holding the number of values to copy.
+     */
+    private static void putDoubles(ByteBuffer buffer, double[] values, int n) {
+		buffer.asDoubleBuffer().put(values, 0, n);
+		buffer.position(buffer.position() + 8 * n);
+    }
+
+    /**
+     * Method to copy values from a buffer into the start of an array
+     * in bulk.
+     * @param the buffer to read from.
+     * @param the array.
+     * @param an int holding the number of values to copy.
+     */
+    private static void getDoubles(ByteBuffer buffer, double[] values, int n) {
+		buffer.asDoubleBuffer().get(values, 0, n);
+		buffer.position(buffer.position() + 8 * n);
+    }
+}
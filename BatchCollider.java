@@ -0,0 +1,93 @@
+/**
+ * The class which checks one object (the ship or a shock wave) for
+ * collisions against many asteroids at once. Works directly on the
+ * arrays held by AsteroidField.class rather than one pair of objects
+ * at a time. The test is the same as CollisionDetector.collision(),
+ * allowing for asteroids which overlap an edge of the screen.
+ *
+ * This class checks each asteroid in turn. If the Java runtime has
+ * the vector module (started with --add-modules jdk.incubator.vector)
+ * VectorBatchCollider.class is used instead, which checks several
+ * asteroids with each processor instruction.
+ */
+
+public class BatchCollider {
+
+    /**
+     * The collider which is shared by every collision detector.
+     */
+    private static final BatchCollider COLLIDER = create();
+
+    /**
+     * Accessor method to get the fastest collider available.
+     * @return the collider.
+     */
+    public static BatchCollider get() {
+		return COLLIDER;
+    }
+
+    /**
+     * Method to create the vector collider if the vector module is
+     * available, and otherwise this one. Setting the system property
+     * asteroids.scalar to true always uses this one.
+     * @return the collider.
+     */
+    private static BatchCollider create() {
+		if (!Boolean.getBoolean("asteroids.scalar")) {
+			try {
+				return (BatchCollider)Class.forName("VectorBatchCollider")
+					.getDeclaredConstructor().newInstance();
+			}
+			catch (Throwable e) {
+				// Vector module not available, so check one at a time
+			}
+		}
+		return new BatchCollider();
+    }
+
+    /**
+     * Method to find every asteroid which collides with an object.
+     * @param the horizontal location of the object.
+     * @param the vertical location of the object.
+     * @param the radius of the object.
+     * @param the horizontal location of each asteroid.
+     * @param the vertical location of each asteroid.
+     * @param the radius of each asteroid, or null if the asteroids
+     * should be treated as points (as they are by shock waves).
+     * @param the number of asteroids to check.
+     * @param an array to hold the index of each asteroid hit.
+     * @return the number of asteroids hit.
+     */
+    public int collide(double px, double py, int probeRadius, double[] x, double[] y,
+		int[] radius, int count, int[] hits) {
+		int found = 0;
+		for (int i = 0; i < count; i++) {
+			int reach = probeRadius;
+			if (radius != null) {
+				reach += radius[i];
+			}
+			double dx = wrap(x[i] - px);
+			double dy = wrap(y[i] - py);
+			if ((Math.abs(dx) < reach + 1) && (Math.abs(dy) < reach)) {
+				hits[found++] = i;
+			}
+		}
+		return found;
+    }
+
+    /**
+     * Method to wrap the distance between two objects, so that it is
+     * never more than half the width of the screen.
+     * @param a double holding the distance along one axis.
+     * @return the shortest distance along that axis.
+     */
+    static double wrap(double distance) {
+		if (distance > 150) {
+			return distance - 300;
+		}
+		if (distance < -150) {
+			return distance + 300;
+		}
+		return distance;
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The class which plays many independent games at once, for scoring
+ * bots and tuning balance. Each world is played by Bot.class from
+ * start to finish (or until a tick limit) on one thread, so the state
+ * of a world stays in the cache of the core playing it. The worlds are
+ * shared out on a work-stealing fork/join pool, so a core which
+ * finishes its games early takes games from the others.
+ *
+ * Run with:
+ *   java BatchSimulator [worlds] [ticks] [threads] [seed]
+ * World i is created with seed + i, so a run can be repeated exactly.
+ */
+
+public class BatchSimulator {
+
+    /**
+     * The number of worlds played.
+     */
+    private int worlds;
+
+    /**
+     * The most ticks each world is played for.
+     */
+    private long maxTicks;
+
+    /**
+     * The seed the first world is created with.
+     */
+    private long seed;
+
+    /**
+     * The bot which plays every world.
+     */
+    private Bot bot = new Bot();
+
+    /**
+     * Arrays holding the final score of each world, and the number of
+     * ticks the ship survived for.
+     */
+    private int[] scores;
+    private long[] ticks;
+
+    /**
+     * Constructor for the simulator.
+     * @param an int holding the number of worlds to play.
+     * @param a long holding the most ticks each world is played for.
+     * @param a long holding the seed of the first world.
+     */
+    public BatchSimulator(int worlds, long maxTicks, long seed) {
+		this.worlds = worlds;
+		this.maxTicks = maxTicks;
+		this.seed = seed;
+		this.scores = new int[worlds];
+		this.ticks = new long[worlds];
+    }
+
+    public static void main(String[] args) {
+		int worlds = 64;
+		long maxTicks = 100000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = 1;
+		if (args.length > 0) {
+			worlds = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			maxTicks = Long.parseLong(args[1]);
+		}
+		if (args.length > 2) {
+			threads = Integer.parseInt(args[2]);
+		}
+		if (args.length > 3) {
+			seed = Long.parseLong(args[3]);
+		}
+		BatchSimulator simulator = new BatchSimulator(worlds, maxTicks, seed);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		simulator.run(pool);
+		long elapsed = System.nanoTime() - start;
+		pool.shutdown();
+		simulator.report(threads, elapsed);
+    }
+
+    /**
+     * Method to play every world on a pool, returning once they have
+     * all finished.
+     * @param the pool to play the worlds on.
+     */
+    public void run(ForkJoinPool pool) {
+		pool.invoke(new Player(0, this.worlds));
+    }
+
+    /**
+     * Method to play one world until the game is over or the tick
+     * limit is reached, and record the result.
+     * @param an int holding the number of the world.
+     */
+    private void play(int i) {
+		// Created on the thread which plays it, so the world's memory
+		// is allocated close together by that thread.
+		World world = new World(this.seed + i);
+		while ((!world.getGameOver()) && (world.getTick() < this.maxTicks)) {
+			world.step(this.bot.controls(world));
+		}
+		this.scores[i] = world.getShip().getScore();
+		this.ticks[i] = world.getTick();
+    }
+
+    /**
+     * Method to print the results of a run.
+     * @param an int holding the number of threads used.
+     * @param a long holding the time the run took, in nanoseconds.
+     */
+    public void report(int threads, long elapsed) {
+		long totalTicks = 0;
+		long totalScore = 0;
+		int best = 0;
+		int over = 0;
+		for (int i = 0; i < this.worlds; i++) {
+			totalTicks += this.ticks[i];
+			totalScore += this.scores[i];
+			best = Math.max(best, this.scores[i]);
+			if (this.ticks[i] < this.maxTicks) {
+				over++;
+			}
+		}
+		double seconds = elapsed / 1e9;
+		System.out.println("Worlds:         " + this.worlds + " on " + threads + " threads");
+		System.out.println("Ticks:          " + totalTicks + " in " + seconds + " s");
+		System.out.println("Ticks/second:   " + (long)(totalTicks / seconds));
+		System.out.println("Mean score:     " + (totalScore / this.worlds) + " (best " + best + ")");
+		System.out.println("Mean survival:  " + (totalTicks / this.worlds) + " ticks");
+		System.out.println("Games over:     " + over + " of " + this.worlds);
+    }
+
+    /**
+     * Accessor method to get the final score of a world.
+     * @param an int holding the number of the world.
+     * @return an int holding the score.
+     */
+    public int getScore(int i) {
+		return this.scores[i];
+    }
+
+    /**
+     * Accessor method to get the number of ticks a world was played
+     * for before the game was over or the tick limit was reached.
+     * @param an int holding the number of the world.
+     * @return a long holding the number of ticks.
+     */
+    public long getTicks(int i) {
+		return this.ticks[i];
+    }
+
+    /**
+     * The task which plays a range of worlds, splitting it in half
+     * until each task plays a single world, so that idle threads
+     * can steal whole worlds.
+     */
+    private class Player extends RecursiveAction {
+
+		/**
+		 * The version of the task's serialised form, which RecursiveAction
+		 * inherits from ForkJoinTask. Tasks are never serialised.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The range of worlds to play.
+		 */
+		private int from;
+		private int to;
+
+		/**
+		 * Constructor for the task.
+		 * @param an int holding the number of the first world.
+		 * @param an int holding the number after the last world.
+		 */
+		Player(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Method to play the range. Overrides method in parent class.
+		 */
+		protected void compute() {
+			if (this.to - this.from == 1) {
+				play(this.from);
+			}
+			else {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new Player(this.from, middle), new Player(middle, this.to));
+			}
+		}
+    }
+}
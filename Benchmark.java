@@ -0,0 +1,671 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The class which times the hot paths of the simulation. Each case
+ * is run until warmed up, then timed over several rounds, and the
+ * median time per operation is printed, along with the bytes each
+ * operation allocates on the heap.
+ *
+ * Run with:
+ *   java Benchmark [prefix]
+ * or, to include the vector collider:
+ *   java --add-modules jdk.incubator.vector Benchmark [prefix]
+ * Every case whose name starts with the prefix is run, for each
+ * asteroid count, in a fresh JVM started with the same options, so
+ * that the code compiled for one case does not affect the next.
+ */
+
+public class Benchmark {
+
+    /**
+     * The names of the cases which can be run.
+     */
+    private static final String[] CASES = {
+		"collide.scalar",
+		"collide.batch",
+		"update.sequential",
+		"update.parallel",
+		"snapshot.write",
+		"snapshot.read",
+		"delta.encode",
+		"delta.decode",
+		"ship.move",
+		"laser.fire",
+		"laser.distance",
+		"enemy.firing",
+		"cd.asteroids",
+		"cd.enemy",
+		"cd.powerup",
+		"game.initLevel",
+		"game.split",
+		"game.remaining",
+		"render.batch",
+		"render.sorted"
+    };
+
+    /**
+     * The asteroid counts each case is run with.
+     */
+    private static final int[] COUNTS = { 2, 120, 10000, 1000000 };
+
+    /**
+     * Number of rounds each case is timed over, the most rounds it
+     * is warmed up for, and the time each round runs for, in
+     * nanoseconds.
+     */
+    private static final int ROUNDS = 5;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final long ROUND_NANOS = 200000000L;
+
+    /**
+     * Results are added into this so the work being timed cannot be
+     * optimised away.
+     */
+    private static volatile long sink;
+
+    /**
+     * A piece of work to be timed.
+     */
+    private abstract static class Operation {
+
+		/**
+		 * Method to carry out the work once.
+		 * @return any value depending on the work, to be sunk.
+		 */
+		abstract long run();
+    }
+
+    public static void main(String[] args) throws Exception {
+		if (args.length > 1) {
+			// Started by fork() to run one case
+			run(args[0], Integer.parseInt(args[1]));
+			return;
+		}
+		String prefix = "";
+		if (args.length > 0) {
+			prefix = args[0];
+		}
+		System.out.println("Collider: " + BatchCollider.get().getClass().getName());
+		for (int k = 0; k < CASES.length; k++) {
+			if (CASES[k].startsWith(prefix)) {
+				for (int c = 0; c < COUNTS.length; c++) {
+					fork(CASES[k], COUNTS[c]);
+				}
+			}
+		}
+    }
+
+    /**
+     * Method to run one case.
+     * @param a String holding the name of the case.
+     * @param an int holding the asteroid count.
+     */
+    private static void run(String name, int count) {
+		if (name.startsWith("collide.")) {
+			benchmarkCollide(name, count);
+		}
+		if (name.startsWith("update.")) {
+			benchmarkUpdate(name, count);
+		}
+		if (name.startsWith("snapshot.")) {
+			benchmarkSnapshot(name, count);
+		}
+		if (name.startsWith("delta.")) {
+			benchmarkDelta(name, count);
+		}
+		if (name.startsWith("ship.") || name.startsWith("laser.")
+			|| name.startsWith("enemy.")) {
+			benchmarkObjects(name, count);
+		}
+		if (name.startsWith("cd.")) {
+			benchmarkCollisions(name, count);
+		}
+		if (name.startsWith("game.")) {
+			benchmarkGame(name, count);
+		}
+		if (name.startsWith("render.")) {
+			benchmarkRender(name, count);
+		}
+    }
+
+    /**
+     * Method to run one case in a new JVM, started with the same
+     * options and class path as this one.
+     * @param a String holding the name of the case.
+     * @param an int holding the asteroid count.
+     */
+    private static void fork(String name, int count) throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + "/bin/java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("Benchmark");
+		command.add(name);
+		command.add(String.valueOf(count));
+		Process process = new ProcessBuilder(command).inheritIO().start();
+		process.waitFor();
+    }
+
+    /**
+     * Method to time the scalar or the fastest available batch
+     * collider, checking one object against a field of asteroids.
+     * @param a String holding the name of the case.
+     * @param an int holding the number of asteroids.
+     */
+    private static void benchmarkCollide(String name, int count) {
+		AsteroidField field = fill(count);
+		final double[] x = new double[count];
+		final double[] y = new double[count];
+		final int[] radius = new int[count];
+		for (int i = 0; i < count; i++) {
+			x[i] = field.getXLocation(i);
+			y[i] = field.getYLocation(i);
+			radius[i] = field.getRadius(i);
+		}
+		final int[] hits = new int[count];
+		BatchCollider collider = BatchCollider.get();
+		if (name.equals("collide.scalar")) {
+			collider = new BatchCollider();
+		}
+		final BatchCollider c = collider;
+		time(name, count, new Operation() {
+			long run() {
+				return c.collide(150, 150, 4, x, y, radius, x.length, hits);
+			}
+		});
+    }
+
+    /**
+     * Method to time moving every asteroid in a field, one at a time
+     * or split across the fork/join pool.
+     * @param a String holding the name of the case.
+     * @param an int holding the number of asteroids.
+     */
+    private static void benchmarkUpdate(String name, int count) {
+		final AsteroidField field = fill(count);
+		if (name.equals("update.sequential")) {
+			time(name, count, new Operation() {
+				long run() {
+					field.update(0, field.getCount());
+					return field.getRotation(0);
+				}
+			});
+		}
+		else {
+			time(name, count, new Operation() {
+				long run() {
+					field.update();
+					return field.getRotation(0);
+				}
+			});
+		}
+    }
+
+    /**
+     * Method to time taking a snapshot of a world, or restoring a
+     * world from one.
+     * @param a String holding the name of the case.
+     * @param an int holding the number of asteroids.
+     */
+    private static void benchmarkSnapshot(String name, int count) {
+		final World world = fillWorld(count);
+		final Snapshot snapshot = new Snapshot();
+		if (name.equals("snapshot.write")) {
+			time(name, count, new Operation() {
+				long run() {
+					return snapshot.write(world).limit();
+				}
+			});
+		}
+		else {
+			final ByteBuffer buffer = snapshot.write(world);
+			time(name, count, new Operation() {
+				long run() {
+					buffer.rewind();
+					Snapshot.read(world, buffer);
+					return world.getTick();
+				}
+			});
+		}
+    }
+
+    /**
+     * Method to time encoding the state of a world as the difference
+     * from the tick before, or decoding it, and print the bytes sent
+     * each tick while the world is played.
+     * @param a String holding the name of the case.
+     * @param an int holding the number of asteroids.
+     */
+    private static void benchmarkDelta(String name, int count) {
+		final World world = fillWorld(count);
+		final DeltaEncoder encoder = new DeltaEncoder(4);
+		final DeltaDecoder decoder = new DeltaDecoder(4);
+		Bot bot = new Bot();
+		ByteBuffer buffer = null;
+		long ack = -1;
+		long bytes = 0;
+		int ticks = 30;
+		for (int t = 0; t <= ticks; t++) {
+			world.step(bot.controls(world));
+			encoder.update(world);
+			int size = encoder.getMaxSize();
+			if ((buffer == null) || (buffer.capacity() < size)) {
+				buffer = ByteBuffer.allocateDirect(size);
+			}
+			buffer.clear();
+			int n = encoder.encode(ack, buffer);
+			if (t > 0) {
+				// Leave out the first tick, which sends everything
+				bytes += n;
+			}
+			buffer.flip();
+			ack = decoder.decode(buffer);
+		}
+		if (name.equals("delta.encode")) {
+			System.out.println(pad("delta bytes/tick", 28) + pad("n=" + count, 12)
+				+ format((double)bytes / ticks));
+			final ByteBuffer out = buffer;
+			final long baseline = ack - 1;
+			time(name, count, new Operation() {
+				long run() {
+					out.clear();
+					return encoder.encode(baseline, out);
+				}
+			});
+		}
+		else {
+			// Decode the last tick again and again
+			final ByteBuffer in = buffer;
+			time(name, count, new Operation() {
+				long run() {
+					in.rewind();
+					return decoder.decode(in);
+				}
+			});
+		}
+    }
+
+    /**
+     * Method to time moving the ship, firing and moving the laser,
+     * or the enemy ship choosing whether to fire, in a world with a
+     * field of asteroids.
+     * @param a String holding the name of the case.
+     * @param an int holding the number of asteroids.
+     */
+    private static void benchmarkObjects(String name, int count) {
+		World world = fillWorld(count);
+		final SpaceShip ship = world.getShip();
+		final Laser laser = world.getGoodieLaser();
+		final Laser baddieLaser = world.getBaddieLaser();
+		final EnemyShip baddie = world.getBaddie();
+		if (name.equals("ship.move")) {
+			ship.setXVelocity(1.5);
+			ship.setYVelocity(-2.5);
+			time(name, count, new Operation() {
+				long run() {
+					ship.updateXLocation();
+					ship.updateYLocation();
+					return (long)ship.getXLocation();
+				}
+			});
+		}
+		else if (name.equals("laser.fire")) {
+			time(name, count, new Operation() {
+				long run() {
+					laser.setRotation(laser.getRotation() + 7);
+					laser.laserFire(ship.getXLocation(), ship.getYLocation());
+					return (long)laser.getXVelocity();
+				}
+			});
+		}
+		else if (name.equals("laser.distance")) {
+			time(name, count, new Operation() {
+				long run() {
+					return laser.checkDistance() ? 1 : 0;
+				}
+			});
+		}
+		else {
+			baddie.setXLocation(40);
+			baddie.setYLocation(260);
+			time(name, count, new Operation() {
+				long run() {
+					// Clear the laser so a shot is chosen as in play
+					baddieLaser.setExists(false);
+					baddie.generateFiring(baddieLaser, ship);
+					return baddieLaser.getRotation();
+				}
+			});
+		}
+    }
+
+    /**
+     * Method to time each of the collision checks of a world with a
+     * field of asteroids. The objects are placed so that nothing is
+     * hit, and so nothing changes from one operation to the next:
+     * the asteroid check is timed with the ship in a space left clear
+     * of asteroids and no laser, so it times building the grid and
+     * checking the ship, which are done whether or not there are
+     * hits. The ship is not put in hyperspace, as
+     * SpaceShip.getHyperspace() ends it after 5000 checks.
+     * @param a String holding the name of the case.
+     * @param an int holding the number of asteroids.
+     */
+    private static void benchmarkCollisions(String name, int count) {
+		// Leave room for the ship (4) to miss a large asteroid (12)
+		// even at the corners of the square collision() tests
+		World world = fillWorld(count, 150, 150, 25);
+		final CollisionDetector cd = world.getCollisionDetector();
+		final SpaceShip ship = world.getShip();
+		final Laser goodieLaser = world.getGoodieLaser();
+		final Laser baddieLaser = world.getBaddieLaser();
+		final EnemyShip baddie = world.getBaddie();
+		final PowerUp powerUp = world.getPowerUp();
+		final Game game = world.getGame();
+		if (name.equals("cd.asteroids")) {
+			ship.setXLocation(150);
+			ship.setYLocation(150);
+			goodieLaser.setExists(false);
+			int shields = ship.getShieldsRemaining();
+			time(name, count, new Operation() {
+				long run() {
+					cd.checkCollisions(ship, goodieLaser, game);
+					return game.getAsteroidsRemaining();
+				}
+			});
+			if ((game.getAsteroids().getCount() != count) || (ship.getShieldsRemaining() != shields)
+				|| !ship.getExists()) {
+				throw new IllegalStateException(name + ": the world changed while it was timed");
+			}
+		}
+		else if (name.equals("cd.enemy")) {
+			baddie.setXLocation(40);
+			baddie.setYLocation(260);
+			baddie.setExists(true);
+			// Both lasers in flight, each well away from its target
+			goodieLaser.setXLocation(260);
+			goodieLaser.setYLocation(260);
+			goodieLaser.laserFire(260, 260);
+			goodieLaser.setExists(true);
+			baddieLaser.setXLocation(40);
+			baddieLaser.setYLocation(40);
+			baddieLaser.laserFire(40, 40);
+			baddieLaser.setExists(true);
+			time(name, count, new Operation() {
+				long run() {
+					cd.checkCollisions(baddie, goodieLaser, baddieLaser, ship);
+					return baddie.getExists() ? 1 : 0;
+				}
+			});
+		}
+		else {
+			powerUp.setXLocation(40);
+			powerUp.setYLocation(260);
+			powerUp.setExists(true);
+			time(name, count, new Operation() {
+				long run() {
+					cd.checkCollisions(ship, powerUp);
+					return powerUp.getExists() ? 1 : 0;
+				}
+			});
+		}
+    }
+
+    /**
+     * Method to time starting a level with as many asteroids as the
+     * count, splitting an asteroid, or counting the asteroids left.
+     * @param a String holding the name of the case.
+     * @param an int holding the number of asteroids.
+     */
+    private static void benchmarkGame(String name, int count) {
+		World world = fillWorld(count);
+		final Game game = world.getGame();
+		final AsteroidField field = game.getAsteroids();
+		final SpaceShip ship = world.getShip();
+		if (name.equals("game.initLevel")) {
+			game.setLevel(count);
+			time(name, count, new Operation() {
+				long run() {
+					game.initLevel(ship.getXLocation(), ship.getYLocation());
+					return game.getAsteroidsRemaining();
+				}
+			});
+		}
+		else if (name.equals("game.split")) {
+			time(name, count, new Operation() {
+				long run() {
+					// Split one asteroid, then remove one of the pieces
+					// so the field stays the same size.
+					game.splitAsteroid(0, 6);
+					field.remove(field.getCount() - 1);
+					return field.getCount();
+				}
+			});
+		}
+		else {
+			time(name, count, new Operation() {
+				long run() {
+					return game.getAsteroidsRemaining();
+				}
+			});
+		}
+    }
+
+    /**
+     * Method to time batching the asteroids of a frame and drawing
+     * them to a recording backend, and print the draw calls and
+     * vertices each frame takes. The sorted case also draws an
+     * explosion after every sixteenth asteroid, which a batch kept in
+     * order would have to draw separately.
+     * @param a String holding the name of the case.
+     * @param an int holding the number of asteroids.
+     */
+    private static void benchmarkRender(String name, int count) {
+		final RenderFrame frame = new RenderFrame();
+		frame.capture(fillWorld(count));
+		final DrawBatch batch = new DrawBatch(1024);
+		final boolean sorted = name.equals("render.sorted");
+		batch.setSorted(sorted);
+		final RecordingBackend backend = new RecordingBackend();
+		Operation op = new Operation() {
+			long run() {
+				for (int i = 0; i < frame.getAsteroidCount(); i++) {
+					batch.color(0.8f, 0.8f, 0.8f);
+					batch.asteroid(frame.getAsteroidX(i, 1), frame.getAsteroidY(i, 1),
+						frame.getAsteroidRadius(i), frame.getAsteroidRotation(i, 1), 1);
+					if (sorted && (i % 16 == 15)) {
+						batch.color(0.7f, 0.8f, 1.0f);
+						batch.circle(frame.getAsteroidX(i), frame.getAsteroidY(i), 8);
+						batch.filledCircle(frame.getAsteroidX(i), frame.getAsteroidY(i), 4);
+					}
+				}
+				batch.flush(backend);
+				return backend.getLastVertices();
+			}
+		};
+		op.run();
+		System.out.println(pad("render draws/frame", 28) + pad("n=" + count, 12)
+			+ backend.getLastDrawCalls() + " (" + backend.getLastVertices() + " vertices)");
+		time(name, count, op);
+    }
+
+    /**
+     * Method to create a world with asteroids of every size spread
+     * over the screen in place of the first level's.
+     * @param an int holding the number of asteroids.
+     * @return the world.
+     */
+    static World fillWorld(int count) {
+		return fillWorld(count, 0, 0, 0);
+    }
+
+    /**
+     * Method to create a world with asteroids of every size spread
+     * over the screen in place of the first level's, except within a
+     * circle which is left clear.
+     * @param an int holding the number of asteroids.
+     * @param a double holding the horizontal location of the centre
+     * of the clear circle.
+     * @param a double holding the vertical location of the centre of
+     * the clear circle.
+     * @param a double holding the radius of the clear circle, which
+     * no asteroid's centre is placed within.
+     * @return the world.
+     */
+    static World fillWorld(int count, double clearX, double clearY, double clearRadius) {
+		World world = new World(count, count, AsteroidField.MAX_CAPACITY);
+		AsteroidField field = world.getGame().getAsteroids();
+		RandomSource random = new RandomSource(count);
+		field.clear();
+		int[] sizes = { 12, 8, 6 };
+		for (int i = 0; i < count; i++) {
+			double x;
+			double y;
+			do {
+				x = 300* random.nextDouble();
+				y = 300* random.nextDouble();
+			} while ((x - clearX) * (x - clearX) + (y - clearY) * (y - clearY) < clearRadius * clearRadius);
+			field.add(sizes[i % 3], x, y);
+		}
+		return world;
+    }
+
+    /**
+     * Method to create an asteroid field with asteroids of every size
+     * spread over the screen.
+     * @param an int holding the number of asteroids.
+     * @return the asteroid field.
+     */
+    static AsteroidField fill(int count) {
+		RandomSource random = new RandomSource(count);
+		AsteroidField field = new AsteroidField(count, AsteroidField.MAX_CAPACITY, random);
+		int[] sizes = { 12, 8, 6 };
+		for (int i = 0; i < count; i++) {
+			field.add(sizes[i % 3], 300* random.nextDouble(), 300* random.nextDouble());
+		}
+		return field;
+    }
+
+    /**
+     * Method to time an operation and print the median time taken.
+     * @param a String holding the name of the case.
+     * @param an int holding the asteroid count the case was run with.
+     * @param the operation to be timed.
+     */
+    static void time(String name, int count, Operation op) {
+		// Find how many operations to run between reading the clock so
+		// that reading it does not affect the timings.
+		int batch = 1;
+		long end = System.nanoTime() + ROUND_NANOS;
+		while (System.nanoTime() < end) {
+			long start = System.nanoTime();
+			for (int b = 0; b < batch; b++) {
+				sink += op.run();
+			}
+			if ((System.nanoTime() - start < 10000) && (batch < (1 << 20))) {
+				batch *= 2;
+			}
+		}
+		// Warm up until the time taken settles. Vector code is very
+		// slow until it is compiled, which can take several rounds.
+		double last = round(op, batch);
+		for (int w = 0; w < WARMUP_ROUNDS; w++) {
+			double next = round(op, batch);
+			if (next > 0.95 * last) {
+				break;
+			}
+			last = next;
+		}
+		double[] rounds = new double[ROUNDS];
+		for (int r = 0; r < ROUNDS; r++) {
+			rounds[r] = round(op, batch);
+		}
+		Arrays.sort(rounds);
+		System.out.println(pad(name, 28) + pad("n=" + count, 12)
+			+ pad(format(rounds[ROUNDS / 2]) + " ns/op", 20)
+			+ pad("(best " + format(rounds[0]) + ")", 20)
+			+ allocated(op, batch));
+    }
+
+    /**
+     * Method to measure the bytes an operation allocates on the heap,
+     * from the bytes allocated by this thread while it is run.
+     * @param the operation.
+     * @param an int holding the number of operations to run.
+     * @return a String holding the bytes allocated per operation, or
+     * an empty String if the JVM cannot count them.
+     */
+    private static String allocated(Operation op, int batch) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return "";
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			return "";
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long id = Thread.currentThread().getId();
+		// Take off anything allocated by reading the count itself
+		long start = threads.getThreadAllocatedBytes(id);
+		long overhead = threads.getThreadAllocatedBytes(id) - start;
+		start = threads.getThreadAllocatedBytes(id);
+		for (int b = 0; b < batch; b++) {
+			sink += op.run();
+		}
+		long bytes = threads.getThreadAllocatedBytes(id) - start - overhead;
+		return format(Math.max(0, bytes) / (double)batch) + " B/op";
+    }
+
+    /**
+     * Method to run an operation for one round.
+     * @param the operation to be timed.
+     * @param an int holding the number of operations to run between
+     * reading the clock.
+     * @return a double holding the time taken per operation.
+     */
+    private static double round(Operation op, int batch) {
+		long ops = 0;
+		long start = System.nanoTime();
+		long end = start + ROUND_NANOS;
+		long now;
+		do {
+			for (int b = 0; b < batch; b++) {
+				sink += op.run();
+			}
+			ops += batch;
+			now = System.nanoTime();
+		} while (now < end);
+		return (double)(now - start) / ops;
+    }
+
+    /**
+     * Method to format a time to one decimal place.
+     * @param a double holding the time.
+     * @return the formatted time.
+     */
+    static String format(double nanos) {
+		long tenths = Math.round(nanos * 10);
+		return (tenths / 10) + "." + (tenths % 10);
+    }
+
+    /**
+     * Method to pad a String with spaces to a given width.
+     * @param the String.
+     * @param an int holding the width.
+     * @return the padded String.
+     */
+    static String pad(String s, int width) {
+		StringBuffer b = new StringBuffer(s);
+		while (b.length() < width) {
+			b.append(' ');
+		}
+		return b.toString();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * The class which plays the game without a player, for scoring and
+ * balancing runs. Each tick it turns the ship towards the nearest
+ * asteroid, allowing for asteroids across the edges of the screen,
+ * and fires once the ship is pointing at it. Holds no state of its
+ * own, so one bot can play any number of worlds at once.
+ */
+
+public class Bot {
+
+    /**
+     * The angle, in degrees, the ship may be pointing away from an
+     * asteroid and still fire at it. The ship turns 6 degrees a tick.
+     */
+    private static final int AIM = 6;
+
+    /**
+     * Method to choose the controls for the next tick of a world.
+     * @param the world being played.
+     * @return an int holding the control bits to step the world with.
+     */
+    public int controls(World world) {
+		SpaceShip ship = world.getShip();
+		AsteroidField field = world.getGame().getAsteroids();
+		double xShip = ship.getXLocation();
+		double yShip = ship.getYLocation();
+		// Find the nearest asteroid
+		double nearest = Double.MAX_VALUE;
+		double xTarget = 0;
+		double yTarget = 0;
+		for (int i = 0; i < field.getCount(); i++) {
+			double dx = BatchCollider.wrap(field.getXLocation(i) - xShip);
+			double dy = BatchCollider.wrap(field.getYLocation(i) - yShip);
+			double distance = dx * dx + dy * dy;
+			if (distance < nearest) {
+				nearest = distance;
+				xTarget = dx;
+				yTarget = dy;
+			}
+		}
+		if (nearest == Double.MAX_VALUE) {
+			return 0;
+		}
+		// Rotation is measured clockwise from straight up
+		int target = (int)Math.toDegrees(Math.atan2(xTarget, yTarget));
+		int turn = target - ship.getRotation();
+		// Turn whichever way round is shorter
+		turn = ((turn % 360) + 540) % 360 - 180;
+		if (turn > AIM) {
+			return World.RIGHT;
+		}
+		if (turn < -AIM) {
+			return World.LEFT;
+		}
+		return World.FIRE;
+    }
+}
@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 
 /**
  * The class which detects collisions between objects, and manages
@@ -59,12 +60,57 @@ public class CollisionDetector {
      */
     private int explosionType;
 
+    /**
+     * Int to hold the radius of the explosion, which expands each
+     * tick until the explosion ends.
+     */
+    private int blastRadius;
+
     /**
      * Int which is incremented to act like a timer whilst the
      * shipImmune flag is set to true.
      */
     private int i;
 
+    /**
+     * Types of hit an asteroid can take in one tick.
+     */
+    private static final int SHIP_HIT = 1;
+    private static final int LASER_HIT = 2;
+    private static final int SHOCK_WAVE_HIT = 4;
+
+    /**
+     * The number of asteroids above which they are sorted into the
+     * grid. Below this it is quicker to check every asteroid with
+     * BatchCollider.class than to build the grid.
+     */
+    private static final int GRID_THRESHOLD = 256;
+
+    /**
+     * The grid the asteroids are sorted into each tick, so only
+     * asteroids near an object are checked against it.
+     */
+    private SpatialGrid grid = new SpatialGrid(SpatialGrid.CELL_SIZE);
+
+    /**
+     * Array to hold the asteroids found near an object. Kept from
+     * tick to tick, and only replaced if the asteroid field grows.
+     */
+    private int[] candidates = new int[0];
+
+    /**
+     * Array to hold the index of each asteroid hit this tick, and
+     * the number of asteroids hit.
+     */
+    private int[] hits = new int[0];
+    private int hitCount;
+
+    /**
+     * Array to hold the types of hit taken by each asteroid this
+     * tick, indexed by asteroid.
+     */
+    private int[] hitTypes = new int[0];
+
     /**
      * Constructor for the collision detector.
      */
@@ -75,110 +121,225 @@ public class CollisionDetector {
      * asteroids, and also between the goodie laser and the asteroids.
      * If any collisions are detected, the appropriate properties are
      * updated in the relevant classes.
+     * When there are many asteroids they are sorted into a grid
+     * first, so only asteroids in the cells around the ship, laser
+     * and shock wave are checked. Otherwise every asteroid is checked.
+     * Collisions are found before any asteroid is split, and then
+     * dealt with from the back of the field to the front, since a
+     * split moves the last asteroid in the field.
      * @param the goodie spaceship.
      * @param the goodie laser.
-     * @param the asteroid being checked for collisions.
      * @param the game in its current state.
      */
-    public void checkCollisions(SpaceShip ship, Laser goodieLaser, Asteroid ast, Game game) {
-		// Set some 'shorthand' copies of variables.
-		double xShip = ship.getXLocation();
-		double yShip = ship.getYLocation();
-		double xLaser = goodieLaser.getXLocation();
-		double yLaser = goodieLaser.getYLocation();
-		double xAst = ast.getXLocation();
-		double yAst = ast.getYLocation();
-		int radius = ast.getRadius();
-		// Check the ship is not in hyperspace mode
-		if (!ship.getHyperspace()) { 	
-			// Check the ship has not recently been hit
-			if (!getShipImmune()) {
-				// Check ship and asteroid collision.
-				if (collision(xShip, yShip, xAst, yAst, 4, radius)) {
-					// Register ship hit
-					shipHit(ship);	    
-					if (radius == 12) { // Large asteroid
-						// Reduce shields
-						ship.setShieldsRemaining(ship.getShieldsRemaining() - 15);
-						// Break the large asteroid into two smaller asteroids
-						game.splitAsteroid(ast, 8);
-					}
-					else {
-						if (radius == 8) { // Medium asteroid
-							// Reduce shields
-							ship.setShieldsRemaining(ship.getShieldsRemaining() - 10);
-							// Break the medium asteroid into two smaller asteroid
-							game.splitAsteroid(ast, 6);
-						}
-						else { // Small asteroid
-							// Reduce shields
-							ship.setShieldsRemaining(ship.getShieldsRemaining() - 5);
-							// Explode the small asteroid
-							ast.setExists(false);
-							startExplosion(ast.getXLocation(), ast.getYLocation(), 1);
-						}
-					}
-				}
+    public void checkCollisions(SpaceShip ship, Laser goodieLaser, Game game) {
+		AsteroidField field = game.getAsteroids();
+		boolean useGrid = field.getCount() > GRID_THRESHOLD;
+		if (useGrid) {
+			grid.rebuild(field);
+		}
+		if (candidates.length < field.getCapacity()) {
+			// Make room for the field, which has grown
+			candidates = new int[field.getCapacity()];
+			hits = new int[field.getCapacity()];
+			hitTypes = new int[field.getCapacity()];
+		}
+		hitCount = 0;
+		// Check the ship is not in hyperspace mode and has not
+		// recently been hit. Only one asteroid can hit the ship.
+		if (!ship.getHyperspace() && !getShipImmune()) {
+			int found = collide(field, useGrid, ship.getXLocation(),
+				ship.getYLocation(), 4, false);
+			if (found > 0) {
+				addHit(candidates[0], SHIP_HIT);
 			}
 		}
-		// Check if ship is firing
+		// Check if ship is firing. The laser is checked along the whole
+		// line it travelled this tick, and stops at the first asteroid
+		// it reaches.
 		if (goodieLaser.getExists()) {
-			// Check collisions between the asteroid and the goodie laser.
-			if (collision(xAst, yAst, xLaser, yLaser, radius, 1)) {
-				// Register a laser hit
-				laserHit(ship, goodieLaser);
-				if (radius == 12) { // Large asteroid
-					// Split into 2 medium asteroids
-					game.splitAsteroid(ast, 8);
-					// Increase score
-					ship.setScore(ship.getScore() + 50);
+			double x0 = goodieLaser.getXPreviousLocation();
+			double y0 = goodieLaser.getYPreviousLocation();
+			double x1 = x0 + goodieLaser.getXVelocity();
+			double y1 = y0 + goodieLaser.getYVelocity();
+			int found = field.getCount();
+			if (useGrid) {
+				found = grid.query(Math.min(x0, x1) - 14, Math.min(y0, y1) - 14,
+					Math.max(x0, x1) + 14, Math.max(y0, y1) + 14, candidates);
+			}
+			TickProfiler.count(TickProfiler.COLLISION_TESTS, found);
+			int first = -1;
+			double firstTime = 2;
+			for (int k = 0; k < found; k++) {
+				int i = k;
+				if (useGrid) {
+					i = candidates[k];
 				}
-				else {
-					if (radius == 8) { // Medium asteroid
-						// Split into two small asteroids
-						game.splitAsteroid(ast, 6);
-						// Increase score
-						ship.setScore(ship.getScore() + 100);
-					}
-					else { // Small asteroid
-						// Increase score
-						ship.setScore(ship.getScore() + 200);
-						// Explode the small asteroid
-						ast.setExists(false);
-						startExplosion(xAst, yAst, 1);
-					}
+				double time = sweptCollision(x0, y0, x1, y1, field.getXLocation(i),
+					field.getYLocation(i), 1, field.getRadius(i));
+				if ((time >= 0) && (time < firstTime)) {
+					first = i;
+					firstTime = time;
 				}
 			}
+			if (first != -1) {
+				// Stop the laser where it hit the asteroid
+				moveLaser(goodieLaser, firstTime);
+				addHit(first, LASER_HIT);
+			}
 		}
-		// Check if asteroids in radius of shock wave if ship is powered up
+		// Check if asteroids in radius of shock wave if ship is powered up.
+		// (Shock waves treat asteroids as points)
 		if (shockWaveExist) {
-			// Check shockwave and asteroid collision. (Seismic waves
-			// do not affect enemy ship objects)
-			if (collision(xAst, yAst, xShockWaveLocation,
-				yShockWaveLocation, 0, shockWaveRadius)) {
-				if (radius == 12) { // Large asteroid
-					// Split into two medium asteroids
-					game.splitAsteroid(ast, 8);
-					// Increase score
-					ship.setScore(ship.getScore() + 50);
+			int found = collide(field, useGrid, xShockWaveLocation,
+				yShockWaveLocation, shockWaveRadius, true);
+			for (int k = 0; k < found; k++) {
+				addHit(candidates[k], SHOCK_WAVE_HIT);
+			}
+		}
+		// Deal with the hits from the back of the field to the front
+		sortHits();
+		for (int k = 0; k < hitCount; k++) {
+			int i = hits[k];
+			int type = hitTypes[i];
+			hitTypes[i] = 0;
+			asteroidHit(ship, goodieLaser, field, i, type, game);
+		}
+    }
+
+    /**
+     * Method to find every asteroid which collides with an object,
+     * leaving their indexes at the front of the candidates array.
+     * @param the asteroid field.
+     * @param a boolean which is true if the grid has been built
+     * this tick.
+     * @param the horizontal location of the object.
+     * @param the vertical location of the object.
+     * @param the radius of the object.
+     * @param a boolean which is true if the asteroids should be
+     * treated as points.
+     * @return the number of asteroids hit.
+     */
+    private int collide(AsteroidField field, boolean useGrid, double x, double y,
+		int radius, boolean points) {
+		if (!useGrid) {
+			TickProfiler.count(TickProfiler.COLLISION_TESTS, field.getCount());
+			return field.collide(x, y, radius, points, candidates);
+		}
+		int found = grid.query(x, y, radius + 12 + 1, candidates);
+		TickProfiler.count(TickProfiler.COLLISION_TESTS, found);
+		int hit = 0;
+		for (int k = 0; k < found; k++) {
+			int i = candidates[k];
+			int astRadius = field.getRadius(i);
+			if (points) {
+				astRadius = 0;
+			}
+			if (wrappedCollision(x, y, field.getXLocation(i), field.getYLocation(i),
+				radius, astRadius)) {
+				candidates[hit++] = i;
+			}
+		}
+		return hit;
+    }
+
+    /**
+     * Method to record that an asteroid has been hit. An asteroid
+     * hit by more than one object is only recorded once, with the
+     * type of each hit.
+     * @param the index of the asteroid.
+     * @param an int holding the type of hit.
+     */
+    private void addHit(int i, int type) {
+		if (hitTypes[i] == 0) {
+			hits[hitCount++] = i;
+		}
+		hitTypes[i] |= type;
+    }
+
+    /**
+     * Method to sort the recorded hits so that the asteroid furthest
+     * back in the field comes first. There are only ever a handful
+     * of hits, so an insertion sort is used.
+     */
+    private void sortHits() {
+		for (int k = 1; k < hitCount; k++) {
+			int i = hits[k];
+			int j = k - 1;
+			while ((j >= 0) && (hits[j] < i)) {
+				hits[j + 1] = hits[j];
+				j--;
+			}
+			hits[j + 1] = i;
+		}
+    }
+
+    /**
+     * Method to destroy an asteroid which has been hit, and update
+     * the ship, laser and score. An asteroid hit by the ship is not
+     * also counted as hit by the laser or shock wave.
+     * @param the goodie spaceship.
+     * @param the goodie laser.
+     * @param the field holding the asteroid.
+     * @param the index of the asteroid which has been hit.
+     * @param an int holding the types of hit.
+     * @param the game in its current state.
+     */
+    private void asteroidHit(SpaceShip ship, Laser goodieLaser,
+		AsteroidField field, int i, int type, Game game) {
+		double xAst = field.getXLocation(i);
+		double yAst = field.getYLocation(i);
+		int radius = field.getRadius(i);
+		if ((type & SHIP_HIT) != 0) {
+			// Register ship hit
+			shipHit(ship);	    
+			if (radius == 12) { // Large asteroid
+				// Reduce shields
+				ship.setShieldsRemaining(ship.getShieldsRemaining() - 15);
+				// Break the large asteroid into two smaller asteroids
+				game.splitAsteroid(i, 8);
+			}
+			else {
+				if (radius == 8) { // Medium asteroid
+					// Reduce shields
+					ship.setShieldsRemaining(ship.getShieldsRemaining() - 10);
+					// Break the medium asteroid into two smaller asteroid
+					game.splitAsteroid(i, 6);
 				}
-				else {
-					if (radius == 8) { // Medium asteroid
-						// Split into two small asteroids
-						game.splitAsteroid(ast, 6);
-						// Increase score
-						ship.setScore(ship.getScore() + 100);
-					}
-					else { // Small asteroid
-						// Destroy the asteroid
-						ast.setExists(false);		
-						startExplosion(ast.getXLocation(), ast.getYLocation(), 1);
-						// Increase score
-						ship.setScore(ship.getScore() + 200);
-					}
+				else { // Small asteroid
+					// Reduce shields
+					ship.setShieldsRemaining(ship.getShieldsRemaining() - 5);
+					// Explode the small asteroid
+					field.remove(i);
+					startExplosion(xAst, yAst, 1);
 				}
 			}
-		}	
+			return;
+		}
+		if ((type & LASER_HIT) != 0) {
+			// Register a laser hit
+			laserHit(ship, goodieLaser);
+		}
+		if (radius == 12) { // Large asteroid
+			// Split into 2 medium asteroids
+			game.splitAsteroid(i, 8);
+			// Increase score
+			ship.setScore(ship.getScore() + 50);
+		}
+		else {
+			if (radius == 8) { // Medium asteroid
+				// Split into two small asteroids
+				game.splitAsteroid(i, 6);
+				// Increase score
+				ship.setScore(ship.getScore() + 100);
+			}
+			else { // Small asteroid
+				// Increase score
+				ship.setScore(ship.getScore() + 200);
+				// Explode the small asteroid
+				field.remove(i);
+				startExplosion(xAst, yAst, 1);
+			}
+		}
     }
 
     /**
@@ -197,14 +358,10 @@ public class CollisionDetector {
 		double yShip = ship.getYLocation();
 		double xBaddie = baddie.getXLocation();
 		double yBaddie = baddie.getYLocation();
-		double xGLaser = goodieLaser.getXLocation();
-		double yGLaser = goodieLaser.getYLocation();
-		double xBLaser = baddieLaser.getXLocation();
-		double yBLaser = baddieLaser.getYLocation();
 		// Check enemy laser and ship collision.
 		if (!ship.getHyperspace()) {
 			if (baddieLaser.getExists()) { 	
-				if (collision(xBLaser, yBLaser, xShip, yShip, 0, 6)) {
+				if (sweptCollision(baddieLaser, 0, xShip, yShip, 6) >= 0) {
 					// Stop baddie laser
 					baddieLaser.setExists(false);
 					baddieLaser.setDistanceTravelled(0);
@@ -218,7 +375,10 @@ public class CollisionDetector {
 		// If ship is firing...
 		if (goodieLaser.getExists()) { 	
 			// Check laser and enemy ship collision.
-			if (collision(xGLaser, yGLaser, xBaddie, yBaddie, 1, 8)) {
+			double time = sweptCollision(goodieLaser, 1, xBaddie, yBaddie, 8);
+			if (time >= 0) {
+				// Stop the laser where it hit the enemy ship
+				moveLaser(goodieLaser, time);
 				// Remove baddie ship
 				baddie.setExists(false);
 				// Explode baddie ship
@@ -326,6 +486,11 @@ public class CollisionDetector {
      * the explosion.
      */
     public void startExplosion(double xCentre, double yCentre, int type) {
+		// The ship's explosion is started again each tick until it ends
+		if (!explosionExist || (type != explosionType)
+			|| (xCentre != xExplosionLocation) || (yCentre != yExplosionLocation)) {
+			TickProfiler.count(TickProfiler.EXPLOSIONS, 1);
+		}
 		explosionType = type;
 		xExplosionLocation = xCentre;
 		yExplosionLocation = yCentre;
@@ -340,6 +505,34 @@ public class CollisionDetector {
 		explosionExist = false;
     }
 
+    /**
+     * Method to expand the explosion by one step. The explosion
+     * is stopped once its radius reaches the limit for its type.
+     */
+    public void updateExplosion() {
+		if (explosionExist) {
+			// Game over explosions are bigger than the others
+			int explosionEnd = 8;
+			if (explosionType == 3) {
+				explosionEnd = 30;
+			}
+			// Expand explosion radius
+			blastRadius++;
+			if (blastRadius > explosionEnd) {
+				blastRadius = 0;
+				stopExplosion();
+			}
+		}
+    }
+
+    /**
+     * Accessor method to get the current radius of the explosion.
+     * @return an int holding the radius of the explosion.
+     */
+    public int getBlastRadius() {
+		return blastRadius;
+    }
+
     /**
      * Accessor method to get the flag indicating whether the
      * explosion is in existence or not.
@@ -403,6 +596,22 @@ public class CollisionDetector {
 		shockWaveExist = false;
     }
 
+    /**
+     * Method to expand the shockwave by one step. The shockwave is
+     * stopped once its radius reaches the limit.
+     */
+    public void updateShockWave() {
+		if (shockWaveExist) {
+			// Increase shock wave radius
+			shockWaveRadius = shockWaveRadius + 4;
+			// Stop shock wave when radius reaches limit
+			if (shockWaveRadius > 30) {
+				shockWaveRadius = 0;
+				stopShockWave();
+			}
+		}
+    }
+
     /**
      * Accessor method to get the flag indicating whether a
      * shockwave should be shown or not.
@@ -488,4 +697,179 @@ public class CollisionDetector {
 		}
 		return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Method to check if two objects occupy the same space on the
+     * screen, allowing for objects which overlap an edge of the
+     * screen and so partly appear on the other side. The second
+     * object is moved to whichever of its wrapped positions is
+     * nearest the first before calling collision().
+     * @param the horizontal location of the first object.
+     * @param the vertical location of the first object.
+     * @param the horizontal location of the second object.
+     * @param the vertical location of the second object.
+     * @param the radius of the first object.
+     * @param the radius of the second object.
+     * @return true if the two objects occupy the same space.
+     */
+    public boolean wrappedCollision(double ax, double ay, double bx, double by, int rada, int radb) {
+		return collision(ax, ay, ax + wrap(bx - ax), ay + wrap(by - ay), rada, radb);
+    }
+
+    /**
+     * Method to check if a laser passed through an object whilst
+     * moving from one point to another. Finds where the line the
+     * laser travelled along first enters the area in which
+     * collision() would report a hit, allowing for objects which
+     * overlap an edge of the screen.
+     * @param the horizontal location the laser moved from.
+     * @param the vertical location the laser moved from.
+     * @param the horizontal location the laser moved to, before
+     * being kept within the screen.
+     * @param the vertical location the laser moved to, before being
+     * kept within the screen.
+     * @param the horizontal location of the object.
+     * @param the vertical location of the object.
+     * @param the radius of the laser.
+     * @param the radius of the object.
+     * @return a double between 0 and 1 holding how far along the
+     * line the laser first touched the object, or -1 if the laser
+     * did not touch the object.
+     */
+    public double sweptCollision(double x0, double y0, double x1, double y1,
+		double bx, double by, int rada, int radb) {
+		// Move the object to its wrapped position nearest the laser
+		bx = x0 + wrap(bx - x0);
+		by = y0 + wrap(by - y0);
+		// Half the width and height of the area collision() tests
+		double xReach = rada + radb + 1;
+		double yReach = rada + radb;
+		// Clip the line to the area one axis at a time
+		double tEnter = 0;
+		double tExit = 1;
+		double dx = x1 - x0;
+		if (dx == 0) {
+			if (Math.abs(x0 - bx) >= xReach) {
+				return -1;
+			}
+		}
+		else {
+			double t0 = (bx - xReach - x0) / dx;
+			double t1 = (bx + xReach - x0) / dx;
+			tEnter = Math.max(tEnter, Math.min(t0, t1));
+			tExit = Math.min(tExit, Math.max(t0, t1));
+		}
+		double dy = y1 - y0;
+		if (dy == 0) {
+			if (Math.abs(y0 - by) >= yReach) {
+				return -1;
+			}
+		}
+		else {
+			double t0 = (by - yReach - y0) / dy;
+			double t1 = (by + yReach - y0) / dy;
+			tEnter = Math.max(tEnter, Math.min(t0, t1));
+			tExit = Math.min(tExit, Math.max(t0, t1));
+		}
+		if (tEnter < tExit) {
+			return tEnter;
+		}
+		return -1;
+    }
+
+    /**
+     * Method to check if a laser passed through an object whilst
+     * moving this tick.
+     * @param the laser.
+     * @param the radius of the laser.
+     * @param the horizontal location of the object.
+     * @param the vertical location of the object.
+     * @param the radius of the object.
+     * @return how far along its path the laser first touched the
+     * object, or -1 if it did not.
+     */
+    private double sweptCollision(Laser laser, int laserRadius, double bx, double by, int radius) {
+		double x0 = laser.getXPreviousLocation();
+		double y0 = laser.getYPreviousLocation();
+		return sweptCollision(x0, y0, x0 + laser.getXVelocity(),
+			y0 + laser.getYVelocity(), bx, by, laserRadius, radius);
+    }
+
+    /**
+     * Method to move a laser back along the path it travelled this
+     * tick to the point at which it hit an object, so that anything
+     * it sets off starts from there.
+     * @param the laser.
+     * @param a double holding how far along its path the laser hit
+     * the object.
+     */
+    private void moveLaser(Laser laser, double time) {
+		laser.setXLocation(SpaceObject.checkBounds(laser.getXPreviousLocation()
+			+ time * laser.getXVelocity()));
+		laser.setYLocation(SpaceObject.checkBounds(laser.getYPreviousLocation()
+			+ time * laser.getYVelocity()));
+    }
+
+    /**
+     * Method to wrap the distance between two objects, so that it is
+     * never more than half the width of the screen.
+     * @param a double holding the distance along one axis.
+     * @return the shortest distance along that axis.
+     */
+    private static double wrap(double distance) {
+		if (distance > 150) {
+			return distance - 300;
+		}
+		if (distance < -150) {
+			return distance + 300;
+		}
+		return distance;
+    }
+
+    /**
+     * Method to write the state of explosions, shock waves and ship
+     * immunity into a snapshot.
+     * @param the buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+		int flags = 0;
+		if (explosionExist) {
+			flags |= 1;
+		}
+		if (shockWaveExist) {
+			flags |= 2;
+		}
+		if (shipImmune) {
+			flags |= 4;
+		}
+		buffer.put((byte)flags);
+		buffer.putDouble(xExplosionLocation);
+		buffer.putDouble(yExplosionLocation);
+		buffer.put((byte)explosionType);
+		buffer.putInt(blastRadius);
+		buffer.putDouble(xShockWaveLocation);
+		buffer.putDouble(yShockWaveLocation);
+		buffer.putInt(shockWaveRadius);
+		buffer.putInt(i);
+    }
+
+    /**
+     * Method to read the state of the collision detector from a
+     * snapshot written by writeState().
+     * @param the buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+		int flags = buffer.get();
+		explosionExist = (flags & 1) != 0;
+		shockWaveExist = (flags & 2) != 0;
+		shipImmune = (flags & 4) != 0;
+		xExplosionLocation = buffer.getDouble();
+		yExplosionLocation = buffer.getDouble();
+		explosionType = buffer.get();
+		blastRadius = buffer.getInt();
+		xShockWaveLocation = buffer.getDouble();
+		yShockWaveLocation = buffer.getDouble();
+		shockWaveRadius = buffer.getInt();
+		i = buffer.getInt();
+    }
+}
@@ -0,0 +1,154 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The class which decodes the states sent by DeltaEncoder.class, for
+ * spectators and remote clients. Keeps the states of recent ticks, so
+ * that each can be decoded as the difference from the one it was
+ * encoded against. After each decode() the client should acknowledge
+ * the tick returned, so the server encodes against it from then on.
+ */
+
+public class DeltaDecoder {
+
+    /**
+     * The states decoded for recent ticks, by tick.
+     */
+    private DeltaState[] history;
+
+    /**
+     * The state decoded last.
+     */
+    private DeltaState current;
+
+    /**
+     * State used to dead reckon the baseline up to the decoded tick.
+     */
+    private DeltaState predicted = new DeltaState(0);
+
+    /**
+     * Array used to hold the ids of the asteroids destroyed.
+     */
+    private int[] despawns = new int[0];
+
+    /**
+     * Constructor for the decoder.
+     * @param an int holding the number of ticks states are kept for.
+     * Should be the same as the encoder's.
+     */
+    public DeltaDecoder(int history) {
+		if (history < 2) {
+			throw new IllegalArgumentException("Invalid history: " + history);
+		}
+		this.history = new DeltaState[history];
+		for (int i = 0; i < history; i++) {
+			this.history[i] = new DeltaState(0);
+		}
+    }
+
+    /**
+     * Method to decode a state written by DeltaEncoder.encode().
+     * @param the buffer to read from. The position is moved past the
+     * encoded state.
+     * @return a long holding the tick decoded, to be acknowledged.
+     */
+    public long decode(ByteBuffer buffer) {
+		long tick = DeltaState.getVarint(buffer);
+		long back = DeltaState.getVarint(buffer);
+		DeltaState p = this.predicted;
+		if (back > 0) {
+			DeltaState base = this.history[(int)((tick - back) % this.history.length)];
+			if ((back > tick) || (base.tick != tick - back)) {
+				throw new IllegalStateException("Baseline tick " + (tick - back) + " is no longer held");
+			}
+			p.copyFrom(base);
+			p.advance(back);
+		}
+		else {
+			p.clear();
+		}
+		DeltaState next = this.history[(int)(tick % this.history.length)];
+		next.clear();
+		next.tick = tick;
+		// Fields
+		long mask = DeltaState.getVarint(buffer);
+		for (int f = 0; f < DeltaState.FIELDS; f++) {
+			next.fields[f] = p.fields[f];
+			if ((mask & (1L << f)) != 0) {
+				next.fields[f] += DeltaState.getSigned(buffer);
+			}
+		}
+		// Asteroids destroyed
+		int despawnCount = (int)DeltaState.getVarint(buffer);
+		if (despawnCount > p.count) {
+			throw new IllegalArgumentException("Invalid number of asteroids destroyed: " + despawnCount);
+		}
+		if (this.despawns.length < despawnCount) {
+			this.despawns = new int[p.id.length];
+		}
+		int id = 0;
+		for (int k = 0; k < despawnCount; k++) {
+			id += (int)DeltaState.getVarint(buffer);
+			this.despawns[k] = id;
+		}
+		// Merge the dead reckoned asteroids which have not been
+		// destroyed with those created or corrected, in order of id.
+		int updateCount = (int)DeltaState.getVarint(buffer);
+		int j = 0;
+		int d = 0;
+		id = 0;
+		for (int k = 0; k < updateCount; k++) {
+			id += (int)DeltaState.getVarint(buffer);
+			while ((j < p.count) && (p.id[j] < id)) {
+				if ((d < despawnCount) && (this.despawns[d] == p.id[j])) {
+					d++;
+				}
+				else {
+					next.appendAsteroid(p, j);
+				}
+				j++;
+			}
+			if ((j < p.count) && (p.id[j] == id)) {
+				// Corrected, so replaces the dead reckoned asteroid
+				j++;
+			}
+			int x = getMedium(buffer);
+			int y = getMedium(buffer);
+			int xVel = DeltaState.getSigned(buffer);
+			int yVel = DeltaState.getSigned(buffer);
+			int rot = DeltaState.getSigned(buffer);
+			int rotSpeed = DeltaState.getSigned(buffer);
+			int radius = buffer.get();
+			next.appendAsteroid(id, x, y, xVel, yVel, rot, rotSpeed, radius);
+		}
+		while (j < p.count) {
+			if ((d < despawnCount) && (this.despawns[d] == p.id[j])) {
+				d++;
+			}
+			else {
+				next.appendAsteroid(p, j);
+			}
+			j++;
+		}
+		this.current = next;
+		return tick;
+    }
+
+    /**
+     * Accessor method to get the state decoded last.
+     * @return the state, or null if nothing has been decoded.
+     */
+    public DeltaState getState() {
+		return this.current;
+    }
+
+    /**
+     * Method to read a quantized asteroid location written as three
+     * bytes.
+     * @param the buffer to read from.
+     * @return an int holding the location.
+     */
+    private static int getMedium(ByteBuffer buffer) {
+		int high = buffer.get() & 0xff;
+		return (high << 16) | (buffer.getShort() & 0xffff);
+    }
+}
@@ -0,0 +1,357 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The class which encodes the state of a world for spectators and
+ * remote clients as the difference from a state the client has
+ * already acknowledged, so that very little needs to be sent each
+ * tick. Decoded by DeltaDecoder.class.
+ *
+ * Once a tick, update() works out the state clients should hold for
+ * that tick, which is kept for a number of ticks. Asteroids are dead
+ * reckoned (see DeltaState.class), and only sent again when they
+ * drift more than THRESHOLD from the real asteroid. Then encode() is
+ * called for each client with the last tick it acknowledged, and
+ * writes only what has changed since then:
+ *   varint    tick
+ *   varint    ticks since the baseline, or 0 if there is none
+ *   varint    bit mask of the fields which have changed
+ *   repeated  signed varint change in each of those fields
+ *   varint    number of asteroids destroyed
+ *   repeated  varint id, as the gap from the previous id
+ *   varint    number of asteroids created or corrected
+ *   repeated  varint id gap, 3 bytes x, 3 bytes y, signed varint x
+ *             velocity, y velocity, rotation and rotate speed, and
+ *             1 byte radius
+ * Explosions, shock waves, level changes and the like are sent as
+ * changes to the fields which hold them, and asteroids being split
+ * as one asteroid destroyed and two created.
+ */
+
+public class DeltaEncoder {
+
+    /**
+     * How far, in either direction, a dead reckoned asteroid may drift
+     * from the real asteroid before it is sent again.
+     */
+    public static final double THRESHOLD = 0.5;
+
+    /**
+     * The states clients should hold for recent ticks, by tick.
+     */
+    private DeltaState[] history;
+
+    /**
+     * The state for the last tick update() was called for.
+     */
+    private DeltaState current;
+
+    /**
+     * State used to dead reckon an older state up to the current tick.
+     */
+    private DeltaState predicted = new DeltaState(0);
+
+    /**
+     * Array used to sort the asteroids in the world by id. Each entry
+     * holds the id in the top half and the index in the bottom half.
+     */
+    private long[] order = new long[0];
+
+    /**
+     * Arrays used to hold the asteroids to be sent as destroyed, by
+     * id, and created or corrected, by index in the current state.
+     */
+    private int[] despawns = new int[0];
+    private int[] updates = new int[0];
+
+    /**
+     * Constructor for the encoder.
+     * @param an int holding the number of ticks states are kept for.
+     * A client which has not acknowledged a tick for longer than this
+     * is sent everything again.
+     */
+    public DeltaEncoder(int history) {
+		if (history < 2) {
+			throw new IllegalArgumentException("Invalid history: " + history);
+		}
+		this.history = new DeltaState[history];
+		for (int i = 0; i < history; i++) {
+			this.history[i] = new DeltaState(0);
+		}
+    }
+
+    /**
+     * Method to work out the state clients should hold for the tick
+     * the world has reached. Called once each time the world is
+     * stepped, before encode().
+     * @param the world.
+     */
+    public void update(World world) {
+		long tick = world.getTick();
+		if ((this.current != null) && (this.current.tick == tick)) {
+			return;
+		}
+		// Dead reckon the asteroids from the last tick
+		if (this.current != null) {
+			this.predicted.copyFrom(this.current);
+			this.predicted.advance(tick - this.current.tick);
+		}
+		else {
+			this.predicted.clear();
+		}
+		DeltaState next = this.history[(int)(tick % this.history.length)];
+		next.clear();
+		next.tick = tick;
+		readFields(world, next.fields);
+		// Go through the asteroids in order of id alongside the dead
+		// reckoned asteroids, which are in order of id too.
+		AsteroidField field = world.getGame().getAsteroids();
+		int n = field.getCount();
+		if (this.order.length < n) {
+			this.order = new long[field.getCapacity()];
+		}
+		for (int i = 0; i < n; i++) {
+			this.order[i] = ((long)field.getId(i) << 32) | i;
+		}
+		Arrays.sort(this.order, 0, n);
+		DeltaState p = this.predicted;
+		int j = 0;
+		for (int k = 0; k < n; k++) {
+			int i = (int)this.order[k];
+			int id = (int)(this.order[k] >>> 32);
+			// Skip asteroids which have been destroyed
+			while ((j < p.count) && (p.id[j] < id)) {
+				j++;
+			}
+			if ((j < p.count) && (p.id[j] == id) && (p.rotation[j] == field.getRotation(i))
+				&& (Math.abs(BatchCollider.wrap(DeltaState.location(p.xLocation[j])
+					- field.getXLocation(i))) <= THRESHOLD)
+				&& (Math.abs(BatchCollider.wrap(DeltaState.location(p.yLocation[j])
+					- field.getYLocation(i))) <= THRESHOLD)) {
+				// Still close enough to where it is dead reckoned to be
+				next.appendAsteroid(p, j);
+			}
+			else {
+				// New asteroid, or one which has drifted
+				next.appendAsteroid(id, DeltaState.quantize(field.getXLocation(i)),
+					DeltaState.quantize(field.getYLocation(i)),
+					DeltaState.quantize(field.getXVelocity(i)),
+					DeltaState.quantize(field.getYVelocity(i)),
+					field.getRotation(i), field.getRotateSpeed(i), field.getRadius(i));
+			}
+		}
+		this.current = next;
+    }
+
+    /**
+     * Method to encode the current state as the difference from the
+     * state of an earlier tick.
+     * @param a long holding the last tick the client acknowledged, or
+     * -1 if it has not acknowledged any. If the state of that tick is
+     * no longer kept, everything is sent.
+     * @param the buffer to write to, which must have at least
+     * getMaxSize() bytes remaining.
+     * @return an int holding the number of bytes written.
+     */
+    public int encode(long baseline, ByteBuffer buffer) {
+		DeltaState current = this.current;
+		int start = buffer.position();
+		DeltaState p = this.predicted;
+		DeltaState base = find(baseline);
+		if (base != null) {
+			p.copyFrom(base);
+			p.advance(current.tick - base.tick);
+		}
+		else {
+			p.clear();
+		}
+		DeltaState.putVarint(buffer, current.tick);
+		if (base != null) {
+			DeltaState.putVarint(buffer, current.tick - base.tick);
+		}
+		else {
+			DeltaState.putVarint(buffer, 0);
+		}
+		// Fields
+		long mask = 0;
+		for (int f = 0; f < DeltaState.FIELDS; f++) {
+			if (current.fields[f] != p.fields[f]) {
+				mask |= 1L << f;
+			}
+		}
+		DeltaState.putVarint(buffer, mask);
+		for (int f = 0; f < DeltaState.FIELDS; f++) {
+			if ((mask & (1L << f)) != 0) {
+				DeltaState.putSigned(buffer, current.fields[f] - p.fields[f]);
+			}
+		}
+		// Compare the asteroids, both in order of id
+		if (this.despawns.length < p.count) {
+			this.despawns = new int[p.id.length];
+		}
+		if (this.updates.length < current.count) {
+			this.updates = new int[current.id.length];
+		}
+		int despawnCount = 0;
+		int updateCount = 0;
+		int j = 0;
+		for (int i = 0; i < current.count; i++) {
+			while ((j < p.count) && (p.id[j] < current.id[i])) {
+				this.despawns[despawnCount++] = p.id[j++];
+			}
+			if ((j < p.count) && (p.id[j] == current.id[i])) {
+				if (!current.sameAsteroid(i, p, j)) {
+					this.updates[updateCount++] = i;
+				}
+				j++;
+			}
+			else {
+				this.updates[updateCount++] = i;
+			}
+		}
+		while (j < p.count) {
+			this.despawns[despawnCount++] = p.id[j++];
+		}
+		DeltaState.putVarint(buffer, despawnCount);
+		int last = 0;
+		for (int k = 0; k < despawnCount; k++) {
+			DeltaState.putVarint(buffer, this.despawns[k] - last);
+			last = this.despawns[k];
+		}
+		DeltaState.putVarint(buffer, updateCount);
+		last = 0;
+		for (int k = 0; k < updateCount; k++) {
+			int i = this.updates[k];
+			DeltaState.putVarint(buffer, current.id[i] - last);
+			last = current.id[i];
+			putMedium(buffer, current.xLocation[i]);
+			putMedium(buffer, current.yLocation[i]);
+			DeltaState.putSigned(buffer, current.xVelocity[i]);
+			DeltaState.putSigned(buffer, current.yVelocity[i]);
+			DeltaState.putSigned(buffer, current.rotation[i]);
+			DeltaState.putSigned(buffer, current.rotateSpeed[i]);
+			buffer.put((byte)current.radius[i]);
+		}
+		return buffer.position() - start;
+    }
+
+    /**
+     * Method to get the most bytes encode() can write for the current
+     * state.
+     * @return an int holding the number of bytes.
+     */
+    public int getMaxSize() {
+		// Any kept state may be the baseline, and every asteroid in it
+		// may have been destroyed.
+		int destroyed = 0;
+		for (int i = 0; i < this.history.length; i++) {
+			destroyed = Math.max(destroyed, this.history[i].count);
+		}
+		return 32 + 5 * DeltaState.FIELDS + 5 + 5 * destroyed + 5 + 32 * this.current.count;
+    }
+
+    /**
+     * Accessor method to get the state clients should hold for the
+     * current tick.
+     * @return the state.
+     */
+    public DeltaState getState() {
+		return this.current;
+    }
+
+    /**
+     * Method to find the state kept for a tick.
+     * @param a long holding the tick.
+     * @return the state, or null if it is no longer kept.
+     */
+    private DeltaState find(long tick) {
+		if ((tick < 0) || (this.current == null) || (tick > this.current.tick)) {
+			return null;
+		}
+		DeltaState state = this.history[(int)(tick % this.history.length)];
+		if (state.tick != tick) {
+			return null;
+		}
+		return state;
+    }
+
+    /**
+     * Method to write a quantized asteroid location as three bytes.
+     * @param the buffer to write to.
+     * @param an int holding the location.
+     */
+    private static void putMedium(ByteBuffer buffer, int value) {
+		buffer.put((byte)(value >>> 16));
+		buffer.putShort((short)value);
+    }
+
+    /**
+     * Method to read the fields clients draw from a world.
+     * @param the world.
+     * @param an array to hold the fields.
+     */
+    private static void readFields(World world, int[] f) {
+		SpaceShip ship = world.getShip();
+		f[DeltaState.SHIP_X] = DeltaState.quantizeField(ship.getXLocation());
+		f[DeltaState.SHIP_Y] = DeltaState.quantizeField(ship.getYLocation());
+		f[DeltaState.SHIP_ROTATION] = ship.getRotation();
+		int flags = 0;
+		if (ship.getExists()) {
+			flags |= DeltaState.EXISTS;
+		}
+		if (ship.getAccelerating()) {
+			flags |= DeltaState.ACCELERATING;
+		}
+		if (world.getHyperspace()) {
+			flags |= DeltaState.HYPERSPACE;
+		}
+		if (ship.getLaserUpgraded()) {
+			flags |= DeltaState.LASER_UPGRADED;
+		}
+		if (ship.getShieldsDamaged()) {
+			flags |= DeltaState.SHIELDS_DAMAGED;
+		}
+		f[DeltaState.SHIP_FLAGS] = flags;
+		f[DeltaState.SCORE] = ship.getScore();
+		f[DeltaState.SHIELDS_REMAINING] = ship.getShieldsRemaining();
+		f[DeltaState.SHIELD_TIMER] = world.getShieldTimer();
+		f[DeltaState.BRAKES_USED] = ship.getBrakesUsed();
+		f[DeltaState.SHOTS_REMAINING] = ship.getShotsRemaining();
+		EnemyShip baddie = world.getBaddie();
+		f[DeltaState.BADDIE_X] = DeltaState.quantizeField(baddie.getXLocation());
+		f[DeltaState.BADDIE_Y] = DeltaState.quantizeField(baddie.getYLocation());
+		f[DeltaState.BADDIE_ROTATION] = baddie.getRotation();
+		f[DeltaState.BADDIE_EXISTS] = baddie.getExists() ? 1 : 0;
+		PowerUp p = world.getPowerUp();
+		f[DeltaState.POWER_UP_X] = DeltaState.quantizeField(p.getXLocation());
+		f[DeltaState.POWER_UP_Y] = DeltaState.quantizeField(p.getYLocation());
+		f[DeltaState.POWER_UP_TYPE] = p.getPowerUpType();
+		f[DeltaState.POWER_UP_EXISTS] = p.getExists() ? 1 : 0;
+		Laser laser = world.getGoodieLaser();
+		f[DeltaState.GOODIE_LASER_X] = DeltaState.quantizeField(laser.getXLocation());
+		f[DeltaState.GOODIE_LASER_Y] = DeltaState.quantizeField(laser.getYLocation());
+		f[DeltaState.GOODIE_LASER_ROTATION] = laser.getRotation();
+		f[DeltaState.GOODIE_LASER_EXISTS] = laser.getExists() ? 1 : 0;
+		laser = world.getBaddieLaser();
+		f[DeltaState.BADDIE_LASER_X] = DeltaState.quantizeField(laser.getXLocation());
+		f[DeltaState.BADDIE_LASER_Y] = DeltaState.quantizeField(laser.getYLocation());
+		f[DeltaState.BADDIE_LASER_ROTATION] = laser.getRotation();
+		f[DeltaState.BADDIE_LASER_EXISTS] = laser.getExists() ? 1 : 0;
+		CollisionDetector cd = world.getCollisionDetector();
+		if (cd.getExplosionExist()) {
+			f[DeltaState.EXPLOSION_X] = DeltaState.quantizeField(cd.getXExplosionLocation());
+			f[DeltaState.EXPLOSION_Y] = DeltaState.quantizeField(cd.getYExplosionLocation());
+			f[DeltaState.EXPLOSION_TYPE] = cd.getExplosionType();
+			f[DeltaState.BLAST_RADIUS] = cd.getBlastRadius();
+		}
+		if (cd.getShockWaveExist()) {
+			f[DeltaState.SHOCK_WAVE_X] = DeltaState.quantizeField(cd.getXShockWaveLocation());
+			f[DeltaState.SHOCK_WAVE_Y] = DeltaState.quantizeField(cd.getYShockWaveLocation());
+			f[DeltaState.SHOCK_WAVE_RADIUS] = cd.getShockWaveRadius();
+			f[DeltaState.SHOCK_WAVE_EXISTS] = 1;
+		}
+		f[DeltaState.LEVEL] = world.getGame().getLevel();
+		f[DeltaState.BACKGROUND] = world.getGame().getBackgroundNumber();
+		f[DeltaState.GAME_OVER] = world.getGameOver() ? 1 : 0;
+    }
+}
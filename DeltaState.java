@@ -0,0 +1,438 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The class which holds the state of a world as a remote client sees
+ * it, for DeltaEncoder.class and DeltaDecoder.class. The handful of
+ * ships, lasers and other values drawn are held as ints, one per
+ * field, with locations quantized to 16 bits across the screen.
+ *
+ * Asteroids move in straight lines at a constant speed, so rather
+ * than being sent every tick they are dead reckoned: each tick both
+ * ends move every asteroid along by its velocity, and an asteroid is
+ * only sent again when the encoder finds it has drifted too far from
+ * the real one. Asteroid locations and velocities are held as 24 bit
+ * fixed point numbers across the screen, so dead reckoning is done
+ * with whole numbers and gives exactly the same result at both ends.
+ * Asteroids are kept sorted by id, so two states can be compared in
+ * one pass.
+ */
+
+public class DeltaState {
+
+    /**
+     * The fields which hold the ships, lasers, power up and the other
+     * values drawn by a client. Locations are quantized with
+     * quantizeField(). The FLAGS fields pack the flags of an object.
+     */
+    public static final int SHIP_X = 0;
+    public static final int SHIP_Y = 1;
+    public static final int SHIP_ROTATION = 2;
+    public static final int SHIP_FLAGS = 3;
+    public static final int SCORE = 4;
+    public static final int SHIELDS_REMAINING = 5;
+    public static final int SHIELD_TIMER = 6;
+    public static final int BRAKES_USED = 7;
+    public static final int SHOTS_REMAINING = 8;
+    public static final int BADDIE_X = 9;
+    public static final int BADDIE_Y = 10;
+    public static final int BADDIE_ROTATION = 11;
+    public static final int BADDIE_EXISTS = 12;
+    public static final int POWER_UP_X = 13;
+    public static final int POWER_UP_Y = 14;
+    public static final int POWER_UP_TYPE = 15;
+    public static final int POWER_UP_EXISTS = 16;
+    public static final int GOODIE_LASER_X = 17;
+    public static final int GOODIE_LASER_Y = 18;
+    public static final int GOODIE_LASER_ROTATION = 19;
+    public static final int GOODIE_LASER_EXISTS = 20;
+    public static final int BADDIE_LASER_X = 21;
+    public static final int BADDIE_LASER_Y = 22;
+    public static final int BADDIE_LASER_ROTATION = 23;
+    public static final int BADDIE_LASER_EXISTS = 24;
+    public static final int EXPLOSION_X = 25;
+    public static final int EXPLOSION_Y = 26;
+    public static final int EXPLOSION_TYPE = 27;
+    public static final int BLAST_RADIUS = 28;
+    public static final int SHOCK_WAVE_X = 29;
+    public static final int SHOCK_WAVE_Y = 30;
+    public static final int SHOCK_WAVE_RADIUS = 31;
+    public static final int SHOCK_WAVE_EXISTS = 32;
+    public static final int LEVEL = 33;
+    public static final int BACKGROUND = 34;
+    public static final int GAME_OVER = 35;
+    public static final int FIELDS = 36;
+
+    /**
+     * Bits of the SHIP_FLAGS field.
+     */
+    public static final int EXISTS = 1;
+    public static final int ACCELERATING = 2;
+    public static final int HYPERSPACE = 4;
+    public static final int LASER_UPGRADED = 8;
+    public static final int SHIELDS_DAMAGED = 16;
+
+    /**
+     * The quantized location of the edge of the screen, for fields and
+     * for asteroids. Quantized asteroid locations fit in three bytes.
+     */
+    public static final int FIELD_EDGE = 65535;
+    public static final int EDGE = (1 << 24) - 1;
+
+    /**
+     * The tick this state is for, or -1 if it holds nothing yet.
+     */
+    long tick = -1;
+
+    /**
+     * The value of each field.
+     */
+    int[] fields = new int[FIELDS];
+
+    /**
+     * Arrays holding the asteroids, sorted by id. Locations and
+     * velocities are quantized with quantize().
+     */
+    int[] id;
+    int[] xLocation;
+    int[] yLocation;
+    int[] xVelocity;
+    int[] yVelocity;
+    int[] rotation;
+    int[] rotateSpeed;
+    int[] radius;
+
+    /**
+     * The number of asteroids held.
+     */
+    int count;
+
+    /**
+     * Constructor for an empty state.
+     * @param an int holding the number of asteroids the state can hold
+     * before it needs to grow.
+     */
+    public DeltaState(int capacity) {
+		capacity = Math.max(1, capacity);
+		this.id = new int[capacity];
+		this.xLocation = new int[capacity];
+		this.yLocation = new int[capacity];
+		this.xVelocity = new int[capacity];
+		this.yVelocity = new int[capacity];
+		this.rotation = new int[capacity];
+		this.rotateSpeed = new int[capacity];
+		this.radius = new int[capacity];
+    }
+
+    /**
+     * Method to quantize an asteroid location or velocity to 24 bit
+     * fixed point, where EDGE is the edge of the screen.
+     * @param a double holding the location or velocity.
+     * @return an int holding the quantized value.
+     */
+    public static int quantize(double value) {
+		return (int)Math.round(value * EDGE / 300);
+    }
+
+    /**
+     * Method to get the location a quantized asteroid location stands
+     * for.
+     * @param an int holding the quantized location.
+     * @return a double holding the location on screen.
+     */
+    public static double location(int q) {
+		return q * 300.0 / EDGE;
+    }
+
+    /**
+     * Method to quantize the location of an object other than an
+     * asteroid to 16 bits, which is plenty to draw it with.
+     * @param a double holding the location.
+     * @return an int holding the quantized location.
+     */
+    public static int quantizeField(double location) {
+		return Math.max(0, Math.min(FIELD_EDGE, (int)Math.round(location * FIELD_EDGE / 300)));
+    }
+
+    /**
+     * Method to get the location a quantized field stands for.
+     * @param an int holding the quantized location.
+     * @return a double holding the location on screen.
+     */
+    public static double fieldLocation(int q) {
+		return q * 300.0 / FIELD_EDGE;
+    }
+
+    /**
+     * Method to make this state a copy of another.
+     * @param the state to copy.
+     */
+    public void copyFrom(DeltaState other) {
+		int n = other.count;
+		ensureCapacity(n);
+		this.tick = other.tick;
+		System.arraycopy(other.fields, 0, this.fields, 0, FIELDS);
+		System.arraycopy(other.id, 0, this.id, 0, n);
+		System.arraycopy(other.xLocation, 0, this.xLocation, 0, n);
+		System.arraycopy(other.yLocation, 0, this.yLocation, 0, n);
+		System.arraycopy(other.xVelocity, 0, this.xVelocity, 0, n);
+		System.arraycopy(other.yVelocity, 0, this.yVelocity, 0, n);
+		System.arraycopy(other.rotation, 0, this.rotation, 0, n);
+		System.arraycopy(other.rotateSpeed, 0, this.rotateSpeed, 0, n);
+		System.arraycopy(other.radius, 0, this.radius, 0, n);
+		this.count = n;
+    }
+
+    /**
+     * Method to empty this state, so that everything is sent again.
+     */
+    public void clear() {
+		this.tick = -1;
+		Arrays.fill(this.fields, 0);
+		this.count = 0;
+    }
+
+    /**
+     * Method to dead reckon the asteroids forward, moving and rotating
+     * them in the same way as AsteroidField.update().
+     * @param a long holding the number of ticks to move them by.
+     */
+    public void advance(long ticks) {
+		for (int i = 0; i < this.count; i++) {
+			int x = this.xLocation[i];
+			int y = this.yLocation[i];
+			int rot = this.rotation[i];
+			for (long t = 0; t < ticks; t++) {
+				x = checkBounds(x + this.xVelocity[i]);
+				y = checkBounds(y + this.yVelocity[i]);
+				rot = rot + this.rotateSpeed[i];
+				if (rot == 360) {
+					rot = 0;
+				}
+			}
+			this.xLocation[i] = x;
+			this.yLocation[i] = y;
+			this.rotation[i] = rot;
+		}
+		this.tick += ticks;
+    }
+
+    /**
+     * Method to keep a quantized location on screen, in the same way
+     * as SpaceObject.checkBounds().
+     * @param an int holding the quantized location.
+     * @return the new quantized location.
+     */
+    private static int checkBounds(int location) {
+		if (location > EDGE) {
+			return 0;
+		}
+		if (location < 0) {
+			return EDGE;
+		}
+		return location;
+    }
+
+    /**
+     * Method to check whether an asteroid in this state is exactly the
+     * same as one in another state.
+     * @param the index of the asteroid in this state.
+     * @param the other state.
+     * @param the index of the asteroid in the other state.
+     * @return true if the asteroids are the same.
+     */
+    boolean sameAsteroid(int i, DeltaState other, int j) {
+		return (this.xLocation[i] == other.xLocation[j])
+			&& (this.yLocation[i] == other.yLocation[j])
+			&& (this.xVelocity[i] == other.xVelocity[j])
+			&& (this.yVelocity[i] == other.yVelocity[j])
+			&& (this.rotation[i] == other.rotation[j])
+			&& (this.rotateSpeed[i] == other.rotateSpeed[j])
+			&& (this.radius[i] == other.radius[j]);
+    }
+
+    /**
+     * Method to copy an asteroid from another state to the end of this
+     * state.
+     * @param the other state.
+     * @param the index of the asteroid in the other state.
+     */
+    void appendAsteroid(DeltaState other, int j) {
+		ensureCapacity(this.count + 1);
+		int i = this.count++;
+		this.id[i] = other.id[j];
+		this.xLocation[i] = other.xLocation[j];
+		this.yLocation[i] = other.yLocation[j];
+		this.xVelocity[i] = other.xVelocity[j];
+		this.yVelocity[i] = other.yVelocity[j];
+		this.rotation[i] = other.rotation[j];
+		this.rotateSpeed[i] = other.rotateSpeed[j];
+		this.radius[i] = other.radius[j];
+    }
+
+    /**
+     * Method to add an asteroid to the end of this state.
+     * @param an int holding the id of the asteroid, which must be
+     * larger than that of every asteroid already held.
+     * @param an int holding the quantized horizontal location.
+     * @param an int holding the quantized vertical location.
+     * @param an int holding the quantized horizontal velocity.
+     * @param an int holding the quantized vertical velocity.
+     * @param an int holding the angle of rotation.
+     * @param an int holding the rotate speed.
+     * @param an int holding the radius.
+     */
+    void appendAsteroid(int id, int x, int y, int xVel, int yVel, int rot, int rotSpeed,
+		int radius) {
+		ensureCapacity(this.count + 1);
+		int i = this.count++;
+		this.id[i] = id;
+		this.xLocation[i] = x;
+		this.yLocation[i] = y;
+		this.xVelocity[i] = xVel;
+		this.yVelocity[i] = yVel;
+		this.rotation[i] = rot;
+		this.rotateSpeed[i] = rotSpeed;
+		this.radius[i] = radius;
+    }
+
+    /**
+     * Method to make sure the state can hold a number of asteroids.
+     * @param an int holding the number of asteroids.
+     */
+    void ensureCapacity(int n) {
+		if (n > this.id.length) {
+			int capacity = Math.max(n, 2 * this.id.length);
+			this.id = Arrays.copyOf(this.id, capacity);
+			this.xLocation = Arrays.copyOf(this.xLocation, capacity);
+			this.yLocation = Arrays.copyOf(this.yLocation, capacity);
+			this.xVelocity = Arrays.copyOf(this.xVelocity, capacity);
+			this.yVelocity = Arrays.copyOf(this.yVelocity, capacity);
+			this.rotation = Arrays.copyOf(this.rotation, capacity);
+			this.rotateSpeed = Arrays.copyOf(this.rotateSpeed, capacity);
+			this.radius = Arrays.copyOf(this.radius, capacity);
+		}
+    }
+
+    /**
+     * Accessor method to get the tick this state is for.
+     * @return a long holding the tick, or -1 if the state is empty.
+     */
+    public long getTick() {
+		return this.tick;
+    }
+
+    /**
+     * Accessor method to get the value of a field.
+     * @param an int holding the field, such as SHIP_X.
+     * @return an int holding the value.
+     */
+    public int getField(int field) {
+		return this.fields[field];
+    }
+
+    /**
+     * Accessor method to get the number of asteroids.
+     * @return an int holding the number of asteroids.
+     */
+    public int getAsteroidCount() {
+		return this.count;
+    }
+
+    /**
+     * Accessor method to get the id of an asteroid.
+     * @param the index of the asteroid.
+     * @return an int holding the id.
+     */
+    public int getId(int i) {
+		return this.id[i];
+    }
+
+    /**
+     * Accessor method to get the horizontal location of an asteroid.
+     * @param the index of the asteroid.
+     * @return the horizontal location.
+     */
+    public double getXLocation(int i) {
+		return location(this.xLocation[i]);
+    }
+
+    /**
+     * Accessor method to get the vertical location of an asteroid.
+     * @param the index of the asteroid.
+     * @return the vertical location.
+     */
+    public double getYLocation(int i) {
+		return location(this.yLocation[i]);
+    }
+
+    /**
+     * Accessor method to get the angle at which an asteroid is rotated.
+     * @param the index of the asteroid.
+     * @return the angle of rotation.
+     */
+    public int getRotation(int i) {
+		return this.rotation[i];
+    }
+
+    /**
+     * Accessor method to get the radius of an asteroid.
+     * @param the index of the asteroid.
+     * @return the radius.
+     */
+    public int getRadius(int i) {
+		return this.radius[i];
+    }
+
+    /**
+     * Method to write a long as a varint, seven bits to a byte with
+     * the top bit set on every byte but the last.
+     * @param the buffer to write to.
+     * @param a long holding the value, which must not be negative.
+     */
+    static void putVarint(ByteBuffer buffer, long value) {
+		while ((value & ~0x7fL) != 0) {
+			buffer.put((byte)(value | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+    }
+
+    /**
+     * Method to read a varint written by putVarint().
+     * @param the buffer to read from.
+     * @return a long holding the value.
+     */
+    static long getVarint(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (long)(b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+    }
+
+    /**
+     * Method to write an int which may be negative as a varint, with
+     * small negative values taking as little room as small positive
+     * ones.
+     * @param the buffer to write to.
+     * @param an int holding the value.
+     */
+    static void putSigned(ByteBuffer buffer, int value) {
+		putVarint(buffer, ((value << 1) ^ (value >> 31)) & 0xffffffffL);
+    }
+
+    /**
+     * Method to read an int written by putSigned().
+     * @param the buffer to read from.
+     * @return an int holding the value.
+     */
+    static int getSigned(ByteBuffer buffer) {
+		int value = (int)getVarint(buffer);
+		return (value >>> 1) ^ -(value & 1);
+    }
+}
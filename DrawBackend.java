@@ -0,0 +1,34 @@
+/**
+ * Interface for whatever draws the vertices collected by
+ * DrawBatch.class: the GL of the canvas (GLDrawBackend.class), or a
+ * recording of the draws (RecordingBackend.class) so that what a frame
+ * would draw can be counted without a display.
+ */
+
+public interface DrawBackend {
+
+    /**
+     * Method to set the arrays the next draws read their vertices
+     * from. Each vertex has two coordinates, two texture coordinates
+     * and three colour components.
+     * @param an array holding the coordinates.
+     * @param an array holding the texture coordinates.
+     * @param an array holding the colours.
+     */
+    void setArrays(float[] vertices, float[] texCoords, float[] colours);
+
+    /**
+     * Method to draw a run of vertices from the arrays.
+     * @param an int holding the primitive, DrawBatch.LINES or
+     * DrawBatch.TRIANGLES, which are GL_LINES and GL_TRIANGLES.
+     * @param an int holding the texture to draw with, or 0 for none.
+     * @param an int holding the first vertex of the run.
+     * @param an int holding the number of vertices in the run.
+     */
+    void drawArrays(int mode, int texture, int first, int count);
+
+    /**
+     * Method to finish drawing the arrays, leaving texturing off.
+     */
+    void finish();
+}
@@ -0,0 +1,454 @@
+import java.util.Arrays;
+
+/**
+ * The class which collects the shapes drawn in a frame into one set of
+ * vertex arrays, so that they can be drawn with a few calls to
+ * glDrawArrays rather than a glBegin/glEnd block each. Vertices are
+ * placed and rotated here rather than by the GL matrix, and each
+ * carries its own colour, so shapes of any colour or rotation can be
+ * drawn together.
+ *
+ * Shapes are kept in the order they were added. Consecutive shapes
+ * with the same primitive and texture are drawn as one run, so the
+ * asteroids, which are all textured triangles, take one draw however
+ * many there are. Lines and filled shapes are broken into GL_LINES
+ * and GL_TRIANGLES, as strips, loops and polygons cannot be joined.
+ *
+ * A sorted batch instead draws every shape with the same texture and
+ * primitive in one run, whatever order they were added in: textured
+ * shapes first, then filled shapes, then lines, each in the order
+ * they were added. This takes one draw for each kind of shape in the
+ * frame, and changes texture as few times as possible, at the cost of
+ * copying the vertices into order.
+ *
+ * The arrays grow as needed and are reused from frame to frame, so a
+ * frame makes no garbage once they have grown to fit.
+ */
+
+public class DrawBatch {
+
+    /**
+     * The primitives shapes are broken into. They have the values of
+     * GL_LINES and GL_TRIANGLES, so they can be passed straight to
+     * glDrawArrays, but are defined here so the batch can be used, and
+     * counted, without GL.
+     */
+    public static final int LINES = 0x0001;
+    public static final int TRIANGLES = 0x0004;
+
+    /**
+     * The points round the rim of a circle of radius 1, as drawn by
+     * renderCircle() before the batch, starting from the right and
+     * going anticlockwise.
+     */
+    private static final double[] RIM_X = {
+		1.2, 1.05, 0.6, 0.15, -0.15, -0.6, -1.05, -1.2,
+		-1.2, -1.05, -0.6, -0.15, 0.15, 0.6, 1.05, 1.2
+    };
+    private static final double[] RIM_Y = {
+		0.15, 0.6, 1.05, 1.2, 1.2, 1.05, 0.6, 0.15,
+		-0.15, -0.6, -1.05, -1.2, -1.2, -1.05, -0.6, -0.15
+    };
+
+    /**
+     * The vertex arrays: two coordinates, two texture coordinates and
+     * three colour components for each vertex.
+     */
+    private float[] vertices;
+    private float[] texCoords;
+    private float[] colours;
+
+    /**
+     * The number of vertices in the arrays.
+     */
+    private int count;
+
+    /**
+     * The runs of vertices drawn with one call each: the primitive,
+     * the texture, the first vertex and the number of vertices.
+     */
+    private int[] runModes = new int[16];
+    private int[] runTextures = new int[16];
+    private int[] runFirsts = new int[16];
+    private int[] runCounts = new int[16];
+    private int runs;
+
+    /**
+     * Flag indicating whether runs are sorted before being drawn, the
+     * arrays the vertices and runs are sorted into, and the number of
+     * runs drawn by the last flush.
+     */
+    private boolean sorted;
+    private float[] sortedVertices = new float[0];
+    private float[] sortedTexCoords = new float[0];
+    private float[] sortedColours = new float[0];
+    private int[] sortedModes = new int[16];
+    private int[] sortedTextures = new int[16];
+    private int[] sortedFirsts = new int[16];
+    private int[] sortedCounts = new int[16];
+    private int lastRuns;
+
+    /**
+     * The colour given to the vertices added.
+     */
+    private float red = 1.0f;
+    private float green = 1.0f;
+    private float blue = 1.0f;
+
+    /**
+     * The rotation applied to the vertices added, about a centre.
+     */
+    private double centreX;
+    private double centreY;
+    private double cos = 1.0;
+    private double sin = 0.0;
+
+    /**
+     * Constructor for the batch.
+     * @param an int holding the number of vertices the arrays are
+     * created to hold.
+     */
+    public DrawBatch(int capacity) {
+		this.vertices = new float[2 * capacity];
+		this.texCoords = new float[2 * capacity];
+		this.colours = new float[3 * capacity];
+    }
+
+    /**
+     * Mutator method to set whether runs are sorted by texture and
+     * primitive before being drawn.
+     * @param a boolean which is true to sort the runs.
+     */
+    public void setSorted(boolean sorted) {
+		this.sorted = sorted;
+    }
+
+    /**
+     * Method to set the colour of the vertices added from now on.
+     * @param a float holding the red component.
+     * @param a float holding the green component.
+     * @param a float holding the blue component.
+     */
+    public void color(float red, float green, float blue) {
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+    }
+
+    /**
+     * Method to rotate the vertices added from now on about a centre,
+     * as glRotated() would.
+     * @param a double holding the horizontal location of the centre.
+     * @param a double holding the vertical location of the centre.
+     * @param a double holding the angle to rotate anticlockwise by, in
+     * degrees.
+     */
+    public void rotate(double x, double y, double degrees) {
+		double angle = Math.toRadians(degrees);
+		this.centreX = x;
+		this.centreY = y;
+		this.cos = Math.cos(angle);
+		this.sin = Math.sin(angle);
+    }
+
+    /**
+     * Method to stop rotating the vertices added.
+     */
+    public void identity() {
+		this.cos = 1.0;
+		this.sin = 0.0;
+    }
+
+    /**
+     * Method to add a line.
+     * @param a double holding the horizontal location of the start.
+     * @param a double holding the vertical location of the start.
+     * @param a double holding the horizontal location of the end.
+     * @param a double holding the vertical location of the end.
+     */
+    public void line(double x0, double y0, double x1, double y1) {
+		begin(LINES, 0, 2);
+		put(x0, y0, 0, 0);
+		put(x1, y1, 0, 0);
+    }
+
+    /**
+     * Method to add the outline of a circle, as sixteen lines.
+     * @param a double holding the horizontal location of the circle.
+     * @param a double holding the vertical location of the circle.
+     * @param a double holding the radius of the circle.
+     */
+    public void circle(double x, double y, double radius) {
+		begin(LINES, 0, 2 * RIM_X.length);
+		for (int k = 0; k < RIM_X.length; k++) {
+			int next = (k + 1) % RIM_X.length;
+			put(x + radius * RIM_X[k], y + radius * RIM_Y[k], 0, 0);
+			put(x + radius * RIM_X[next], y + radius * RIM_Y[next], 0, 0);
+		}
+    }
+
+    /**
+     * Method to add a filled circle, as a fan of triangles from the
+     * first point on its rim.
+     * @param a double holding the horizontal location of the circle.
+     * @param a double holding the vertical location of the circle.
+     * @param a double holding the radius of the circle.
+     */
+    public void filledCircle(double x, double y, double radius) {
+		begin(TRIANGLES, 0, 3 * (RIM_X.length - 2));
+		for (int k = 1; k < RIM_X.length - 1; k++) {
+			put(x + radius * RIM_X[0], y + radius * RIM_Y[0], 0, 0);
+			put(x + radius * RIM_X[k], y + radius * RIM_Y[k], 0, 0);
+			put(x + radius * RIM_X[k + 1], y + radius * RIM_Y[k + 1], 0, 0);
+		}
+    }
+
+    /**
+     * Method to add a filled rectangle, as two triangles.
+     * @param a double holding the left of the rectangle.
+     * @param a double holding the bottom of the rectangle.
+     * @param a double holding the right of the rectangle.
+     * @param a double holding the top of the rectangle.
+     */
+    public void rectangle(double x0, double y0, double x1, double y1) {
+		begin(TRIANGLES, 0, 6);
+		put(x0, y0, 0, 0);
+		put(x1, y0, 0, 0);
+		put(x1, y1, 0, 0);
+		put(x0, y0, 0, 0);
+		put(x1, y1, 0, 0);
+		put(x0, y1, 0, 0);
+    }
+
+    /**
+     * Method to add an asteroid: a hexagon mapped with a texture in two
+     * halves, as renderAsteroid() drew it before the batch, rotated
+     * about its centre.
+     * @param a double holding the horizontal location of the asteroid.
+     * @param a double holding the vertical location of the asteroid.
+     * @param an int holding the radius of the asteroid.
+     * @param a double holding the rotation of the asteroid in degrees.
+     * @param an int holding the texture to map onto the asteroid.
+     */
+    public void asteroid(double x, double y, int rad, double rotation, int texture) {
+		rotate(x, y, rotation);
+		begin(TRIANGLES, texture, 12);
+		double half = rad / 2;
+		// Top half
+		put(x - rad, y, 0, 0);
+		put(x - half, y + rad, 1, 0);
+		put(x + half, y + rad, 1, 1);
+		put(x - rad, y, 0, 0);
+		put(x + half, y + rad, 1, 1);
+		put(x + rad, y, 0, 1);
+		// Bottom half
+		put(x + rad, y, 0, 1);
+		put(x + half, y - rad, 1, 1);
+		put(x - half, y - rad, 1, 0);
+		put(x + rad, y, 0, 1);
+		put(x - half, y - rad, 1, 0);
+		put(x - rad, y, 0, 0);
+		identity();
+    }
+
+    /**
+     * Method to make room for vertices, and add them to the last run
+     * if it has the same primitive and texture, or start a new run.
+     * @param an int holding the primitive.
+     * @param an int holding the texture, or 0 for none.
+     * @param an int holding the number of vertices to be added.
+     */
+    private void begin(int mode, int texture, int added) {
+		if (this.count + added > this.vertices.length / 2) {
+			int capacity = Math.max(2 * (this.count + added), this.vertices.length);
+			this.vertices = Arrays.copyOf(this.vertices, 2 * capacity);
+			this.texCoords = Arrays.copyOf(this.texCoords, 2 * capacity);
+			this.colours = Arrays.copyOf(this.colours, 3 * capacity);
+		}
+		int last = this.runs - 1;
+		if ((last >= 0) && (this.runModes[last] == mode) && (this.runTextures[last] == texture)) {
+			this.runCounts[last] += added;
+			return;
+		}
+		if (this.runs == this.runModes.length) {
+			this.runModes = Arrays.copyOf(this.runModes, 2 * this.runs);
+			this.runTextures = Arrays.copyOf(this.runTextures, 2 * this.runs);
+			this.runFirsts = Arrays.copyOf(this.runFirsts, 2 * this.runs);
+			this.runCounts = Arrays.copyOf(this.runCounts, 2 * this.runs);
+		}
+		this.runModes[this.runs] = mode;
+		this.runTextures[this.runs] = texture;
+		this.runFirsts[this.runs] = this.count;
+		this.runCounts[this.runs] = added;
+		this.runs++;
+    }
+
+    /**
+     * Method to add a vertex, rotated about the current centre, in the
+     * current colour. Room must have been made by begin().
+     * @param a double holding the horizontal location.
+     * @param a double holding the vertical location.
+     * @param a double holding the horizontal texture coordinate.
+     * @param a double holding the vertical texture coordinate.
+     */
+    private void put(double x, double y, double s, double t) {
+		double dx = x - this.centreX;
+		double dy = y - this.centreY;
+		int v = 2 * this.count;
+		this.vertices[v] = (float)(this.centreX + dx * this.cos - dy * this.sin);
+		this.vertices[v + 1] = (float)(this.centreY + dx * this.sin + dy * this.cos);
+		this.texCoords[v] = (float)s;
+		this.texCoords[v + 1] = (float)t;
+		int c = 3 * this.count;
+		this.colours[c] = this.red;
+		this.colours[c + 1] = this.green;
+		this.colours[c + 2] = this.blue;
+		this.count++;
+    }
+
+    /**
+     * Method to draw every run added since the last flush, and empty
+     * the batch.
+     * @param the backend to draw with.
+     */
+    public void flush(DrawBackend backend) {
+		if (this.sorted && (this.runs > 1)) {
+			sort();
+		}
+		this.lastRuns = this.runs;
+		if (this.count > 0) {
+			backend.setArrays(this.vertices, this.texCoords, this.colours);
+			for (int r = 0; r < this.runs; r++) {
+				backend.drawArrays(this.runModes[r], this.runTextures[r], this.runFirsts[r],
+					this.runCounts[r]);
+			}
+			backend.finish();
+		}
+		clear();
+    }
+
+    /**
+     * Method to find the order a run is drawn in by a sorted batch.
+     * @param an int holding the run.
+     * @return a long which is smaller for runs drawn first.
+     */
+    private long key(int r) {
+		long textured = (this.runTextures[r] == 0) ? 1 : 0;
+		// TRIANGLES is greater than LINES, so comes first
+		return (textured << 48) | ((long)this.runTextures[r] << 8) | (255 - this.runModes[r]);
+    }
+
+    /**
+     * Method to copy the vertices into order, joining every run with
+     * the same texture and primitive into one.
+     */
+    private void sort() {
+		if (this.sortedVertices.length < this.vertices.length) {
+			this.sortedVertices = new float[this.vertices.length];
+			this.sortedTexCoords = new float[this.texCoords.length];
+			this.sortedColours = new float[this.colours.length];
+		}
+		if (this.sortedModes.length < this.runModes.length) {
+			this.sortedModes = new int[this.runModes.length];
+			this.sortedTextures = new int[this.runModes.length];
+			this.sortedFirsts = new int[this.runModes.length];
+			this.sortedCounts = new int[this.runModes.length];
+		}
+		// There are only ever a few kinds of run, so each kind is
+		// picked out in turn from smallest key to largest.
+		int out = 0;
+		int sortedRuns = 0;
+		long previous = Long.MIN_VALUE;
+		while (true) {
+			long next = Long.MAX_VALUE;
+			int first = -1;
+			for (int r = 0; r < this.runs; r++) {
+				long key = key(r);
+				if ((key > previous) && (key < next)) {
+					next = key;
+					first = r;
+				}
+			}
+			if (first == -1) {
+				break;
+			}
+			int start = out;
+			for (int r = first; r < this.runs; r++) {
+				if (key(r) == next) {
+					int from = this.runFirsts[r];
+					int n = this.runCounts[r];
+					System.arraycopy(this.vertices, 2 * from, this.sortedVertices, 2 * out, 2 * n);
+					System.arraycopy(this.texCoords, 2 * from, this.sortedTexCoords, 2 * out, 2 * n);
+					System.arraycopy(this.colours, 3 * from, this.sortedColours, 3 * out, 3 * n);
+					out += n;
+				}
+			}
+			this.sortedModes[sortedRuns] = this.runModes[first];
+			this.sortedTextures[sortedRuns] = this.runTextures[first];
+			this.sortedFirsts[sortedRuns] = start;
+			this.sortedCounts[sortedRuns] = out - start;
+			sortedRuns++;
+			previous = next;
+		}
+		// Swap the sorted arrays in, keeping the old ones to sort into
+		// next time.
+		float[] f = this.vertices;
+		this.vertices = this.sortedVertices;
+		this.sortedVertices = f;
+		f = this.texCoords;
+		this.texCoords = this.sortedTexCoords;
+		this.sortedTexCoords = f;
+		f = this.colours;
+		this.colours = this.sortedColours;
+		this.sortedColours = f;
+		int[] i = this.runModes;
+		this.runModes = this.sortedModes;
+		this.sortedModes = i;
+		i = this.runTextures;
+		this.runTextures = this.sortedTextures;
+		this.sortedTextures = i;
+		i = this.runFirsts;
+		this.runFirsts = this.sortedFirsts;
+		this.sortedFirsts = i;
+		i = this.runCounts;
+		this.runCounts = this.sortedCounts;
+		this.sortedCounts = i;
+		this.runs = sortedRuns;
+    }
+
+    /**
+     * Method to empty the batch without drawing it.
+     */
+    public void clear() {
+		this.count = 0;
+		this.runs = 0;
+		identity();
+    }
+
+    /**
+     * Accessor method to get the number of vertices added since the
+     * last flush.
+     * @return an int holding the number of vertices.
+     */
+    public int getVertexCount() {
+		return this.count;
+    }
+
+    /**
+     * Accessor method to get the number of runs added since the last
+     * flush, each of which is drawn with one call.
+     * @return an int holding the number of runs.
+     */
+    public int getRunCount() {
+		return this.runs;
+    }
+
+    /**
+     * Accessor method to get the number of runs drawn by the last
+     * flush, after any sorting.
+     * @return an int holding the number of runs.
+     */
+    public int getLastRunCount() {
+		return this.lastRuns;
+    }
+}
@@ -12,16 +12,23 @@ public class EnemyShip extends SpaceObject {
 
     private double PI = 3.1415926535;
 
+    /**
+     * The random source used to decide when and where to fire.
+     */
+    private RandomSource random;
+
     /**
      * Constructor for the enemy ship.
+     * @param the random source of the world the ship is in.
      */
-    public EnemyShip() {
+    public EnemyShip(RandomSource random) {
 		// Call constructor in parent class
 		super(0, 0);
+		this.random = random;
 		// Override exist flag which is set to true in super constructor
 		super.setExists(false);
 		// Initialise some basic properties in the parent class
-		super.initRandomObject();
+		super.initRandomObject(random);
 		// Set the spinning speed of the ship
 		super.setRotateSpeed(8);
     }
@@ -32,11 +39,11 @@ public class EnemyShip extends SpaceObject {
      */
     public void generateFiring(Laser baddieLaser, SpaceShip ship) {
 		// If baddie is not already firing and random element is true
-		if ((!baddieLaser.getExists()) && (Math.random() > 0.99)) {
+		if ((!baddieLaser.getExists()) && (this.random.nextDouble() > 0.99)) {
 			// Targetting algorithm for shooting at goodie ship
 			double xDiff;
 			double yDiff;
-			int random = (int)(20* Math.random() - 10);
+			int random = (int)(20* this.random.nextDouble() - 10);
 			// If enemy ship is left of goodie ship
 			if (ship.getXLocation() > super.getXLocation()) {
 				// Calculate horizontal difference
@@ -0,0 +1,239 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * The class which keeps the statistics shown by the overlay drawn
+ * over the game: the time between each of the last few frames, the
+ * ticks the world advanced by between them, the time the garbage
+ * collector has paused the game for, and the time taken to load
+ * textures. Only to be used by the thread which draws. Every buffer
+ * is allocated up front, so keeping the statistics makes no garbage.
+ */
+
+public class FrameStats {
+
+    /**
+     * The number of frames kept.
+     */
+    public static final int HISTORY = 128;
+
+    /**
+     * The time allowed for each frame, in nanoseconds.
+     */
+    private long budget;
+
+    /**
+     * Rings holding, for each of the last frames, the time since the
+     * frame before, the ticks the world advanced by, and the time the
+     * garbage collector took, in milliseconds.
+     */
+    private long[] frameNanos = new long[HISTORY];
+    private long[] ticks = new long[HISTORY];
+    private long[] gcMillis = new long[HISTORY];
+
+    /**
+     * The place in the rings the next frame is written to, and the
+     * number of frames written.
+     */
+    private int next;
+    private long frames;
+
+    /**
+     * The time the last frame started, and the tick of the world it
+     * drew.
+     */
+    private long lastStart;
+    private long lastTick;
+
+    /**
+     * The garbage collectors, and the total time and number of
+     * collections as of the last frame.
+     */
+    private GarbageCollectorMXBean[] collectors;
+    private long gcTotalMillis;
+    private long gcCount;
+
+    /**
+     * The time taken by the last texture load, and the number of
+     * loads.
+     */
+    private long textureNanos;
+    private int textureLoads;
+
+    /**
+     * Constructor for the statistics.
+     * @param a long holding the time allowed for each frame, in
+     * nanoseconds.
+     */
+    public FrameStats(long budget) {
+		this.budget = budget;
+		List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+		this.collectors = beans.toArray(new GarbageCollectorMXBean[beans.size()]);
+		readCollectors();
+    }
+
+    /**
+     * Method to record the start of a frame.
+     * @param a long holding the time the frame started, from
+     * System.nanoTime().
+     * @param a long holding the tick of the world the frame draws.
+     */
+    public void frame(long now, long tick) {
+		long gcBefore = this.gcTotalMillis;
+		readCollectors();
+		if (this.frames > 0) {
+			this.frameNanos[this.next] = now - this.lastStart;
+			this.ticks[this.next] = tick - this.lastTick;
+			this.gcMillis[this.next] = this.gcTotalMillis - gcBefore;
+			this.next = (this.next + 1) % HISTORY;
+		}
+		this.frames++;
+		this.lastStart = now;
+		this.lastTick = tick;
+    }
+
+    /**
+     * Method to read the total time and number of collections from
+     * every garbage collector.
+     */
+    private void readCollectors() {
+		long time = 0;
+		long count = 0;
+		for (int c = 0; c < this.collectors.length; c++) {
+			time += Math.max(0, this.collectors[c].getCollectionTime());
+			count += Math.max(0, this.collectors[c].getCollectionCount());
+		}
+		this.gcTotalMillis = time;
+		this.gcCount = count;
+    }
+
+    /**
+     * Method to record the time taken to load textures.
+     * @param a long holding the time in nanoseconds.
+     */
+    public void textureLoad(long nanos) {
+		this.textureNanos = nanos;
+		this.textureLoads++;
+    }
+
+    /**
+     * Accessor method to get the number of frames in the rings.
+     * @return an int holding the number of frames.
+     */
+    public int getCount() {
+		return (int)Math.min(HISTORY, Math.max(0, this.frames - 1));
+    }
+
+    /**
+     * Accessor method to get the time between a recent frame and the
+     * frame before it.
+     * @param an int holding how many frames ago the frame was, from 0
+     * for the latest to getCount() - 1.
+     * @return a long holding the time in nanoseconds.
+     */
+    public long getFrameNanos(int age) {
+		return this.frameNanos[(this.next - 1 - age + 2 * HISTORY) % HISTORY];
+    }
+
+    /**
+     * Accessor method to get the mean time between the recent frames.
+     * @return a long holding the time in nanoseconds.
+     */
+    public long getMeanFrameNanos() {
+		int count = getCount();
+		long total = 0;
+		for (int age = 0; age < count; age++) {
+			total += getFrameNanos(age);
+		}
+		return total / Math.max(1, count);
+    }
+
+    /**
+     * Accessor method to get the longest time between the recent
+     * frames.
+     * @return a long holding the time in nanoseconds.
+     */
+    public long getMaxFrameNanos() {
+		long max = 0;
+		for (int age = 0; age < getCount(); age++) {
+			max = Math.max(max, getFrameNanos(age));
+		}
+		return max;
+    }
+
+    /**
+     * Accessor method to get the number of recent frames which took
+     * longer than the budget.
+     * @return an int holding the number of frames.
+     */
+    public int getOverruns() {
+		int overruns = 0;
+		for (int age = 0; age < getCount(); age++) {
+			if (getFrameNanos(age) > this.budget) {
+				overruns++;
+			}
+		}
+		return overruns;
+    }
+
+    /**
+     * Accessor method to get the mean number of ticks the world
+     * advanced by between the recent frames.
+     * @return a double holding the number of ticks.
+     */
+    public double getTicksPerFrame() {
+		int count = getCount();
+		long total = 0;
+		for (int age = 0; age < count; age++) {
+			total += this.ticks[(this.next - 1 - age + 2 * HISTORY) % HISTORY];
+		}
+		return (double)total / Math.max(1, count);
+    }
+
+    /**
+     * Accessor method to get the time the garbage collector took
+     * during the recent frames.
+     * @return a long holding the time in milliseconds.
+     */
+    public long getRecentGcMillis() {
+		long total = 0;
+		for (int age = 0; age < getCount(); age++) {
+			total += this.gcMillis[(this.next - 1 - age + 2 * HISTORY) % HISTORY];
+		}
+		return total;
+    }
+
+    /**
+     * Accessor method to get the number of collections since the JVM
+     * started.
+     * @return a long holding the number of collections.
+     */
+    public long getGcCount() {
+		return this.gcCount;
+    }
+
+    /**
+     * Accessor method to get the time the last texture load took.
+     * @return a long holding the time in nanoseconds.
+     */
+    public long getTextureNanos() {
+		return this.textureNanos;
+    }
+
+    /**
+     * Accessor method to get the number of texture loads.
+     * @return an int holding the number of loads.
+     */
+    public int getTextureLoads() {
+		return this.textureLoads;
+    }
+
+    /**
+     * Accessor method to get the time allowed for each frame.
+     * @return a long holding the time in nanoseconds.
+     */
+    public long getBudget() {
+		return this.budget;
+    }
+}
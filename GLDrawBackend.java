@@ -0,0 +1,60 @@
+import gl4java.GLEnum;
+import gl4java.GLFunc;
+
+/**
+ * The class which draws the vertices collected by DrawBatch.class with
+ * vertex arrays, one glDrawArrays call for each run. Texturing and the
+ * client arrays are set through the canvas's GLStateCache.class, so
+ * they are only changed when a run needs them changed.
+ */
+
+public class GLDrawBackend implements DrawBackend {
+
+    /**
+     * The GL functions of the canvas.
+     */
+    private GLFunc gl;
+
+    /**
+     * The cache the state of the canvas is set through.
+     */
+    private GLStateCache state;
+
+    /**
+     * Constructor for the backend.
+     * @param the GL functions of the canvas.
+     * @param the cache the state of the canvas is set through.
+     */
+    public GLDrawBackend(GLFunc gl, GLStateCache state) {
+		this.gl = gl;
+		this.state = state;
+    }
+
+    public void setArrays(float[] vertices, float[] texCoords, float[] colours) {
+		this.state.enableClientState(GLEnum.GL_VERTEX_ARRAY);
+		this.state.enableClientState(GLEnum.GL_TEXTURE_COORD_ARRAY);
+		this.state.enableClientState(GLEnum.GL_COLOR_ARRAY);
+		this.gl.glVertexPointer(2, GLEnum.GL_FLOAT, 0, vertices);
+		this.gl.glTexCoordPointer(2, GLEnum.GL_FLOAT, 0, texCoords);
+		this.gl.glColorPointer(3, GLEnum.GL_FLOAT, 0, colours);
+    }
+
+    public void drawArrays(int mode, int texture, int first, int count) {
+		if (texture == 0) {
+			this.state.disable(GLEnum.GL_TEXTURE_2D);
+		}
+		else {
+			this.state.bindTexture(texture);
+			this.state.enable(GLEnum.GL_TEXTURE_2D);
+		}
+		this.gl.glDrawArrays(mode, first, count);
+		// The colour is left undefined by drawing with a colour array
+		this.state.invalidateColour();
+    }
+
+    public void finish() {
+		// The arrays are left on, as drawing between glBegin and
+		// glEnd does not read them.
+		this.state.disable(GLEnum.GL_TEXTURE_2D);
+    }
+}
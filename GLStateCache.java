@@ -0,0 +1,253 @@
+import gl4java.GLEnum;
+import gl4java.GLFunc;
+
+/**
+ * The class which sits in front of the GL state calls made by the
+ * canvas, remembers the state they set, and drops any call which would
+ * set the state to what it already is: enabling texturing when it is
+ * already on, binding the texture already bound, or setting the colour
+ * already set. Every such call made by the canvas must go through the
+ * cache, or the cache must be told with invalidate(), so that what it
+ * remembers is the state GL is really in.
+ *
+ * The calls asked for and the calls dropped are counted for each
+ * frame, between beginFrame() and endFrame().
+ */
+
+public class GLStateCache {
+
+    /**
+     * The capabilities whose state is remembered. Others are always
+     * passed on.
+     */
+    private static final int[] CAPS = { GLEnum.GL_TEXTURE_2D, GLEnum.GL_BLEND };
+    private static final int[] ARRAYS = {
+		GLEnum.GL_VERTEX_ARRAY, GLEnum.GL_TEXTURE_COORD_ARRAY, GLEnum.GL_COLOR_ARRAY
+    };
+
+    /**
+     * Values for a state which is on, off, or not known.
+     */
+    private static final byte OFF = 0;
+    private static final byte ON = 1;
+    private static final byte UNKNOWN = 2;
+
+    /**
+     * The GL functions of the canvas.
+     */
+    private GLFunc gl;
+
+    /**
+     * The state of each remembered capability and client array.
+     */
+    private byte[] caps = new byte[CAPS.length];
+    private byte[] arrays = new byte[ARRAYS.length];
+
+    /**
+     * The texture bound, or -1 if not known.
+     */
+    private int texture;
+
+    /**
+     * The colour set, and whether it is known.
+     */
+    private float red;
+    private float green;
+    private float blue;
+    private boolean colourKnown;
+
+    /**
+     * Counts of the calls asked for and dropped in the frame being
+     * drawn, the last frame drawn, and in total.
+     */
+    private int frameRequested;
+    private int frameDropped;
+    private int lastRequested;
+    private int lastDropped;
+    private long totalDropped;
+
+    /**
+     * Constructor for the cache. Nothing about the state is known
+     * until it is first set.
+     * @param the GL functions of the canvas.
+     */
+    public GLStateCache(GLFunc gl) {
+		this.gl = gl;
+		invalidate();
+    }
+
+    /**
+     * Method to forget everything about the state, for example after
+     * GL has been used without going through the cache.
+     */
+    public void invalidate() {
+		for (int c = 0; c < this.caps.length; c++) {
+			this.caps[c] = UNKNOWN;
+		}
+		for (int a = 0; a < this.arrays.length; a++) {
+			this.arrays[a] = UNKNOWN;
+		}
+		this.texture = -1;
+		this.colourKnown = false;
+    }
+
+    /**
+     * Method to forget the colour, which GL leaves undefined after
+     * drawing with a colour array.
+     */
+    public void invalidateColour() {
+		this.colourKnown = false;
+    }
+
+    /**
+     * Method to turn a capability on, as glEnable().
+     * @param an int holding the capability.
+     */
+    public void enable(int cap) {
+		if (set(CAPS, this.caps, cap, ON)) {
+			this.gl.glEnable(cap);
+		}
+    }
+
+    /**
+     * Method to turn a capability off, as glDisable().
+     * @param an int holding the capability.
+     */
+    public void disable(int cap) {
+		if (set(CAPS, this.caps, cap, OFF)) {
+			this.gl.glDisable(cap);
+		}
+    }
+
+    /**
+     * Method to turn a client array on, as glEnableClientState().
+     * @param an int holding the array.
+     */
+    public void enableClientState(int array) {
+		if (set(ARRAYS, this.arrays, array, ON)) {
+			this.gl.glEnableClientState(array);
+		}
+    }
+
+    /**
+     * Method to turn a client array off, as glDisableClientState().
+     * @param an int holding the array.
+     */
+    public void disableClientState(int array) {
+		if (set(ARRAYS, this.arrays, array, OFF)) {
+			this.gl.glDisableClientState(array);
+		}
+    }
+
+    /**
+     * Method to record that a state is to be set, and find whether the
+     * call needs to be made.
+     * @param the array of states remembered.
+     * @param the array holding the state of each.
+     * @param an int holding the state to set.
+     * @param a byte holding the value to set it to.
+     * @return a boolean which is true if the call must be made.
+     */
+    private boolean set(int[] names, byte[] states, int name, byte value) {
+		this.frameRequested++;
+		for (int k = 0; k < names.length; k++) {
+			if (names[k] == name) {
+				if (states[k] == value) {
+					this.frameDropped++;
+					return false;
+				}
+				states[k] = value;
+				return true;
+			}
+		}
+		return true;
+    }
+
+    /**
+     * Method to bind a texture, as glBindTexture(GL_TEXTURE_2D, ...).
+     * @param an int holding the texture.
+     */
+    public void bindTexture(int texture) {
+		this.frameRequested++;
+		if (texture == this.texture) {
+			this.frameDropped++;
+			return;
+		}
+		this.texture = texture;
+		this.gl.glBindTexture(GLEnum.GL_TEXTURE_2D, texture);
+    }
+
+    /**
+     * Method to forget a texture which has been deleted, so that a new
+     * texture given the same name is bound again.
+     * @param an int holding the texture.
+     */
+    public void forgetTexture(int texture) {
+		if (texture == this.texture) {
+			this.texture = -1;
+		}
+    }
+
+    /**
+     * Method to set the colour, as glColor3f().
+     * @param a float holding the red component.
+     * @param a float holding the green component.
+     * @param a float holding the blue component.
+     */
+    public void color3f(float red, float green, float blue) {
+		this.frameRequested++;
+		if (this.colourKnown && (red == this.red) && (green == this.green) && (blue == this.blue)) {
+			this.frameDropped++;
+			return;
+		}
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		this.colourKnown = true;
+		this.gl.glColor3f(red, green, blue);
+    }
+
+    /**
+     * Method to start counting the calls of a frame.
+     */
+    public void beginFrame() {
+		this.frameRequested = 0;
+		this.frameDropped = 0;
+    }
+
+    /**
+     * Method to finish counting the calls of a frame.
+     */
+    public void endFrame() {
+		this.lastRequested = this.frameRequested;
+		this.lastDropped = this.frameDropped;
+		this.totalDropped += this.frameDropped;
+    }
+
+    /**
+     * Accessor method to get the number of state calls asked for in
+     * the last frame.
+     * @return an int holding the number of calls.
+     */
+    public int getLastRequested() {
+		return this.lastRequested;
+    }
+
+    /**
+     * Accessor method to get the number of state calls dropped in the
+     * last frame because they would not have changed anything.
+     * @return an int holding the number of calls.
+     */
+    public int getLastDropped() {
+		return this.lastDropped;
+    }
+
+    /**
+     * Accessor method to get the number of state calls dropped since
+     * the cache was created.
+     * @return a long holding the number of calls.
+     */
+    public long getTotalDropped() {
+		return this.totalDropped;
+    }
+}
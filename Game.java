@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 
 /**
  * The class which creates and manages the array of asteroids
@@ -10,33 +11,35 @@
 public class Game {
 
     /**
-     * Holds the current level the player is on. Number of
-     * starting asteroids is two, so starting level is two.
+     * The number of asteroids the asteroid field is created to hold.
+     * This is enough for the first level's asteroids to split, and
+     * the field grows for later levels.
      */
-    private int level = 2;
+    public static final int DEFAULT_CAPACITY = 128;
 
     /**
-     * Holds the current background index.
+     * Holds the current level the player is on. Number of
+     * starting asteroids is two, so starting level is two.
      */
-    private int background = 1;
+    private int level = 2;
 
     /**
-     * Array to hold the asteroids.
+     * The number of backgrounds, which are used in turn.
      */
-    private Asteroid[] asteroids;
+    public static final int BACKGROUNDS = 10;
 
     /**
-     * Total number of asteroids that are held in the array.
-     * Count is reset each level.
+     * Holds the current background index.
      */
-    private int asteroidCount;
+    private int background = 1;
 
     /**
-     * A count for the number of asteroids currently on screen.
-     * When this value reaches zero, the level is increased, and
-     * more asteroids generated.
+     * The field which holds the asteroids. Only asteroids which
+     * are still on screen are held, so the number of asteroids in
+     * the field is the number remaining. When this reaches zero,
+     * the level is increased, and more asteroids generated.
      */
-    private int asteroidsRemaining;    
+    private AsteroidField asteroids;
 
     /**
      * Declare the 'shell' to hold a copy of the ship object which 
@@ -50,15 +53,41 @@ public class Game {
      */
     private CollisionDetector cd;
 
+    /**
+     * The random source of the world the game is in, used for every
+     * random choice the game makes.
+     */
+    private RandomSource random;
+
     private int timer;
-    private int lifeTime = (int)(300* Math.random()) + 400;
+    private int lifeTime;
+
+    public Game(SpaceShip ship, CollisionDetector cd, RandomSource random) {
+		this(ship, cd, random, DEFAULT_CAPACITY, AsteroidField.MAX_CAPACITY);
+    }
 
-    public Game(SpaceShip ship, CollisionDetector cd) {
+    /**
+     * Constructor for a game with an asteroid field of a given size,
+     * for example for stress runs with very many asteroids.
+     * @param the goodie spaceship.
+     * @param the collision detector.
+     * @param the random source of the world the game is in.
+     * @param an int holding the number of asteroids the field is
+     * created to hold.
+     * @param an int holding the most asteroids the field can grow to
+     * hold.
+     */
+    public Game(SpaceShip ship, CollisionDetector cd, RandomSource random, int capacity,
+		int maxCapacity) {
 		// Pass the object references received as arguments into
 		// the 'shell' objects created earlier to make these objects
 		// visible to the entire class.
 		this.ship = ship;
 		this.cd = cd;
+		this.random = random;
+		this.lifeTime = (int)(300* random.nextDouble()) + 400;
+		// The field is kept for the whole game and reused each level
+		this.asteroids = new AsteroidField(capacity, maxCapacity, random);
 		// Initialise level
 		this.initLevel(ship.getXLocation(), ship.getYLocation());
     }
@@ -72,8 +101,8 @@ public class Game {
      * ship object.
      */
     public void initLevel(double xShip, double yShip) {
-		// Reset the array to null
-		this.asteroids = new Asteroid[120];
+		// Start with an empty asteroid field
+		this.asteroids.clear();
 		double xAst, yAst;
 		// Boolean to act as a flag indicating whether the random
 		// location generated as a starting position for the asteroid
@@ -83,46 +112,24 @@ public class Game {
 		for (int i = 0; i < level; i++) {
 	    	// ensure asteroids are not generated on top of ship!
 	    	do {
-				xAst = 300* Math.random();
-				yAst = 300* Math.random();		
+				xAst = 300* this.random.nextDouble();
+				yAst = 300* this.random.nextDouble();		
 				if (!cd.collision(xShip, yShip, xAst, yAst, 30, 30)) {					
 		    		positionOk = true;
 				}
 	    	} while (!positionOk);
 			// Create new large asteroid in random location
-			this.asteroids[i] = new Asteroid(12, xAst, yAst);
+			this.asteroids.add(12, xAst, yAst);
 		}
-		// Reset the asteroids remaining
-		this.asteroidsRemaining = level;
-		// Reset the total number of asteroids produced
-		this.asteroidCount = level;
     }
 
     /**
      * Accessor method to get the number of asteroids in the
-     * array which should be drawn.
+     * field which should be drawn.
      * @return an int holding the number of remaining asteroids.
      */
     public int getAsteroidsRemaining() {
-		// Reset any previous counts
-		this.asteroidsRemaining = 0;
-		// Count up asteroids in existence
-		for (int i = 0; i < this.asteroidCount; i++) {
-			if (this.asteroids[i].getExists()) {
-				this.asteroidsRemaining++;
-			}
-		}
-		return this.asteroidsRemaining;
-    }
-
-    /**
-     * Accessor method to get the total number of asteroids that
-     * have been created in the current level.
-     * @return an int holding the number of asteroids that have
-     * been produced in the current level.
-     */
-    public int getAsteroidCount() {
-		return this.asteroidCount;
+		return this.asteroids.getCount();
     }
 
     /**
@@ -133,6 +140,15 @@ public class Game {
 		return this.level;
     }
 
+    /**
+     * Mutator method to set the current level, which is the number
+     * of asteroids the next call to initLevel() generates.
+     * @param an int holding the new level.
+     */
+    void setLevel(int level) {
+		this.level = level;
+    }
+
     /**
      * Method to check whether the level needs incrementing with
      * regards to the number of asteroids remaining.
@@ -154,7 +170,7 @@ public class Game {
 				initLevel(ship.getXLocation(), ship.getYLocation());
 			}
 			// If backgrounds run out...
-			if (this.background > 10) {
+			if (this.background > BACKGROUNDS) {
 				// Go back to first background
 				this.background = 1;
 			}
@@ -162,32 +178,33 @@ public class Game {
     }
 
     /**
-     * Accessor method to get one asteroid from the array.
-     * @return one asteroid object from the asteroids array.
+     * Accessor method to get the field holding the asteroids.
+     * @return the asteroid field.
      */
-    public Asteroid getAsteroid(int i) {
-		return this.asteroids[i];
+    public AsteroidField getAsteroids() {
+		return this.asteroids;
     }
 
     /**
      * Method to split a large or medium asteroid into smaller
-     * asteroids. Updates properties accordingly.
-     * @param the asteroid to be split up.
+     * asteroids. Updates properties accordingly. If the field is
+     * already as large as it can grow, removing the asteroid frees
+     * room for only one of the smaller asteroids, so only one is
+     * created.
+     * @param the index of the asteroid to be split up.
      * @param the radius of the asteroids that result from the
      * split.
      */
-    public void splitAsteroid(Asteroid ast, int newRadius) {
-		double x = ast.getXLocation();
-		double y = ast.getYLocation();
+    public void splitAsteroid(int i, int newRadius) {
+		double x = this.asteroids.getXLocation(i);
+		double y = this.asteroids.getYLocation(i);
 		// Destroy old asteroid
-		ast.setExists(false);
+		this.asteroids.remove(i);
 		// Create first smaller asteroid
-		this.asteroids[asteroidCount] = new Asteroid(newRadius, x, y);
+		this.asteroids.add(newRadius, x, y);
 		// Create second smaller asteroid
-		this.asteroids[asteroidCount + 1] = new Asteroid(newRadius, x, y);
-		// Increase total number of asteroids and asteroids remaining
-		this.asteroidCount += 2;
-		this.asteroidsRemaining++;
+		this.asteroids.add(newRadius, x, y);
+		TickProfiler.count(TickProfiler.SPLITS, 1);
     }
 
     /**
@@ -196,10 +213,10 @@ public class Game {
      */
     public void showEnemyShip(EnemyShip baddie) {
 		// If ship not already displayed and random element is true...
-		if ((!baddie.getExists()) && (Math.random() > 0.999)) {
+		if ((!baddie.getExists()) && (this.random.nextDouble() > 0.999)) {
 			// Show enemy ship
 			baddie.setExists(true);
-			baddie.initRandomObject();
+			baddie.initRandomObject(this.random);
 		}
     }
 
@@ -211,10 +228,10 @@ public class Game {
 		// If power up not already displayed...
 		if (!p.getExists()) {
             // ...and random element is true...
-	    	if (Math.random() > 0.999) {
+	    	if (this.random.nextDouble() > 0.999) {
 				// Show power up
 				p.setExists(true);
-				p.initRandomObject();
+				p.initRandomObject(this.random);
             }
 		}
 		else { // If powerup object is being displayed...
@@ -226,17 +243,35 @@ public class Game {
 				p.setExists(false);
 				// Reset timer and lifetime of next powerup (random)
 				timer = 0;
-				lifeTime = (int)(300* Math.random()) + 200;
+				lifeTime = (int)(300* this.random.nextDouble()) + 200;
 			}
 		}
     }
 
+    /**
+     * Accessor method to get the number of the current background.
+     * @return an int holding the number, from 1 to 10.
+     */
+    public int getBackgroundNumber() {
+		return this.background;
+    }
+
     /**
      * Method to get the file holding the current background.
      * @return a String holding the filename of the current
      * background.
      */
     public String getBackground() {
+		return getBackground(this.background);
+    }
+
+    /**
+     * Method to get the file holding a background.
+     * @param an int holding the number of the background, from 1 to
+     * BACKGROUNDS.
+     * @return a String holding the filename of the background.
+     */
+    public static String getBackground(int background) {
 		// Use background index to switch filename
 		switch(background) {
 			case 1:
@@ -261,6 +296,31 @@ public class Game {
 				return "level10.png";
 		}
 		return null;
-    }	    
+    }
+
+    /**
+     * Method to write the state of the game, including every
+     * asteroid, into a snapshot.
+     * @param the buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+		buffer.putInt(this.level);
+		buffer.putInt(this.background);
+		buffer.putInt(this.timer);
+		buffer.putInt(this.lifeTime);
+		this.asteroids.writeState(buffer);
+    }
+
+    /**
+     * Method to read the state of the game from a snapshot written
+     * by writeState().
+     * @param the buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+		this.level = buffer.getInt();
+		this.background = buffer.getInt();
+		this.timer = buffer.getInt();
+		this.lifeTime = buffer.getInt();
+		this.asteroids.readState(buffer);
+    }
 }
-	
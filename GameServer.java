@@ -0,0 +1,535 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * The class which hosts an Arena.class for many players over TCP. A
+ * single thread runs a non-blocking selector loop which accepts
+ * players, reads their controls as they arrive, steps the arena at
+ * World.TICKS_PER_SECOND and sends every player the new state.
+ *
+ * The state is encoded once per tick into one shared direct buffer,
+ * and written to every player straight from it, each player only
+ * keeping how far through the frame it has got, so sending to a
+ * player copies and allocates nothing. A player who cannot keep up
+ * has the rest of the frame they are part way through kept for them,
+ * and misses frames until it has been sent.
+ *
+ * Messages from players are single bytes, each holding the control
+ * bits (World.LEFT and so on) from then on. Messages to players are
+ * frames:
+ *   int       length of the rest of the frame
+ *   byte      HELLO, then int player id           (sent once)
+ *   byte      STATE, then int tick, short level,
+ *             short players, each:   int id, short x, short y,
+ *                                    short rotation, byte flags,
+ *                                    int score, byte shields,
+ *                                    short laser x, short laser y
+ *             short asteroids, each: short x, short y,
+ *                                    short rotation, byte radius
+ * Locations are quantized with DeltaState.quantizeField().
+ *
+ * If given a view radius, each player is instead sent only what is
+ * near their own ship, in INTEREST frames written for them by an
+ * InterestManager.class.
+ *
+ * Run with:
+ *   java GameServer [port] [seed] [view radius]
+ */
+
+public class GameServer {
+
+    /**
+     * The types of frame sent to players.
+     */
+    public static final byte HELLO = 1;
+    public static final byte STATE = 2;
+    public static final byte INTEREST = 3;
+
+    /**
+     * Bits of the flags sent for each player.
+     */
+    public static final int EXISTS = 1;
+    public static final int ACCELERATING = 2;
+    public static final int HYPERSPACE = 4;
+    public static final int LASER_EXISTS = 8;
+    public static final int SHIELDS_DAMAGED = 16;
+
+    /**
+     * The port the server listens on if none is given.
+     */
+    public static final int DEFAULT_PORT = 7654;
+
+    /**
+     * The number of bytes sent for each player and asteroid.
+     */
+    static final int PLAYER_BYTES = 4 + 2 + 2 + 2 + 1 + 4 + 1 + 2 + 2;
+    static final int ASTEROID_BYTES = 2 + 2 + 2 + 1;
+
+    /**
+     * The arena being hosted.
+     */
+    private Arena arena;
+
+    /**
+     * The selector which waits for players to connect and send
+     * controls, and for sockets to have room to send frames.
+     */
+    private Selector selector;
+
+    /**
+     * The socket players connect to.
+     */
+    private ServerSocketChannel server;
+
+    /**
+     * The buffer the state is encoded into each tick, and sent to
+     * every player from.
+     */
+    private ByteBuffer frame = ByteBuffer.allocateDirect(64 * 1024);
+
+    /**
+     * The interest manager which works out what each player can see,
+     * or null if every player is sent everything.
+     */
+    private InterestManager interest;
+
+    /**
+     * Buffer used to read controls from players.
+     */
+    private ByteBuffer input = ByteBuffer.allocateDirect(256);
+
+    /**
+     * Counts of ticks, bytes sent and frames missed by players who
+     * could not keep up, since the statistics were last printed.
+     */
+    private long ticks;
+    private long bytesSent;
+    private long framesMissed;
+    private long tickNanos;
+
+    /**
+     * Constructor for the server, which starts listening straight
+     * away.
+     * @param an int holding the port to listen on, on this machine
+     * only.
+     * @param a long holding the seed of the arena.
+     * @param a double holding the distance from their ship within
+     * which players see objects, or 0 to send players everything.
+     */
+    public GameServer(int port, long seed, double radius) throws IOException {
+		this.arena = new Arena(seed);
+		if (radius > 0) {
+			this.interest = new InterestManager(radius);
+		}
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		this.server.bind(new InetSocketAddress("127.0.0.1", port), 1024);
+		this.server.configureBlocking(false);
+		this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		long seed = System.nanoTime();
+		double radius = 0;
+		if (args.length > 0) {
+			port = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			seed = Long.parseLong(args[1]);
+		}
+		if (args.length > 2) {
+			radius = Double.parseDouble(args[2]);
+		}
+		GameServer server = new GameServer(port, seed, radius);
+		System.out.println("Listening on port " + port);
+		server.run();
+    }
+
+    /**
+     * Method to run the server until the thread is interrupted.
+     */
+    public void run() throws IOException {
+		long nextTick = System.nanoTime() + World.TICK_NANOS;
+		long nextReport = System.nanoTime() + 5000000000L;
+		while (!Thread.currentThread().isInterrupted()) {
+			long wait = nextTick - System.nanoTime();
+			if (wait > 1000000) {
+				this.selector.select(wait / 1000000);
+			}
+			else {
+				this.selector.selectNow();
+			}
+			Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				handle(key);
+			}
+			long now = System.nanoTime();
+			if (now >= nextTick) {
+				tick();
+				this.tickNanos += System.nanoTime() - now;
+				nextTick += World.TICK_NANOS;
+				// Don't try to catch up after a stall
+				if (nextTick < now) {
+					nextTick = now + World.TICK_NANOS;
+				}
+			}
+			if (now >= nextReport) {
+				report();
+				nextReport = now + 5000000000L;
+			}
+		}
+		this.selector.close();
+		this.server.close();
+    }
+
+    /**
+     * Method to act on a socket which is ready.
+     * @param the key of the socket.
+     */
+    private void handle(SelectionKey key) {
+		try {
+			if (!key.isValid()) {
+				return;
+			}
+			if (key.isAcceptable()) {
+				accept();
+				return;
+			}
+			Client client = (Client)key.attachment();
+			if (key.isReadable()) {
+				read(client);
+			}
+			if (key.isValid() && key.isWritable()) {
+				client.flush();
+			}
+		}
+		catch (IOException e) {
+			close(key);
+		}
+    }
+
+    /**
+     * Method to accept every player waiting to connect, and send each
+     * their player id.
+     */
+    private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = this.server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			Client client = new Client(channel, this.arena.join());
+			client.key = channel.register(this.selector, SelectionKey.OP_READ, client);
+			ByteBuffer hello = ByteBuffer.allocate(9);
+			hello.putInt(5).put(HELLO).putInt(client.player.getId()).flip();
+			client.queue(hello);
+			client.flush();
+		}
+    }
+
+    /**
+     * Method to read the controls a player has sent. Only the last
+     * controls sent are held, but every press is kept until the
+     * next tick.
+     * @param the player's connection.
+     */
+    private void read(Client client) throws IOException {
+		while (true) {
+			this.input.clear();
+			int n = client.channel.read(this.input);
+			if (n < 0) {
+				throw new IOException("Closed by player");
+			}
+			if (n == 0) {
+				return;
+			}
+			for (int i = 0; i < n; i++) {
+				client.player.input(this.input.get(i));
+			}
+		}
+    }
+
+    /**
+     * Method to close a player's connection and remove them from the
+     * arena.
+     * @param the key of the player's socket.
+     */
+    private void close(SelectionKey key) {
+		key.cancel();
+		Object attachment = key.attachment();
+		if (attachment instanceof Client) {
+			Client client = (Client)attachment;
+			this.arena.leave(client.player);
+			try {
+				client.channel.close();
+			}
+			catch (IOException e) {
+				// Already closed
+			}
+		}
+    }
+
+    /**
+     * Method to step the arena and send every player the new state.
+     */
+    private void tick() {
+		this.arena.step();
+		this.ticks++;
+		if (this.interest != null) {
+			sendInterest();
+			return;
+		}
+		encode();
+		int end = this.frame.limit();
+		for (SelectionKey key : this.selector.keys()) {
+			if (key.attachment() instanceof Client) {
+				Client client = (Client)key.attachment();
+				try {
+					client.send(this.frame, end);
+				}
+				catch (IOException e) {
+					close(key);
+				}
+			}
+		}
+    }
+
+    /**
+     * Method to send every player what has changed near their ship.
+     * Each player's frame is written into the shared frame buffer in
+     * turn. A player still sending an earlier frame is skipped, and
+     * their view left alone, so their next frame is worked out from
+     * what they were last sent.
+     */
+    private void sendInterest() {
+		this.interest.prepare(this.arena);
+		for (SelectionKey key : this.selector.keys()) {
+			if (key.attachment() instanceof Client) {
+				Client client = (Client)key.attachment();
+				if (client.busy()) {
+					this.framesMissed++;
+					continue;
+				}
+				int size = this.interest.getMaxFrameBytes(this.arena, client.view);
+				if (this.frame.capacity() < size) {
+					this.frame = ByteBuffer.allocateDirect(2 * size);
+				}
+				this.interest.write(this.arena, client.player, client.view, this.frame);
+				try {
+					client.send(this.frame, this.frame.limit());
+				}
+				catch (IOException e) {
+					close(key);
+				}
+			}
+		}
+    }
+
+    /**
+     * Method to encode the state of the arena into the shared frame.
+     */
+    private void encode() {
+		AsteroidField field = this.arena.getGame().getAsteroids();
+		int players = this.arena.getPlayerCount();
+		int asteroids = Math.min(field.getCount(), Short.MAX_VALUE);
+		int length = 1 + 4 + 2 + 2 + players * PLAYER_BYTES + 2 + asteroids * ASTEROID_BYTES;
+		if (this.frame.capacity() < 4 + length) {
+			this.frame = ByteBuffer.allocateDirect(2 * (4 + length));
+		}
+		ByteBuffer b = this.frame;
+		b.clear();
+		b.putInt(length);
+		b.put(STATE);
+		b.putInt((int)this.arena.getTick());
+		b.putShort((short)this.arena.getGame().getLevel());
+		b.putShort((short)players);
+		for (int i = 0; i < players; i++) {
+			putPlayer(b, this.arena.getPlayer(i));
+		}
+		b.putShort((short)asteroids);
+		for (int i = 0; i < asteroids; i++) {
+			putAsteroid(b, field, i);
+		}
+		b.flip();
+    }
+
+    /**
+     * Method to write the state of a player, as sent in a frame.
+     * @param the buffer to write to.
+     * @param the player.
+     */
+    static void putPlayer(ByteBuffer b, Arena.Player player) {
+		SpaceShip ship = player.getShip();
+		Laser laser = player.getLaser();
+		int flags = 0;
+		if (ship.getExists()) {
+			flags |= EXISTS;
+		}
+		if (ship.getAccelerating()) {
+			flags |= ACCELERATING;
+		}
+		if (player.getHyperspace()) {
+			flags |= HYPERSPACE;
+		}
+		if (laser.getExists()) {
+			flags |= LASER_EXISTS;
+		}
+		if (ship.getShieldsDamaged()) {
+			flags |= SHIELDS_DAMAGED;
+		}
+		b.putInt(player.getId());
+		b.putShort((short)DeltaState.quantizeField(ship.getXLocation()));
+		b.putShort((short)DeltaState.quantizeField(ship.getYLocation()));
+		b.putShort((short)ship.getRotation());
+		b.put((byte)flags);
+		b.putInt(ship.getScore());
+		b.put((byte)ship.getShieldsRemaining());
+		b.putShort((short)DeltaState.quantizeField(laser.getXLocation()));
+		b.putShort((short)DeltaState.quantizeField(laser.getYLocation()));
+    }
+
+    /**
+     * Method to write the state of an asteroid, as sent in a frame.
+     * @param the buffer to write to.
+     * @param the asteroid field.
+     * @param an int holding the index of the asteroid.
+     */
+    static void putAsteroid(ByteBuffer b, AsteroidField field, int i) {
+		b.putShort((short)DeltaState.quantizeField(field.getXLocation(i)));
+		b.putShort((short)DeltaState.quantizeField(field.getYLocation(i)));
+		b.putShort((short)(field.getRotation(i) % 360));
+		b.put((byte)field.getRadius(i));
+    }
+
+    /**
+     * Method to print statistics on the last few seconds.
+     */
+    private void report() {
+		long ticks = Math.max(1, this.ticks);
+		System.out.println("Players: " + this.arena.getPlayerCount()
+			+ ", asteroids: " + this.arena.getGame().getAsteroidsRemaining()
+			+ ", ticks: " + this.ticks
+			+ ", mean tick: " + (this.tickNanos / ticks / 1000) + " us"
+			+ ", sent: " + (this.bytesSent / 1024) + " KB"
+			+ ", frames missed: " + this.framesMissed);
+		if (this.interest != null) {
+			long[] counts = this.interest.takeCounts();
+			System.out.println("Entered: " + counts[0] + ", updated: " + counts[1]
+				+ ", left: " + counts[2]);
+		}
+		this.ticks = 0;
+		this.tickNanos = 0;
+		this.bytesSent = 0;
+		this.framesMissed = 0;
+    }
+
+    /**
+     * The class which holds the connection to one player.
+     */
+    private class Client {
+
+		/**
+		 * The player's socket and its key.
+		 */
+		private SocketChannel channel;
+		private SelectionKey key;
+
+		/**
+		 * The player in the arena.
+		 */
+		private Arena.Player player;
+
+		/**
+		 * What the player was last sent, if sent only what is near
+		 * their ship.
+		 */
+		private InterestManager.View view = new InterestManager.View();
+
+		/**
+		 * Buffer holding bytes which could not be sent straight away,
+		 * such as the rest of a frame the socket had no room for.
+		 * Allocated the first time it is needed.
+		 */
+		private ByteBuffer backlog;
+
+		/**
+		 * Constructor for a connection.
+		 * @param the player's socket.
+		 * @param the player in the arena.
+		 */
+		Client(SocketChannel channel, Arena.Player player) {
+			this.channel = channel;
+			this.player = player;
+		}
+
+		/**
+		 * Method to check whether the player is still sending an
+		 * earlier frame.
+		 * @return a boolean which is true if the player is busy.
+		 */
+		boolean busy() {
+			return (this.backlog != null) && (this.backlog.position() > 0);
+		}
+
+		/**
+		 * Method to send a frame from the shared frame buffer. If the
+		 * player is still sending an earlier frame this one is missed.
+		 * @param the shared frame buffer.
+		 * @param an int holding the end of the frame.
+		 */
+		void send(ByteBuffer frame, int end) throws IOException {
+			if (busy()) {
+				framesMissed++;
+				return;
+			}
+			frame.limit(end).position(0);
+			bytesSent += this.channel.write(frame);
+			if (frame.hasRemaining()) {
+				// Keep the rest of the frame until there is room for it
+				queue(frame);
+			}
+		}
+
+		/**
+		 * Method to keep bytes to be sent once the socket has room.
+		 * @param the buffer holding the bytes.
+		 */
+		void queue(ByteBuffer bytes) {
+			if (this.backlog == null) {
+				this.backlog = ByteBuffer.allocate(Math.max(4096, bytes.remaining()));
+			}
+			if (this.backlog.remaining() < bytes.remaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(this.backlog.position() + bytes.remaining());
+				this.backlog.flip();
+				larger.put(this.backlog);
+				this.backlog = larger;
+			}
+			this.backlog.put(bytes);
+			this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+
+		/**
+		 * Method to send as much of the kept bytes as the socket has
+		 * room for.
+		 */
+		void flush() throws IOException {
+			if ((this.backlog == null) || (this.backlog.position() == 0)) {
+				return;
+			}
+			this.backlog.flip();
+			bytesSent += this.channel.write(this.backlog);
+			this.backlog.compact();
+			if (this.backlog.position() == 0) {
+				this.key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+    }
+}
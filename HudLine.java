@@ -0,0 +1,171 @@
+/**
+ * The class which holds one line of text drawn over the game, such as
+ * the score, in a buffer of characters which is reused every frame,
+ * so that drawing text makes no garbage. Text is appended to the line
+ * as Strings, which should be constants, and numbers, which are
+ * written out digit by digit.
+ *
+ * The line remembers what it held, and where, when it was last drawn,
+ * so HudText.class only rebuilds the display list which draws it when
+ * its text or place has changed.
+ */
+
+public class HudLine {
+
+    /**
+     * The characters of the line, and how many are in use.
+     */
+    private char[] chars;
+    private int length;
+
+    /**
+     * The characters of the line, and where it was, when it was last
+     * drawn. drawnLength is -1 if it has never been drawn.
+     */
+    private char[] drawn;
+    private int drawnLength = -1;
+    private double drawnX;
+    private double drawnY;
+
+    /**
+     * The display list which draws the line, or 0 if it has none yet.
+     * Only used by HudText.class.
+     */
+    int list;
+
+    /**
+     * Constructor for a line.
+     * @param an int holding the most characters the line can hold.
+     * Anything appended beyond this is dropped.
+     */
+    public HudLine(int capacity) {
+		this.chars = new char[capacity];
+		this.drawn = new char[capacity];
+    }
+
+    /**
+     * Method to empty the line, ready for new text to be appended.
+     * @return the line.
+     */
+    public HudLine clear() {
+		this.length = 0;
+		return this;
+    }
+
+    /**
+     * Method to append text to the line.
+     * @param a String holding the text.
+     * @return the line.
+     */
+    public HudLine append(String text) {
+		int n = Math.min(text.length(), this.chars.length - this.length);
+		text.getChars(0, n, this.chars, this.length);
+		this.length += n;
+		return this;
+    }
+
+    /**
+     * Method to append a single character to the line.
+     * @param the character.
+     * @return the line.
+     */
+    public HudLine append(char c) {
+		if (this.length < this.chars.length) {
+			this.chars[this.length++] = c;
+		}
+		return this;
+    }
+
+    /**
+     * Method to append a whole number to the line.
+     * @param a long holding the number.
+     * @return the line.
+     */
+    public HudLine append(long value) {
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+		// Count the digits, then write them from the last backwards
+		int digits = 1;
+		for (long v = value / 10; v > 0; v /= 10) {
+			digits++;
+		}
+		if (this.length + digits > this.chars.length) {
+			return this;
+		}
+		for (int d = this.length + digits - 1; d >= this.length; d--) {
+			this.chars[d] = (char)('0' + (value % 10));
+			value /= 10;
+		}
+		this.length += digits;
+		return this;
+    }
+
+    /**
+     * Method to append a number to the line with one decimal place.
+     * @param a double holding the number.
+     * @return the line.
+     */
+    public HudLine appendTenths(double value) {
+		long tenths = Math.round(value * 10);
+		if (tenths < 0) {
+			append('-');
+			tenths = -tenths;
+		}
+		append(tenths / 10);
+		append('.');
+		return append(tenths % 10);
+    }
+
+    /**
+     * Method to check whether the line has changed since it was last
+     * drawn.
+     * @param a double holding the horizontal location it is to be
+     * drawn at.
+     * @param a double holding the vertical location it is to be drawn
+     * at.
+     * @return a boolean which is true if the text or the location is
+     * different.
+     */
+    public boolean isChanged(double x, double y) {
+		if ((this.length != this.drawnLength) || (x != this.drawnX) || (y != this.drawnY)) {
+			return true;
+		}
+		for (int c = 0; c < this.length; c++) {
+			if (this.chars[c] != this.drawn[c]) {
+				return true;
+			}
+		}
+		return false;
+    }
+
+    /**
+     * Method to remember the line as it has just been drawn.
+     * @param a double holding the horizontal location it was drawn at.
+     * @param a double holding the vertical location it was drawn at.
+     */
+    public void markDrawn(double x, double y) {
+		System.arraycopy(this.chars, 0, this.drawn, 0, this.length);
+		this.drawnLength = this.length;
+		this.drawnX = x;
+		this.drawnY = y;
+    }
+
+    /**
+     * Accessor method to get the characters of the line. Only the
+     * first length() are in use.
+     * @return the array of characters.
+     */
+    public char[] getChars() {
+		return this.chars;
+    }
+
+    /**
+     * Accessor method to get the number of characters in the line.
+     * @return an int holding the number of characters.
+     */
+    public int length() {
+		return this.length;
+    }
+}
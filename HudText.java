@@ -0,0 +1,130 @@
+import gl4java.GLEnum;
+import gl4java.GLFunc;
+import gl4java.utils.glut.GLUTFunc;
+
+/**
+ * The class which draws the text shown over the game without pushing
+ * each character through GLUT every frame. Each printable character
+ * is compiled once into a display list which draws its bitmap, and
+ * each HudLine.class drawn is compiled into a display list which
+ * places it and calls the lists of its characters. A line's list is
+ * only rebuilt when its text or place changes, so a line which stays
+ * the same, such as the score between hits, costs one call to draw.
+ *
+ * Only to be used by the thread which draws, while its GL context is
+ * current. Colour is taken from the colour set before a line is
+ * drawn, as with glRasterPos.
+ */
+
+public class HudText {
+
+    /**
+     * The first and last characters which have display lists. Others
+     * are drawn as spaces.
+     */
+    private static final char FIRST = ' ';
+    private static final char LAST = '~';
+
+    /**
+     * The GL and GLUT functions used to draw.
+     */
+    private GLFunc gl;
+    private GLUTFunc glut;
+
+    /**
+     * The display list of the first character. Each character's list
+     * follows on from it.
+     */
+    private int glyphs;
+
+    /**
+     * Counts of the lines drawn, and those which had to be rebuilt.
+     */
+    private long draws;
+    private long rebuilds;
+
+    /**
+     * Constructor for the text renderer, which compiles the display
+     * lists of every character.
+     * @param the GL functions of the canvas.
+     * @param the GLUT functions of the canvas.
+     */
+    public HudText(GLFunc gl, GLUTFunc glut) {
+		this.gl = gl;
+		this.glut = glut;
+		this.glyphs = gl.glGenLists(LAST - FIRST + 1);
+		for (char c = FIRST; c <= LAST; c++) {
+			gl.glNewList(this.glyphs + c - FIRST, GLEnum.GL_COMPILE);
+			glut.glutBitmapCharacter(GLUTFunc.GLUT_BITMAP_HELVETICA_10, c);
+			gl.glEndList();
+		}
+    }
+
+    /**
+     * Method to draw a line of text, rebuilding its display list if it
+     * has changed since it was last drawn.
+     * @param the line of text.
+     * @param a double holding the horizontal location of the text.
+     * @param a double holding the vertical location of the text.
+     */
+    public void draw(HudLine line, double x, double y) {
+		if (line.list == 0) {
+			line.list = this.gl.glGenLists(1);
+		}
+		if (line.isChanged(x, y)) {
+			this.gl.glNewList(line.list, GLEnum.GL_COMPILE);
+			this.gl.glRasterPos2d(x, y);
+			char[] chars = line.getChars();
+			for (int c = 0; c < line.length(); c++) {
+				this.gl.glCallList(glyph(chars[c]));
+			}
+			this.gl.glEndList();
+			line.markDrawn(x, y);
+			this.rebuilds++;
+		}
+		this.gl.glCallList(line.list);
+		this.draws++;
+    }
+
+    /**
+     * Method to draw a single character, such as the letter on a
+     * power up.
+     * @param the character.
+     * @param a double holding the horizontal location of the
+     * character.
+     * @param a double holding the vertical location of the character.
+     */
+    public void draw(char c, double x, double y) {
+		this.gl.glRasterPos2d(x, y);
+		this.gl.glCallList(glyph(c));
+    }
+
+    /**
+     * Method to find the display list of a character.
+     * @param the character.
+     * @return an int holding the display list.
+     */
+    private int glyph(char c) {
+		if ((c < FIRST) || (c > LAST)) {
+			c = ' ';
+		}
+		return this.glyphs + c - FIRST;
+    }
+
+    /**
+     * Accessor method to get the number of lines drawn.
+     * @return a long holding the number of lines.
+     */
+    public long getDraws() {
+		return this.draws;
+    }
+
+    /**
+     * Accessor method to get the number of lines whose display lists
+     * were rebuilt because they changed.
+     * @return a long holding the number of lines.
+     */
+    public long getRebuilds() {
+		return this.rebuilds;
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class which passes key presses and releases from the AWT event
+ * thread to the thread which steps the world, without locks. It is a
+ * ring of events with one producer, which calls press() and release(),
+ * and one consumer, which calls drain() at the start of each tick.
+ * Each side only writes its own end of the ring, and publishes it with
+ * an ordered write, so the consumer never sees an event before the
+ * event has been written.
+ *
+ * Each event is stamped with System.nanoTime() when it is offered, so
+ * the time from a key being pressed to the tick which acts on it is
+ * measured.
+ *
+ * Auto-repeat is coalesced: a press of a key already held is dropped
+ * by the producer, and a release followed straight away by a press of
+ * the same key (as auto-repeat is sent on some systems) is dropped by
+ * the consumer, so holding FIRE fires once rather than once per
+ * repeat. A release which comes last in a drain, so recently that its
+ * press may not have been offered yet, is left for the next drain.
+ *
+ * Releases are never dropped. A press is only offered if it leaves room
+ * in the ring for the release of every key held, so if the ring fills
+ * it is presses which are dropped, and no key is left stuck down.
+ */
+
+public class InputQueue {
+
+    /**
+     * Flag set on the events which are presses rather than releases.
+     */
+    private static final int DOWN = 1 << 31;
+
+    /**
+     * The number of control bits an event can carry: every bit but
+     * DOWN.
+     */
+    private static final int CONTROL_BITS = 31;
+
+    /**
+     * The fewest events the ring holds. A press must leave room for
+     * the release of every key held, so a press with every control
+     * held needs 1 + CONTROL_BITS places; this is twice that, so
+     * presses still find room while other keys are held.
+     */
+    private static final int MIN_CAPACITY = 2 * (1 + CONTROL_BITS);
+
+    /**
+     * The longest gap between a release and a press of the same key
+     * for the pair to be taken as auto-repeat.
+     */
+    private static final long REPEAT_NANOS = 2000000;
+
+    /**
+     * Arrays holding the control bit of each event, with DOWN set on
+     * presses, and the time it was offered.
+     */
+    private int[] events;
+    private long[] times;
+
+    /**
+     * Mask used to turn a count of events into a place in the ring.
+     */
+    private int mask;
+
+    /**
+     * The controls which act for as long as their key is held. The
+     * others act once for each press.
+     */
+    private int held;
+
+    /**
+     * The number of events offered and drained. Each is only written
+     * by one side, and the ring holds the events from head up to tail.
+     */
+    private AtomicLong tail = new AtomicLong();
+    private AtomicLong head = new AtomicLong();
+
+    /**
+     * The controls held down as the producer has seen them. Only used
+     * by the producer.
+     */
+    private int producerDown;
+
+    /**
+     * Counts of presses dropped because the ring was full, and presses
+     * coalesced by the producer. Only written by the producer.
+     */
+    private volatile long dropped;
+    private volatile long producerCoalesced;
+
+    /**
+     * The controls held down as the consumer has seen them. Only used
+     * by the consumer.
+     */
+    private int down;
+
+    /**
+     * Statistics on the events drained. Only written by the consumer.
+     */
+    private volatile long drained;
+    private volatile long consumerCoalesced;
+    private volatile long totalLatency;
+    private volatile long maxLatency;
+
+    /**
+     * Constructor for the queue.
+     * @param an int holding the number of events the ring can hold.
+     * Rounded up to a power of two, and to at least MIN_CAPACITY, so
+     * there is always room for the release of every control.
+     * @param an int holding the controls which act for as long as
+     * their key is held, such as World.LEFT. The others act once for
+     * each press.
+     */
+    public InputQueue(int capacity, int held) {
+		this.held = held;
+		// Round up to the next power of two
+		int size = Integer.highestOneBit(Math.max(MIN_CAPACITY, capacity) - 1) << 1;
+		this.events = new int[size];
+		this.times = new long[size];
+		this.mask = size - 1;
+    }
+
+    /**
+     * Method to offer a key press. Only to be called by the producer.
+     * @param an int holding the control bit of the key.
+     */
+    public void press(int control) {
+		if ((this.producerDown & control) != 0) {
+			// Auto-repeat of a key already held
+			this.producerCoalesced++;
+			return;
+		}
+		// Keep room for the release of every key held, this one included
+		if (offer(control | DOWN, Integer.bitCount(this.producerDown | control))) {
+			this.producerDown |= control;
+		}
+    }
+
+    /**
+     * Method to offer a key release. Only to be called by the producer.
+     * @param an int holding the control bit of the key.
+     */
+    public void release(int control) {
+		if ((this.producerDown & control) == 0) {
+			// The press was dropped, so the consumer never saw it
+			return;
+		}
+		// There is always room, as it was kept when the key was pressed
+		offer(control, 0);
+		this.producerDown &= ~control;
+    }
+
+    /**
+     * Method to add an event to the ring.
+     * @param an int holding the event.
+     * @param an int holding the number of places which must be left
+     * free after the event.
+     * @return a boolean which is true if there was room for the event.
+     */
+    private boolean offer(int event, int reserve) {
+		long t = this.tail.get();
+		if (t - this.head.get() + reserve > this.mask) {
+			this.dropped++;
+			return false;
+		}
+		int i = (int)t & this.mask;
+		this.events[i] = event;
+		this.times[i] = System.nanoTime();
+		// Publish the event only once it has been written
+		this.tail.lazySet(t + 1);
+		return true;
+    }
+
+    /**
+     * Method to take every event offered since the last drain, and work
+     * out the controls for the next tick. Only to be called by the
+     * consumer.
+     * @return an int holding the held controls whose keys are down, and
+     * every control pressed since the last drain even if already
+     * released, so a tap shorter than a tick still acts.
+     */
+    public int drain() {
+		long h = this.head.get();
+		long t = this.tail.get();
+		if (h == t) {
+			return this.down & this.held;
+		}
+		long now = System.nanoTime();
+		int pressed = 0;
+		long latency = 0;
+		long max = this.maxLatency;
+		for (long k = h; k < t; k++) {
+			int i = (int)k & this.mask;
+			int event = this.events[i];
+			int control = event & ~DOWN;
+			long time = this.times[i];
+			if (((event & DOWN) == 0) && (k + 1 == t) && (now - time <= REPEAT_NANOS)) {
+				// The press of an auto-repeat may be yet to come, so
+				// leave the release in the ring for the next drain
+				t = k;
+				break;
+			}
+			long wait = now - time;
+			latency += wait;
+			if (wait > max) {
+				max = wait;
+			}
+			if ((event & DOWN) != 0) {
+				if ((this.down & control) == 0) {
+					pressed |= control;
+				}
+				this.down |= control;
+			}
+			else if ((k + 1 < t)
+				&& (this.events[(i + 1) & this.mask] == (control | DOWN))
+				&& (this.times[(i + 1) & this.mask] - time <= REPEAT_NANOS)) {
+				// Auto-repeat sent as a release and a press, so the key
+				// is still held
+				this.consumerCoalesced += 2;
+				k++;
+				latency += now - this.times[(i + 1) & this.mask];
+			}
+			else {
+				this.down &= ~control;
+			}
+		}
+		// Free the events only once they have been read
+		this.head.lazySet(t);
+		this.drained += t - h;
+		this.totalLatency += latency;
+		this.maxLatency = max;
+		return (this.down & this.held) | pressed;
+    }
+
+    /**
+     * Accessor method to get the number of events drained.
+     * @return a long holding the number of events.
+     */
+    public long getDrained() {
+		return this.drained;
+    }
+
+    /**
+     * Accessor method to get the number of presses dropped because the
+     * ring was full.
+     * @return a long holding the number of events.
+     */
+    public long getDropped() {
+		return this.dropped;
+    }
+
+    /**
+     * Accessor method to get the number of auto-repeat events
+     * coalesced.
+     * @return a long holding the number of events.
+     */
+    public long getCoalesced() {
+		return this.producerCoalesced + this.consumerCoalesced;
+    }
+
+    /**
+     * Accessor method to get the mean time from an event being offered
+     * to it being drained.
+     * @return a long holding the time in nanoseconds.
+     */
+    public long getMeanLatencyNanos() {
+		return this.totalLatency / Math.max(1, this.drained);
+    }
+
+    /**
+     * Accessor method to get the longest time from an event being
+     * offered to it being drained.
+     * @return a long holding the time in nanoseconds.
+     */
+    public long getMaxLatencyNanos() {
+		return this.maxLatency;
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The class which records the controls a world is stepped with, so
+ * that the game can be played again exactly by Replay.class. Since a
+ * seed fully determines a world, the seed and the control bits of
+ * every tick are all that need to be kept.
+ *
+ * Players hold the same keys down for many ticks at a time, so the
+ * controls are stored as runs: the control bits, then the number of
+ * ticks they were held for, each written as a varint (seven bits to a
+ * byte, the top bit set on every byte but the last). A typical run
+ * takes two or three bytes, and most games record in a few kilobytes.
+ *
+ * File format:
+ *   4 bytes   MAGIC
+ *   8 bytes   seed, most significant byte first
+ *   repeated  varint controls, varint ticks
+ */
+
+public class InputRecorder {
+
+    /**
+     * The bytes every recording starts with: "AST" and the version
+     * of the format.
+     */
+    public static final byte[] MAGIC = { 'A', 'S', 'T', 1 };
+
+    /**
+     * The seed of the world being recorded.
+     */
+    private long seed;
+
+    /**
+     * The encoded runs which have finished.
+     */
+    private byte[] bytes = new byte[256];
+    private int length;
+
+    /**
+     * The control bits of the run in progress, and the number of ticks
+     * it has lasted so far.
+     */
+    private int controls;
+    private long run;
+
+    /**
+     * The total number of ticks recorded.
+     */
+    private long ticks;
+
+    /**
+     * Constructor for a recorder.
+     * @param a long holding the seed of the world being recorded.
+     */
+    public InputRecorder(long seed) {
+		this.seed = seed;
+    }
+
+    /**
+     * Method to record the controls for one tick. Called each time
+     * the world is stepped, with the same control bits.
+     * @param an int holding the control bits.
+     */
+    public void record(int controls) {
+		if ((controls != this.controls) && (this.run > 0)) {
+			// Controls have changed, so finish the current run
+			writeVarint(this.controls);
+			writeVarint(this.run);
+			this.run = 0;
+		}
+		this.controls = controls;
+		this.run++;
+		this.ticks++;
+    }
+
+    /**
+     * Method to write the recording so far.
+     * @param the stream to write to.
+     */
+    public void write(OutputStream out) throws IOException {
+		byte[] header = new byte[12];
+		System.arraycopy(MAGIC, 0, header, 0, 4);
+		for (int i = 0; i < 8; i++) {
+			header[4 + i] = (byte)(this.seed >>> (56 - 8 * i));
+		}
+		out.write(header);
+		out.write(this.bytes, 0, this.length);
+		if (this.run > 0) {
+			// Write the run in progress without finishing it, so that
+			// recording can carry on afterwards.
+			int length = this.length;
+			writeVarint(this.controls);
+			writeVarint(this.run);
+			out.write(this.bytes, length, this.length - length);
+			this.length = length;
+		}
+    }
+
+    /**
+     * Method to save the recording so far to a file.
+     * @param a String holding the name of the file.
+     */
+    public void save(String file) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			write(out);
+		}
+		finally {
+			out.close();
+		}
+    }
+
+    /**
+     * Accessor method to get the seed of the world being recorded.
+     * @return a long holding the seed.
+     */
+    public long getSeed() {
+		return this.seed;
+    }
+
+    /**
+     * Accessor method to get the number of ticks recorded.
+     * @return a long holding the number of ticks.
+     */
+    public long getTicks() {
+		return this.ticks;
+    }
+
+    /**
+     * Method to add a varint to the encoded runs.
+     * @param a long holding the value, which must not be negative.
+     */
+    private void writeVarint(long value) {
+		if (this.length + 10 > this.bytes.length) {
+			this.bytes = Arrays.copyOf(this.bytes, 2 * this.bytes.length);
+		}
+		while (value >= 0x80) {
+			this.bytes[this.length++] = (byte)(value | 0x80);
+			value >>>= 7;
+		}
+		this.bytes[this.length++] = (byte)value;
+    }
+}
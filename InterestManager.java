@@ -0,0 +1,401 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The class which works out what each player of an Arena.class can
+ * see, for GameServer.class. A player only sees the ships and
+ * asteroids within a given distance of their own ship, measured
+ * around the edges of the screen as the objects wrap. Each tick the
+ * objects in view are compared with those the player was last sent,
+ * and only the objects which have come into view, gone out of view or
+ * moved are written, so the bytes sent and the time spent writing
+ * them depend on how crowded the space around the ship is rather than
+ * on the size of the whole arena.
+ *
+ * The asteroids are found with a SpatialGrid.class rebuilt once per
+ * tick and shared by every player. A frame written by write() is:
+ *   int       length of the rest of the frame
+ *   byte      GameServer.INTEREST, then int tick, short level
+ *   short     ships entered, each as in GameServer.putPlayer()
+ *   short     ships updated, each as in GameServer.putPlayer()
+ *   short     ships left, each: int id
+ *   short     asteroids entered, each: int id, then as in
+ *             GameServer.putAsteroid()
+ *   short     asteroids updated, each: int id, short x, short y,
+ *             short rotation
+ *   short     asteroids left, each: int id
+ * Every ship in view is updated each tick. An asteroid in view is
+ * only updated when its quantized location or rotation has changed.
+ */
+
+public class InterestManager {
+
+    /**
+     * The distance from a ship within which objects are seen.
+     */
+    private double radius;
+
+    /**
+     * The grid the asteroids are sorted into each tick.
+     */
+    private SpatialGrid grid;
+
+    /**
+     * Array used to hold the asteroids found by the grid.
+     */
+    private int[] candidates = new int[0];
+
+    /**
+     * Array used to hold the asteroids in view, as the id in the high
+     * half and the index in the field in the low half, so that sorting
+     * puts them in order of id.
+     */
+    private long[] visible = new long[0];
+
+    /**
+     * Arrays used to hold the indices of the objects entered and
+     * updated, and the ids of those left, while a frame is worked
+     * out.
+     */
+    private int[] entered = new int[0];
+    private int[] updated = new int[0];
+    private int[] left = new int[0];
+
+    /**
+     * Counts of the objects entered, updated and left since the counts
+     * were last reset.
+     */
+    private long enters;
+    private long updates;
+    private long leaves;
+
+    /**
+     * Constructor for the interest manager.
+     * @param a double holding the distance from a ship within which
+     * objects are seen.
+     */
+    public InterestManager(double radius) {
+		if (!(radius > 0)) {
+			throw new IllegalArgumentException("Invalid radius: " + radius);
+		}
+		this.radius = radius;
+		// Cells about a quarter of the view across, but never smaller
+		// than those used for collisions.
+		this.grid = new SpatialGrid(Math.max(SpatialGrid.CELL_SIZE, radius / 2));
+    }
+
+    /**
+     * Method to sort the asteroids into the grid. Should be called
+     * once per tick, after the arena has been advanced and before
+     * write() is called for each player.
+     * @param the arena.
+     */
+    public void prepare(Arena arena) {
+		AsteroidField field = arena.getGame().getAsteroids();
+		this.grid.rebuild(field);
+		int capacity = Math.max(field.getCapacity(), arena.getPlayerCount());
+		if (this.candidates.length < capacity) {
+			this.candidates = new int[capacity];
+			this.visible = new long[capacity];
+			this.entered = new int[capacity];
+			this.updated = new int[capacity];
+		}
+    }
+
+    /**
+     * Method to get the most bytes write() can write for a player.
+     * @param the arena.
+     * @param the view of the player.
+     * @return an int holding the number of bytes.
+     */
+    public int getMaxFrameBytes(Arena arena, View view) {
+		int players = arena.getPlayerCount();
+		int asteroids = arena.getGame().getAsteroids().getCount();
+		return 4 + 1 + 4 + 2
+			+ 3 * 2 + players * GameServer.PLAYER_BYTES + view.playerCount * 4
+			+ 3 * 2 + asteroids * (4 + GameServer.ASTEROID_BYTES) + view.asteroidCount * 4;
+    }
+
+    /**
+     * Method to write a frame holding what a player can now see that
+     * differs from what they were last sent, and remember what was
+     * sent. The frame must be sent, or the view will no longer match
+     * what the player has.
+     * @param the arena.
+     * @param the player.
+     * @param the view of the player.
+     * @param the buffer to write to, from the start. Must have room
+     * for getMaxFrameBytes(). Left ready to be sent.
+     */
+    public void write(Arena arena, Arena.Player player, View view, ByteBuffer b) {
+		b.clear();
+		b.putInt(0);
+		b.put(GameServer.INTEREST);
+		b.putInt((int)arena.getTick());
+		b.putShort((short)arena.getGame().getLevel());
+		double x = player.getShip().getXLocation();
+		double y = player.getShip().getYLocation();
+		writeShips(arena, x, y, view, b);
+		writeAsteroids(arena.getGame().getAsteroids(), x, y, view, b);
+		b.putInt(0, b.position() - 4);
+		b.flip();
+    }
+
+    /**
+     * Method to write the ships which have entered, stayed in and left
+     * the view. Ships are few, so every one is checked.
+     * @param the arena.
+     * @param the horizontal location of the player's ship.
+     * @param the vertical location of the player's ship.
+     * @param the view of the player.
+     * @param the buffer to write to.
+     */
+    private void writeShips(Arena arena, double x, double y, View view, ByteBuffer b) {
+		int found = 0;
+		for (int i = 0; i < arena.getPlayerCount(); i++) {
+			SpaceShip ship = arena.getPlayer(i).getShip();
+			if (inView(x, y, ship.getXLocation(), ship.getYLocation())) {
+				this.visible[found++] = ((long)arena.getPlayer(i).getId() << 32) | i;
+			}
+		}
+		// Players are kept in the order they joined, which is the
+		// order of their ids, so no sort is needed.
+		int enterCount = 0;
+		int updateCount = 0;
+		int leaveCount = 0;
+		if (this.left.length < view.playerCount) {
+			this.left = new int[view.playerCount];
+		}
+		int j = 0;
+		for (int k = 0; k < found; k++) {
+			int id = (int)(this.visible[k] >>> 32);
+			while ((j < view.playerCount) && (view.playerIds[j] < id)) {
+				this.left[leaveCount++] = view.playerIds[j++];
+			}
+			if ((j < view.playerCount) && (view.playerIds[j] == id)) {
+				this.updated[updateCount++] = (int)this.visible[k];
+				j++;
+			}
+			else {
+				this.entered[enterCount++] = (int)this.visible[k];
+			}
+		}
+		while (j < view.playerCount) {
+			this.left[leaveCount++] = view.playerIds[j++];
+		}
+		b.putShort((short)enterCount);
+		for (int k = 0; k < enterCount; k++) {
+			GameServer.putPlayer(b, arena.getPlayer(this.entered[k]));
+		}
+		b.putShort((short)updateCount);
+		for (int k = 0; k < updateCount; k++) {
+			GameServer.putPlayer(b, arena.getPlayer(this.updated[k]));
+		}
+		b.putShort((short)leaveCount);
+		for (int k = 0; k < leaveCount; k++) {
+			b.putInt(this.left[k]);
+		}
+		// Remember the ships sent
+		view.ensurePlayers(found);
+		for (int k = 0; k < found; k++) {
+			view.playerIds[k] = (int)(this.visible[k] >>> 32);
+		}
+		view.playerCount = found;
+		this.enters += enterCount;
+		this.updates += updateCount;
+		this.leaves += leaveCount;
+    }
+
+    /**
+     * Method to write the asteroids which have entered, moved in and
+     * left the view.
+     * @param the asteroid field.
+     * @param the horizontal location of the player's ship.
+     * @param the vertical location of the player's ship.
+     * @param the view of the player.
+     * @param the buffer to write to.
+     */
+    private void writeAsteroids(AsteroidField field, double x, double y, View view, ByteBuffer b) {
+		int candidateCount = this.grid.query(x, y, this.radius, this.candidates);
+		int found = 0;
+		for (int k = 0; k < candidateCount; k++) {
+			int i = this.candidates[k];
+			if (inView(x, y, field.getXLocation(i), field.getYLocation(i))) {
+				this.visible[found++] = ((long)field.getId(i) << 32) | i;
+			}
+		}
+		Arrays.sort(this.visible, 0, found);
+		int enterCount = 0;
+		int updateCount = 0;
+		int leaveCount = 0;
+		if (this.left.length < view.asteroidCount) {
+			this.left = new int[view.asteroidCount];
+		}
+		// Work out the new view alongside the old one, then swap them
+		view.ensureAsteroids(found);
+		int[] oldIds = view.asteroidIds;
+		long[] oldSent = view.asteroidSent;
+		int j = 0;
+		for (int k = 0; k < found; k++) {
+			int id = (int)(this.visible[k] >>> 32);
+			int i = (int)this.visible[k];
+			while ((j < view.asteroidCount) && (oldIds[j] < id)) {
+				this.left[leaveCount++] = oldIds[j++];
+			}
+			long sent = pack(field, i);
+			if ((j < view.asteroidCount) && (oldIds[j] == id)) {
+				if (oldSent[j] != sent) {
+					this.updated[updateCount++] = i;
+				}
+				j++;
+			}
+			else {
+				this.entered[enterCount++] = i;
+			}
+			view.nextIds[k] = id;
+			view.nextSent[k] = sent;
+		}
+		while (j < view.asteroidCount) {
+			this.left[leaveCount++] = oldIds[j++];
+		}
+		view.swap(found);
+		b.putShort((short)enterCount);
+		for (int k = 0; k < enterCount; k++) {
+			b.putInt(field.getId(this.entered[k]));
+			GameServer.putAsteroid(b, field, this.entered[k]);
+		}
+		b.putShort((short)updateCount);
+		for (int k = 0; k < updateCount; k++) {
+			long sent = pack(field, this.updated[k]);
+			b.putInt(field.getId(this.updated[k]));
+			b.putShort((short)(sent >>> 32));
+			b.putShort((short)(sent >>> 16));
+			b.putShort((short)sent);
+		}
+		b.putShort((short)leaveCount);
+		for (int k = 0; k < leaveCount; k++) {
+			b.putInt(this.left[k]);
+		}
+		this.enters += enterCount;
+		this.updates += updateCount;
+		this.leaves += leaveCount;
+    }
+
+    /**
+     * Method to pack the quantized location and rotation of an
+     * asteroid, as sent, into a long.
+     * @param the asteroid field.
+     * @param an int holding the index of the asteroid.
+     * @return a long holding the location and rotation.
+     */
+    private static long pack(AsteroidField field, int i) {
+		long x = DeltaState.quantizeField(field.getXLocation(i));
+		long y = DeltaState.quantizeField(field.getYLocation(i));
+		long rotation = field.getRotation(i) % 360;
+		return (x << 32) | (y << 16) | (rotation & 0xffff);
+    }
+
+    /**
+     * Method to check whether an object is within the view of a ship,
+     * around the edges of the screen.
+     * @param the horizontal location of the ship.
+     * @param the vertical location of the ship.
+     * @param the horizontal location of the object.
+     * @param the vertical location of the object.
+     * @return a boolean which is true if the object is in view.
+     */
+    private boolean inView(double x, double y, double objectX, double objectY) {
+		double dx = BatchCollider.wrap(objectX - x);
+		double dy = BatchCollider.wrap(objectY - y);
+		return dx * dx + dy * dy <= this.radius * this.radius;
+    }
+
+    /**
+     * Method to get the number of objects which have entered, been
+     * updated and left the views since the counts were last reset,
+     * and reset them.
+     * @return an array of longs holding the enters, updates and
+     * leaves.
+     */
+    public long[] takeCounts() {
+		long[] counts = {this.enters, this.updates, this.leaves};
+		this.enters = 0;
+		this.updates = 0;
+		this.leaves = 0;
+		return counts;
+    }
+
+    /**
+     * The class which holds what one player was last sent: the ids of
+     * the ships in view, and the ids of the asteroids in view with
+     * their location and rotation as sent, all in order of id.
+     */
+    public static class View {
+
+		private int[] playerIds = new int[8];
+		private int playerCount;
+
+		private int[] asteroidIds = new int[32];
+		private long[] asteroidSent = new long[32];
+		private int asteroidCount;
+
+		/**
+		 * Arrays the next view of the asteroids is worked out in.
+		 */
+		private int[] nextIds = new int[32];
+		private long[] nextSent = new long[32];
+
+		/**
+		 * Method to make sure there is room for a number of ships.
+		 * @param an int holding the number of ships.
+		 */
+		void ensurePlayers(int count) {
+			if (this.playerIds.length < count) {
+				this.playerIds = Arrays.copyOf(this.playerIds, 2 * count);
+			}
+		}
+
+		/**
+		 * Method to make sure there is room for the next view of a
+		 * number of asteroids.
+		 * @param an int holding the number of asteroids.
+		 */
+		void ensureAsteroids(int count) {
+			if (this.nextIds.length < count) {
+				this.nextIds = new int[2 * count];
+				this.nextSent = new long[2 * count];
+			}
+		}
+
+		/**
+		 * Method to make the next view of the asteroids the current
+		 * one.
+		 * @param an int holding the number of asteroids in view.
+		 */
+		void swap(int count) {
+			int[] ids = this.asteroidIds;
+			long[] sent = this.asteroidSent;
+			this.asteroidIds = this.nextIds;
+			this.asteroidSent = this.nextSent;
+			this.nextIds = ids;
+			this.nextSent = sent;
+			this.asteroidCount = count;
+		}
+
+		/**
+		 * Accessor method to get the number of ships in view.
+		 * @return an int holding the number of ships.
+		 */
+		public int getPlayerCount() {
+			return this.playerCount;
+		}
+
+		/**
+		 * Accessor method to get the number of asteroids in view.
+		 * @return an int holding the number of asteroids.
+		 */
+		public int getAsteroidCount() {
+			return this.asteroidCount;
+		}
+    }
+}
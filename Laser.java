@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 
 /**
  * The class which creates and holds properties for the laser
@@ -18,6 +19,15 @@ public class Laser extends SpaceObject {
      */ 
     private double distanceTravelled;
 
+    /**
+     * Doubles which hold the location of the laser before it was
+     * last moved. The laser is checked for collisions along the
+     * whole line it travelled, so it cannot pass through an object
+     * between ticks.
+     */
+    private double xPreviousLocation;
+    private double yPreviousLocation;
+
     /**
      * Constructor for the laser object. Calls the constructor in the
      * parent class which sets the starting location of the laser.
@@ -42,11 +52,51 @@ public class Laser extends SpaceObject {
 	    // Set starting location
 	    super.setXLocation(xLocation);
 	    super.setYLocation(yLocation);
+	    this.xPreviousLocation = xLocation;
+	    this.yPreviousLocation = yLocation;
 	    // Set velocity (fixed)
 	    super.setXVelocity(14* Math.sin(super.getRotation() * ((2* PI) / 360)));
 	    super.setYVelocity(14* Math.cos(super.getRotation() * ((2* PI) / 360)));
     }
 
+    /**
+     * Method to move the laser horizontally, remembering where it
+     * moved from.
+     * Overrides method in parent class.
+     */
+    public void updateXLocation() {
+	    this.xPreviousLocation = super.getXLocation();
+	    super.updateXLocation();
+    }
+
+    /**
+     * Method to move the laser vertically, remembering where it
+     * moved from.
+     * Overrides method in parent class.
+     */
+    public void updateYLocation() {
+	    this.yPreviousLocation = super.getYLocation();
+	    super.updateYLocation();
+    }
+
+    /**
+     * Accessor method to get the horizontal location of the laser
+     * before it was last moved.
+     * @return the previous horizontal location of the laser.
+     */
+    public double getXPreviousLocation() {
+	    return this.xPreviousLocation;
+    }
+
+    /**
+     * Accessor method to get the vertical location of the laser
+     * before it was last moved.
+     * @return the previous vertical location of the laser.
+     */
+    public double getYPreviousLocation() {
+	    return this.yPreviousLocation;
+    }
+
     /**
      * Method to check the distance travelled by the laser has not
      * exceeded its limit (roughly the distance of the screen).
@@ -65,4 +115,26 @@ public class Laser extends SpaceObject {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Method to write the state of the laser into a snapshot.
+     * Overrides method in parent class.
+     */
+    public void writeState(ByteBuffer buffer) {
+	    super.writeState(buffer);
+	    buffer.putDouble(this.distanceTravelled);
+	    buffer.putDouble(this.xPreviousLocation);
+	    buffer.putDouble(this.yPreviousLocation);
+    }
+
+    /**
+     * Method to read the state of the laser from a snapshot.
+     * Overrides method in parent class.
+     */
+    public void readState(ByteBuffer buffer) {
+	    super.readState(buffer);
+	    this.distanceTravelled = buffer.getDouble();
+	    this.xPreviousLocation = buffer.getDouble();
+	    this.yPreviousLocation = buffer.getDouble();
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * The class which tests GameServer.class by connecting many players
+ * from one thread. Each player sends random controls a few times a
+ * second and reads every frame it is sent, and the frames and bytes
+ * received are printed at the end.
+ *
+ * Run with:
+ *   java LoadClient [host] [port] [players] [seconds]
+ */
+
+public class LoadClient {
+
+    /**
+     * The state of one player's connection.
+     */
+    private static class Connection {
+		SocketChannel channel;
+		ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+		int id = -1;
+		long frames;
+		long lastTick = -1;
+    }
+
+    public static void main(String[] args) throws IOException {
+		String host = "127.0.0.1";
+		int port = GameServer.DEFAULT_PORT;
+		int players = 200;
+		int seconds = 10;
+		if (args.length > 0) {
+			host = args[0];
+		}
+		if (args.length > 1) {
+			port = Integer.parseInt(args[1]);
+		}
+		if (args.length > 2) {
+			players = Integer.parseInt(args[2]);
+		}
+		if (args.length > 3) {
+			seconds = Integer.parseInt(args[3]);
+		}
+		Selector selector = Selector.open();
+		Connection[] connections = new Connection[players];
+		for (int i = 0; i < players; i++) {
+			Connection c = new Connection();
+			c.channel = SocketChannel.open(new InetSocketAddress(host, port));
+			c.channel.configureBlocking(false);
+			c.channel.socket().setTcpNoDelay(true);
+			c.channel.register(selector, SelectionKey.OP_READ, c);
+			connections[i] = c;
+		}
+		RandomSource random = new RandomSource(System.nanoTime());
+		ByteBuffer out = ByteBuffer.allocate(1);
+		long bytes = 0;
+		long start = System.nanoTime();
+		long end = start + seconds * 1000000000L;
+		long nextInput = start;
+		while (System.nanoTime() < end) {
+			selector.select(10);
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				Connection c = (Connection)key.attachment();
+				int n = c.channel.read(c.in);
+				if (n < 0) {
+					throw new IOException("Closed by server");
+				}
+				bytes += n;
+				parse(c);
+			}
+			// Each player changes its controls about five times a second
+			if (System.nanoTime() >= nextInput) {
+				for (int i = 0; i < players; i++) {
+					if (random.nextDouble() < 0.5) {
+						out.clear();
+						out.put((byte)(random.nextDouble() * 64)).flip();
+						connections[i].channel.write(out);
+					}
+				}
+				nextInput += 100000000L;
+			}
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		long frames = 0;
+		long least = Long.MAX_VALUE;
+		for (int i = 0; i < players; i++) {
+			frames += connections[i].frames;
+			least = Math.min(least, connections[i].frames);
+			connections[i].channel.close();
+		}
+		selector.close();
+		System.out.println("Players: " + players
+			+ ", frames/s per player: " + Math.round(frames / elapsed / players)
+			+ ", fewest frames: " + least
+			+ ", KB/s: " + Math.round(bytes / elapsed / 1024));
+    }
+
+    /**
+     * Method to read every whole frame received.
+     * @param the connection.
+     */
+    private static void parse(Connection c) {
+		ByteBuffer in = c.in;
+		in.flip();
+		while (in.remaining() >= 4) {
+			int length = in.getInt(in.position());
+			if (in.remaining() < 4 + length) {
+				break;
+			}
+			int next = in.position() + 4 + length;
+			byte type = in.get(in.position() + 4);
+			if (type == GameServer.HELLO) {
+				c.id = in.getInt(in.position() + 5);
+			}
+			else if ((type == GameServer.STATE) || (type == GameServer.INTEREST)) {
+				int tick = in.getInt(in.position() + 5);
+				if (tick <= c.lastTick) {
+					throw new IllegalStateException("Frames out of order");
+				}
+				c.lastTick = tick;
+				c.frames++;
+			}
+			in.position(next);
+		}
+		in.compact();
+		if (!in.hasRemaining()) {
+			// Frame larger than the buffer
+			ByteBuffer larger = ByteBuffer.allocate(2 * in.capacity());
+			in.flip();
+			larger.put(in);
+			c.in = larger;
+		}
+    }
+}
@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 
 /**
  * The class which creates and holds properties for the powerup
@@ -15,16 +16,23 @@ public class PowerUp extends SpaceObject {
      */
     private int powerUpType;
 
+    /**
+     * The random source used to choose the powerup type.
+     */
+    private RandomSource random;
+
     /**
      * Constructor for the powerup object.
+     * @param the random source of the world the powerup is in.
      */
-    public PowerUp() {
+    public PowerUp(RandomSource random) {
 	    // Call constructor in parent class
 	    super(0,0);
+	    this.random = random;
 	    // Override exist flag which is set to true in super constructor
 	    this.setExists(false);
 	    // Initialise properties for the powerup object
-	    super.initRandomObject();
+	    super.initRandomObject(random);
     }
 
     /**
@@ -44,7 +52,26 @@ public class PowerUp extends SpaceObject {
 	    super.setExists(exists);
 	    // Randomly set powerup type each time exist flag is set to true
 	    if (super.getExists()) {
-	        this.powerUpType = (int)(4* Math.random());
+	        this.powerUpType = (int)(4* this.random.nextDouble());
 	    }
     }
-}
\ No newline at end of file
+
+    /**
+     * Method to write the state of the powerup into a snapshot.
+     * Overrides method in parent class.
+     */
+    public void writeState(ByteBuffer buffer) {
+	    super.writeState(buffer);
+	    buffer.put((byte)this.powerUpType);
+    }
+
+    /**
+     * Method to read the state of the powerup from a snapshot. Reads
+     * the exist flag directly, so no new powerup type is chosen.
+     * Overrides method in parent class.
+     */
+    public void readState(ByteBuffer buffer) {
+	    super.readState(buffer);
+	    this.powerUpType = buffer.get();
+    }
+}
@@ -0,0 +1,105 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The class which generates the random numbers used by one world.
+ * Every random choice in a game (where asteroids and power ups
+ * appear, when the enemy ship fires and so on) is taken from the
+ * world's own random source, so the seed it was created with fully
+ * determines the game, and worlds run side by side never share one.
+ *
+ * Uses the xoshiro256** generator, whose whole state is four longs,
+ * seeded from a single long using splitmix64. Not thread safe; each
+ * world is only ever stepped by one thread at a time.
+ */
+
+public class RandomSource {
+
+    /**
+     * The state of the generator. Never all zero.
+     */
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    /**
+     * Constructor for a random source with a seed which is different
+     * each time a random source is created.
+     */
+    public RandomSource() {
+		this(System.nanoTime() ^ Thread.currentThread().getId() * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * Constructor for a random source which always produces the same
+     * numbers for the same seed.
+     * @param a long holding the seed.
+     */
+    public RandomSource(long seed) {
+		// Spread the seed over the whole state with splitmix64, which
+		// never gives four zeros.
+		this.s0 = mix(seed += 0x9e3779b97f4a7c15L);
+		this.s1 = mix(seed += 0x9e3779b97f4a7c15L);
+		this.s2 = mix(seed += 0x9e3779b97f4a7c15L);
+		this.s3 = mix(seed + 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * Method to get the next random long. All 64 bits are random.
+     * @return the random long.
+     */
+    public long nextLong() {
+		long result = Long.rotateLeft(this.s1 * 5, 7) * 9;
+		long t = this.s1 << 17;
+		this.s2 ^= this.s0;
+		this.s3 ^= this.s1;
+		this.s1 ^= this.s2;
+		this.s0 ^= this.s3;
+		this.s2 ^= t;
+		this.s3 = Long.rotateLeft(this.s3, 45);
+		return result;
+    }
+
+    /**
+     * Method to get the next random double, in the same range as
+     * Math.random().
+     * @return a double at least 0 and less than 1.
+     */
+    public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Method to scramble a splitmix64 counter into a random long.
+     * @param a long holding the counter.
+     * @return the scrambled value.
+     */
+    private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+    }
+
+    /**
+     * Method to write the state of the generator into a snapshot.
+     * @param the buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+		buffer.putLong(this.s0);
+		buffer.putLong(this.s1);
+		buffer.putLong(this.s2);
+		buffer.putLong(this.s3);
+    }
+
+    /**
+     * Method to read the state of the generator from a snapshot, so
+     * it carries on with the same numbers it would have produced.
+     * @param the buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+		this.s0 = buffer.getLong();
+		this.s1 = buffer.getLong();
+		this.s2 = buffer.getLong();
+		this.s3 = buffer.getLong();
+    }
+}
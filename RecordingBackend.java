@@ -0,0 +1,109 @@
+/**
+ * The class which records what DrawBatch.class would draw instead of
+ * drawing it, so the draw calls, vertices and texture changes of a
+ * frame can be counted without a display, for example by
+ * Benchmark.class, and checked by RenderCheck.class.
+ */
+
+public class RecordingBackend implements DrawBackend {
+
+    /**
+     * Counts of the frames finished, the draw calls and vertices
+     * drawn, and the times the texture changed.
+     */
+    private long frames;
+    private long drawCalls;
+    private long vertices;
+    private long textureChanges;
+
+    /**
+     * The texture of the last draw, or 0 for none.
+     */
+    private int texture;
+
+    /**
+     * Counts of the draw calls and vertices of the last frame
+     * finished, and of the frame being drawn.
+     */
+    private int frameDrawCalls;
+    private int frameVertices;
+    private int lastDrawCalls;
+    private int lastVertices;
+
+    public void setArrays(float[] vertices, float[] texCoords, float[] colours) {
+    }
+
+    public void drawArrays(int mode, int texture, int first, int count) {
+		if (texture != this.texture) {
+			this.texture = texture;
+			this.textureChanges++;
+		}
+		this.drawCalls++;
+		this.vertices += count;
+		this.frameDrawCalls++;
+		this.frameVertices += count;
+    }
+
+    public void finish() {
+		if (this.texture != 0) {
+			this.texture = 0;
+			this.textureChanges++;
+		}
+		this.frames++;
+		this.lastDrawCalls = this.frameDrawCalls;
+		this.lastVertices = this.frameVertices;
+		this.frameDrawCalls = 0;
+		this.frameVertices = 0;
+    }
+
+    /**
+     * Accessor method to get the number of frames finished.
+     * @return a long holding the number of frames.
+     */
+    public long getFrames() {
+		return this.frames;
+    }
+
+    /**
+     * Accessor method to get the number of draw calls.
+     * @return a long holding the number of draw calls.
+     */
+    public long getDrawCalls() {
+		return this.drawCalls;
+    }
+
+    /**
+     * Accessor method to get the number of vertices drawn.
+     * @return a long holding the number of vertices.
+     */
+    public long getVertices() {
+		return this.vertices;
+    }
+
+    /**
+     * Accessor method to get the number of times the texture was
+     * changed, including turning texturing on or off.
+     * @return a long holding the number of changes.
+     */
+    public long getTextureChanges() {
+		return this.textureChanges;
+    }
+
+    /**
+     * Accessor method to get the number of draw calls in the last
+     * frame finished.
+     * @return an int holding the number of draw calls.
+     */
+    public int getLastDrawCalls() {
+		return this.lastDrawCalls;
+    }
+
+    /**
+     * Accessor method to get the number of vertices in the last frame
+     * finished.
+     * @return an int holding the number of vertices.
+     */
+    public int getLastVertices() {
+		return this.lastVertices;
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class which passes RenderFrame.class objects from the thread
+ * which advances the world to the thread which draws it, without
+ * locks. Three frames are kept: one being captured, one being drawn,
+ * and the latest complete one in between. Publishing swaps the frame
+ * just captured with the one in between, and taking swaps the frame
+ * just drawn with it, so neither side ever waits for the other: the
+ * world never waits for a slow draw, and the renderer always gets the
+ * latest complete frame, skipping any it was too slow to draw.
+ */
+
+public class RenderBuffer {
+
+    /**
+     * Flag set on the frame in between when it has been published but
+     * not yet taken.
+     */
+    private static final int FRESH = 4;
+
+    /**
+     * The three frames.
+     */
+    private RenderFrame[] frames = {new RenderFrame(), new RenderFrame(), new RenderFrame()};
+
+    /**
+     * The index of the frame in between, with FRESH set if it has not
+     * been taken.
+     */
+    private AtomicInteger middle = new AtomicInteger(1);
+
+    /**
+     * The index of the frame being captured. Only used by the world's
+     * thread.
+     */
+    private int back = 0;
+
+    /**
+     * The index of the frame being drawn. Only used by the renderer.
+     */
+    private int front = 2;
+
+    /**
+     * Counts of the frames published, and those taken.
+     */
+    private volatile long published;
+    private volatile long taken;
+
+    /**
+     * Method to capture the state of a world and publish it. Only to be
+     * called by the world's thread.
+     * @param the world.
+     */
+    public void publish(World world) {
+		this.frames[this.back].capture(world);
+		this.back = this.middle.getAndSet(this.back | FRESH) & ~FRESH;
+		this.published++;
+    }
+
+    /**
+     * Method to take the latest complete frame. Only to be called by
+     * the renderer. The frame may be read until take() is next called.
+     * @return the latest frame, or the frame taken last if nothing has
+     * been published since, or null if nothing has ever been published.
+     */
+    public RenderFrame take() {
+		if ((this.middle.get() & FRESH) != 0) {
+			this.front = this.middle.getAndSet(this.front) & ~FRESH;
+			this.taken++;
+		}
+		else if (this.taken == 0) {
+			return null;
+		}
+		return this.frames[this.front];
+    }
+
+    /**
+     * Accessor method to get the number of frames published.
+     * @return a long holding the number of frames.
+     */
+    public long getPublished() {
+		return this.published;
+    }
+
+    /**
+     * Accessor method to get the number of frames taken. Frames
+     * published but never taken were skipped by the renderer.
+     * @return a long holding the number of frames.
+     */
+    public long getTaken() {
+		return this.taken;
+    }
+}
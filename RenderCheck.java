@@ -0,0 +1,196 @@
+/**
+ * The class which checks, without a display, what DrawBatch.class
+ * draws: that the asteroids of a frame take one draw, that a sorted
+ * batch takes one draw for each kind of shape, and that sorting keeps
+ * every vertex. Each frame is drawn to a RecordingBackend.class, so
+ * the draw calls and vertices are counted rather than drawn.
+ *
+ * Run with:
+ *   java RenderCheck
+ * Prints each check as it passes, and stops with an exception at the
+ * first which fails.
+ */
+
+public class RenderCheck {
+
+    /**
+     * The number of vertices of each shape added to a batch.
+     */
+    private static final int ASTEROID = 12;
+    private static final int CIRCLE = 32;
+    private static final int FILLED_CIRCLE = 42;
+
+    /**
+     * A recording backend which also remembers the primitive and
+     * texture of each draw of the last frame, and adds up the
+     * coordinates of every vertex drawn, so a sorted frame can be
+     * compared with the same frame kept in order.
+     */
+    private static class Recorder extends RecordingBackend {
+		private int[] modes = new int[64];
+		private int[] textures = new int[64];
+		private int draws;
+		private float[] vertices;
+		private double sum;
+
+		public void setArrays(float[] vertices, float[] texCoords, float[] colours) {
+			super.setArrays(vertices, texCoords, colours);
+			this.vertices = vertices;
+			this.draws = 0;
+			this.sum = 0;
+		}
+
+		public void drawArrays(int mode, int texture, int first, int count) {
+			super.drawArrays(mode, texture, first, count);
+			if (this.draws < this.modes.length) {
+				this.modes[this.draws] = mode;
+				this.textures[this.draws] = texture;
+			}
+			this.draws++;
+			for (int v = 2 * first; v < 2 * (first + count); v++) {
+				this.sum += this.vertices[v];
+			}
+		}
+    }
+
+    public static void main(String[] args) {
+		asteroids(1);
+		asteroids(500);
+		mixed(false);
+		mixed(true);
+		textures();
+		empty();
+		System.out.println("All render checks passed");
+    }
+
+    /**
+     * Method to check a frame of asteroids, all with one texture, is
+     * drawn with one call.
+     * @param an int holding the number of asteroids.
+     */
+    private static void asteroids(int count) {
+		DrawBatch batch = new DrawBatch(16);
+		Recorder backend = new Recorder();
+		addAsteroids(batch, count, 1);
+		check(batch.getRunCount() == 1, "asteroids are added as one run");
+		check(batch.getVertexCount() == ASTEROID * count, "each asteroid adds 12 vertices");
+		batch.flush(backend);
+		check(backend.getLastDrawCalls() == 1, count + " asteroids take one draw");
+		check(backend.getLastVertices() == ASTEROID * count, count + " asteroids draw " + ASTEROID * count + " vertices");
+		check((backend.modes[0] == DrawBatch.TRIANGLES) && (backend.textures[0] == 1),
+			"asteroids are drawn as textured triangles");
+		// Turned on for the asteroids, and off by finish()
+		check(backend.getTextureChanges() == 2, "texturing is changed twice");
+		check(batch.getVertexCount() == 0, "the batch is empty after a flush");
+    }
+
+    /**
+     * Method to check a frame with an explosion after every sixteenth
+     * asteroid: kept in order it takes three draws for each explosion,
+     * and sorted it takes three draws in all, one for each kind of
+     * shape, with the same vertices.
+     * @param a boolean which is true to sort the batch.
+     */
+    private static void mixed(boolean sorted) {
+		int groups = 8;
+		DrawBatch batch = new DrawBatch(16);
+		batch.setSorted(sorted);
+		Recorder backend = new Recorder();
+		double sum = addMixed(batch, groups);
+		int vertices = batch.getVertexCount();
+		String name = sorted ? "sorted mixed frame" : "mixed frame in order";
+		check(vertices == groups * (16 * ASTEROID + CIRCLE + FILLED_CIRCLE), name + " adds every vertex");
+		check(batch.getRunCount() == 3 * groups, name + " adds three runs for each explosion");
+		batch.flush(backend);
+		check(backend.getLastVertices() == vertices, name + " draws every vertex");
+		check(Math.abs(backend.sum - sum) < 1e-3 * Math.abs(sum), name + " draws the vertices added");
+		if (sorted) {
+			check(backend.getLastDrawCalls() == 3, name + " takes three draws");
+			check(batch.getLastRunCount() == 3, name + " reports three runs");
+			check((backend.modes[0] == DrawBatch.TRIANGLES) && (backend.textures[0] == 1)
+				&& (backend.modes[1] == DrawBatch.TRIANGLES) && (backend.textures[1] == 0)
+				&& (backend.modes[2] == DrawBatch.LINES) && (backend.textures[2] == 0),
+				name + " draws textured shapes, then filled, then lines");
+		}
+		else {
+			check(backend.getLastDrawCalls() == 3 * groups, name + " takes three draws for each explosion");
+		}
+    }
+
+    /**
+     * Method to check a sorted frame with asteroids of two textures
+     * added alternately draws each texture once.
+     */
+    private static void textures() {
+		DrawBatch batch = new DrawBatch(16);
+		batch.setSorted(true);
+		Recorder backend = new Recorder();
+		for (int i = 0; i < 10; i++) {
+			addAsteroids(batch, 3, 1 + i % 2);
+		}
+		check(batch.getRunCount() == 10, "alternating textures add a run each");
+		batch.flush(backend);
+		check(backend.getLastDrawCalls() == 2, "sorted alternating textures take two draws");
+		check(backend.getLastVertices() == 30 * ASTEROID, "sorted alternating textures draw every vertex");
+		// On to the first, to the second, and off
+		check(backend.getTextureChanges() == 3, "sorted alternating textures change texture three times");
+    }
+
+    /**
+     * Method to check flushing an empty batch draws nothing.
+     */
+    private static void empty() {
+		DrawBatch batch = new DrawBatch(16);
+		Recorder backend = new Recorder();
+		batch.flush(backend);
+		check((backend.getDrawCalls() == 0) && (backend.getFrames() == 0), "an empty batch draws nothing");
+    }
+
+    /**
+     * Method to add asteroids in a row.
+     * @param the batch to add to.
+     * @param an int holding the number of asteroids.
+     * @param an int holding the texture of the asteroids.
+     */
+    private static void addAsteroids(DrawBatch batch, int count, int texture) {
+		for (int i = 0; i < count; i++) {
+			batch.color(0.8f, 0.8f, 0.8f);
+			batch.asteroid(10 + i % 280, 20 + i / 280, 12, 7 * i, texture);
+		}
+    }
+
+    /**
+     * Method to add groups of sixteen asteroids, each followed by an
+     * explosion: a circle and a filled circle.
+     * @param the batch to add to.
+     * @param an int holding the number of groups.
+     * @return a double holding the sum of the coordinates added.
+     */
+    private static double addMixed(DrawBatch batch, int groups) {
+		// Drawn once in order to find the coordinates added
+		DrawBatch plain = new DrawBatch(16);
+		Recorder backend = new Recorder();
+		for (int g = 0; g < groups; g++) {
+			for (DrawBatch b : new DrawBatch[] { batch, plain }) {
+				addAsteroids(b, 16, 1);
+				b.color(0.7f, 0.8f, 1.0f);
+				b.circle(30 * g, 100, 8);
+				b.filledCircle(30 * g, 100, 4);
+			}
+		}
+		plain.flush(backend);
+		return backend.sum;
+    }
+
+    /**
+     * Method to stop if a check has failed, or print that it passed.
+     * @param a boolean which is true if the check passed.
+     * @param a String describing the check.
+     */
+    private static void check(boolean passed, String check) {
+		if (!passed) {
+			throw new IllegalStateException("Failed: " + check);
+		}
+		System.out.println("ok: " + check);
+    }
+}
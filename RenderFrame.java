@@ -0,0 +1,470 @@
+/**
+ * The class which holds everything needed to draw one tick of a
+ * World.class: where each object is, which way it points, how big it
+ * is, what type it is, and the flags which change how it is coloured.
+ * The world's thread captures a frame after each tick and publishes it
+ * through a RenderBuffer.class. The renderer only reads frames, so it
+ * never touches the world while it is being advanced.
+ *
+ * The ship, lasers, enemy ship, power up, explosion and shock wave are
+ * held in a small table with a row for each, and the asteroids in
+ * columns like those of AsteroidField.class.
+ *
+ * Each object's motion over the tick is kept too, so the renderer can
+ * draw at any frame rate by interpolating between where an object was
+ * on the tick before and where it is now. Objects move by their
+ * velocity each tick and are then kept on screen by
+ * SpaceObject.checkBounds(), so where an object was is where it is
+ * less its velocity, and the interpolated location is passed through
+ * checkBounds() in the same way.
+ */
+
+public class RenderFrame {
+
+    /**
+     * The rows of the table of objects.
+     */
+    public static final int SHIP = 0;
+    public static final int GOODIE_LASER = 1;
+    public static final int ENEMY_SHIP = 2;
+    public static final int ENEMY_LASER = 3;
+    public static final int POWER_UP = 4;
+    public static final int EXPLOSION = 5;
+    public static final int SHOCK_WAVE = 6;
+    private static final int OBJECTS = 7;
+
+    /**
+     * Bits of the flags which change how the ship is drawn.
+     */
+    public static final int ACCELERATING = 1;
+    public static final int SHIELDS_DAMAGED = 2;
+    public static final int HYPERSPACE = 4;
+    public static final int LASER_UPGRADED = 8;
+    public static final int GAME_OVER = 16;
+
+    /**
+     * The tick captured, the time it was captured at, and the level
+     * reached.
+     */
+    private long tick;
+    private long time;
+    private int level;
+
+    /**
+     * The number of the background of the level.
+     */
+    private int background;
+
+    /**
+     * The flags which change how the ship is drawn, and the figures
+     * shown at the top of the screen.
+     */
+    private int flags;
+    private int shieldsRemaining;
+    private int shieldTimer;
+    private int brakesUsed;
+    private int score;
+
+    /**
+     * The table of objects. The radius is the blast radius of an
+     * explosion or shock wave, and the type is the type of a power up
+     * or explosion.
+     */
+    private boolean[] exists = new boolean[OBJECTS];
+    private double[] objectX = new double[OBJECTS];
+    private double[] objectY = new double[OBJECTS];
+    private int[] objectRotation = new int[OBJECTS];
+    private int[] objectRadius = new int[OBJECTS];
+    private int[] objectType = new int[OBJECTS];
+    private double[] objectXVelocity = new double[OBJECTS];
+    private double[] objectYVelocity = new double[OBJECTS];
+    private int[] objectRotateSpeed = new int[OBJECTS];
+
+    /**
+     * The columns of asteroids. Only the first count are in use.
+     */
+    private int count;
+    private int[] id = new int[0];
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private int[] rotation = new int[0];
+    private int[] radius = new int[0];
+    private double[] xVelocity = new double[0];
+    private double[] yVelocity = new double[0];
+    private int[] rotateSpeed = new int[0];
+
+    /**
+     * Method to capture the state of a world into this frame, reusing
+     * its arrays.
+     * @param the world.
+     */
+    public void capture(World world) {
+		Game game = world.getGame();
+		SpaceShip ship = world.getShip();
+		CollisionDetector cd = world.getCollisionDetector();
+		this.tick = world.getTick();
+		this.time = System.nanoTime();
+		this.level = game.getLevel();
+		this.background = game.getBackgroundNumber();
+		int flags = 0;
+		if (ship.getAccelerating()) {
+			flags |= ACCELERATING;
+		}
+		if (ship.getShieldsDamaged()) {
+			flags |= SHIELDS_DAMAGED;
+		}
+		if (world.getHyperspace()) {
+			flags |= HYPERSPACE;
+		}
+		if (ship.getLaserUpgraded()) {
+			flags |= LASER_UPGRADED;
+		}
+		if (world.getGameOver()) {
+			flags |= GAME_OVER;
+		}
+		this.flags = flags;
+		this.shieldsRemaining = ship.getShieldsRemaining();
+		this.shieldTimer = world.getShieldTimer();
+		this.brakesUsed = ship.getBrakesUsed();
+		this.score = ship.getScore();
+		// Objects
+		setObject(SHIP, ship, 0);
+		setObject(GOODIE_LASER, world.getGoodieLaser(), 0);
+		setObject(ENEMY_SHIP, world.getBaddie(), 0);
+		setObject(ENEMY_LASER, world.getBaddieLaser(), 0);
+		setObject(POWER_UP, world.getPowerUp(), world.getPowerUp().getPowerUpType());
+		setObject(EXPLOSION, cd.getExplosionExist(), cd.getXExplosionLocation(),
+			cd.getYExplosionLocation(), 0, cd.getBlastRadius(), cd.getExplosionType());
+		setObject(SHOCK_WAVE, cd.getShockWaveExist(), cd.getXShockWaveLocation(),
+			cd.getYShockWaveLocation(), 0, cd.getShockWaveRadius(), 0);
+		// Asteroids
+		AsteroidField field = game.getAsteroids();
+		int n = field.getCount();
+		if (n > this.x.length) {
+			// Make room for the field, which has grown
+			int capacity = field.getCapacity();
+			this.id = new int[capacity];
+			this.x = new double[capacity];
+			this.y = new double[capacity];
+			this.rotation = new int[capacity];
+			this.radius = new int[capacity];
+			this.xVelocity = new double[capacity];
+			this.yVelocity = new double[capacity];
+			this.rotateSpeed = new int[capacity];
+		}
+		for (int i = 0; i < n; i++) {
+			this.id[i] = field.getId(i);
+			this.x[i] = field.getXLocation(i);
+			this.y[i] = field.getYLocation(i);
+			this.rotation[i] = field.getRotation(i);
+			this.radius[i] = field.getRadius(i);
+			this.xVelocity[i] = field.getXVelocity(i);
+			this.yVelocity[i] = field.getYVelocity(i);
+			this.rotateSpeed[i] = field.getRotateSpeed(i);
+		}
+		this.count = n;
+    }
+
+    /**
+     * Method to set a row of the table of objects from a space object.
+     * @param an int holding the row.
+     * @param the space object.
+     * @param an int holding the type of the object.
+     */
+    private void setObject(int row, SpaceObject object, int type) {
+		setObject(row, object.getExists(), object.getXLocation(), object.getYLocation(),
+			object.getRotation(), 0, type);
+		this.objectXVelocity[row] = object.getXVelocity();
+		this.objectYVelocity[row] = object.getYVelocity();
+		this.objectRotateSpeed[row] = object.getRotateSpeed();
+    }
+
+    /**
+     * Method to set a row of the table of objects.
+     * @param an int holding the row.
+     * @param a boolean which is true if the object exists.
+     * @param a double holding the horizontal location.
+     * @param a double holding the vertical location.
+     * @param an int holding the rotation.
+     * @param an int holding the radius.
+     * @param an int holding the type.
+     */
+    private void setObject(int row, boolean exists, double x, double y, int rotation, int radius, int type) {
+		this.exists[row] = exists;
+		this.objectX[row] = x;
+		this.objectY[row] = y;
+		this.objectRotation[row] = rotation;
+		this.objectRadius[row] = radius;
+		this.objectType[row] = type;
+		this.objectXVelocity[row] = 0;
+		this.objectYVelocity[row] = 0;
+		this.objectRotateSpeed[row] = 0;
+    }
+
+    /**
+     * Accessor method to get the tick captured.
+     * @return a long holding the tick.
+     */
+    public long getTick() {
+		return this.tick;
+    }
+
+    /**
+     * Method to get how far the renderer is between the tick before
+     * this frame and this frame. Objects are drawn one tick behind, so
+     * that they are always drawn between two ticks which have both
+     * been simulated.
+     * @param a long holding the time now, from System.nanoTime().
+     * @return a double between 0, for the tick before, and 1, for this
+     * frame.
+     */
+    public double getAlpha(long now) {
+		double alpha = (double)(now - this.time) / World.TICK_NANOS;
+		return Math.max(0.0, Math.min(1.0, alpha));
+    }
+
+    /**
+     * Method to interpolate a location between the tick before and
+     * this frame.
+     * @param a double holding the location in this frame.
+     * @param a double holding the velocity the object moved by.
+     * @param a double holding how far between the ticks to draw.
+     * @return a double holding the location to draw at.
+     */
+    private static double interpolate(double location, double velocity, double alpha) {
+		return SpaceObject.checkBounds(location - (1 - alpha) * velocity);
+    }
+
+    /**
+     * Accessor method to get the level reached.
+     * @return an int holding the level.
+     */
+    public int getLevel() {
+		return this.level;
+    }
+
+    /**
+     * Accessor method to get the name of the background texture.
+     * @return a String holding the name of the texture.
+     */
+    public String getBackground() {
+		return Game.getBackground(this.background);
+    }
+
+    /**
+     * Accessor method to get the number of the background.
+     * @return an int holding the number, from 1 to Game.BACKGROUNDS.
+     */
+    public int getBackgroundNumber() {
+		return this.background;
+    }
+
+    /**
+     * Method to check a flag which changes how the ship is drawn.
+     * @param an int holding the flag, such as ACCELERATING.
+     * @return a boolean which is true if the flag is set.
+     */
+    public boolean getFlag(int flag) {
+		return (this.flags & flag) != 0;
+    }
+
+    /**
+     * Accessor method to get the shields the ship has left.
+     * @return an int holding the percentage of shields left.
+     */
+    public int getShieldsRemaining() {
+		return this.shieldsRemaining;
+    }
+
+    /**
+     * Accessor method to get the number of ticks the shield has been
+     * shown for since the ship was last hit.
+     * @return an int holding the number of ticks.
+     */
+    public int getShieldTimer() {
+		return this.shieldTimer;
+    }
+
+    /**
+     * Accessor method to get the number of emergency brakes used.
+     * @return an int holding the number of brakes used.
+     */
+    public int getBrakesUsed() {
+		return this.brakesUsed;
+    }
+
+    /**
+     * Accessor method to get the score.
+     * @return an int holding the score.
+     */
+    public int getScore() {
+		return this.score;
+    }
+
+    /**
+     * Accessor method to get whether an object exists.
+     * @param an int holding the row of the object, such as SHIP.
+     * @return a boolean which is true if the object exists.
+     */
+    public boolean getExists(int object) {
+		return this.exists[object];
+    }
+
+    /**
+     * Accessor method to get the horizontal location of an object.
+     * @param an int holding the row of the object.
+     * @return a double holding the location.
+     */
+    public double getXLocation(int object) {
+		return this.objectX[object];
+    }
+
+    /**
+     * Accessor method to get the vertical location of an object.
+     * @param an int holding the row of the object.
+     * @return a double holding the location.
+     */
+    public double getYLocation(int object) {
+		return this.objectY[object];
+    }
+
+    /**
+     * Method to get the horizontal location to draw an object at.
+     * @param an int holding the row of the object.
+     * @param a double holding how far between the ticks to draw.
+     * @return a double holding the location.
+     */
+    public double getXLocation(int object, double alpha) {
+		return interpolate(this.objectX[object], this.objectXVelocity[object], alpha);
+    }
+
+    /**
+     * Method to get the vertical location to draw an object at.
+     * @param an int holding the row of the object.
+     * @param a double holding how far between the ticks to draw.
+     * @return a double holding the location.
+     */
+    public double getYLocation(int object, double alpha) {
+		return interpolate(this.objectY[object], this.objectYVelocity[object], alpha);
+    }
+
+    /**
+     * Method to get the rotation to draw an object at.
+     * @param an int holding the row of the object.
+     * @param a double holding how far between the ticks to draw.
+     * @return a double holding the rotation in degrees.
+     */
+    public double getRotation(int object, double alpha) {
+		return this.objectRotation[object] - (1 - alpha) * this.objectRotateSpeed[object];
+    }
+
+    /**
+     * Accessor method to get the rotation of an object.
+     * @param an int holding the row of the object.
+     * @return an int holding the rotation in degrees.
+     */
+    public int getRotation(int object) {
+		return this.objectRotation[object];
+    }
+
+    /**
+     * Accessor method to get the radius of an explosion or shock wave.
+     * @param an int holding the row of the object.
+     * @return an int holding the radius.
+     */
+    public int getRadius(int object) {
+		return this.objectRadius[object];
+    }
+
+    /**
+     * Accessor method to get the type of a power up or explosion.
+     * @param an int holding the row of the object.
+     * @return an int holding the type.
+     */
+    public int getType(int object) {
+		return this.objectType[object];
+    }
+
+    /**
+     * Accessor method to get the number of asteroids.
+     * @return an int holding the number of asteroids.
+     */
+    public int getAsteroidCount() {
+		return this.count;
+    }
+
+    /**
+     * Accessor method to get the id of an asteroid.
+     * @param an int holding the index of the asteroid.
+     * @return an int holding the id.
+     */
+    public int getAsteroidId(int i) {
+		return this.id[i];
+    }
+
+    /**
+     * Accessor method to get the horizontal location of an asteroid.
+     * @param an int holding the index of the asteroid.
+     * @return a double holding the location.
+     */
+    public double getAsteroidX(int i) {
+		return this.x[i];
+    }
+
+    /**
+     * Accessor method to get the vertical location of an asteroid.
+     * @param an int holding the index of the asteroid.
+     * @return a double holding the location.
+     */
+    public double getAsteroidY(int i) {
+		return this.y[i];
+    }
+
+    /**
+     * Method to get the horizontal location to draw an asteroid at.
+     * @param an int holding the index of the asteroid.
+     * @param a double holding how far between the ticks to draw.
+     * @return a double holding the location.
+     */
+    public double getAsteroidX(int i, double alpha) {
+		return interpolate(this.x[i], this.xVelocity[i], alpha);
+    }
+
+    /**
+     * Method to get the vertical location to draw an asteroid at.
+     * @param an int holding the index of the asteroid.
+     * @param a double holding how far between the ticks to draw.
+     * @return a double holding the location.
+     */
+    public double getAsteroidY(int i, double alpha) {
+		return interpolate(this.y[i], this.yVelocity[i], alpha);
+    }
+
+    /**
+     * Method to get the rotation to draw an asteroid at.
+     * @param an int holding the index of the asteroid.
+     * @param a double holding how far between the ticks to draw.
+     * @return a double holding the rotation in degrees.
+     */
+    public double getAsteroidRotation(int i, double alpha) {
+		return this.rotation[i] - (1 - alpha) * this.rotateSpeed[i];
+    }
+
+    /**
+     * Accessor method to get the rotation of an asteroid.
+     * @param an int holding the index of the asteroid.
+     * @return an int holding the rotation in degrees.
+     */
+    public int getAsteroidRotation(int i) {
+		return this.rotation[i];
+    }
+
+    /**
+     * Accessor method to get the radius of an asteroid.
+     * @param an int holding the index of the asteroid.
+     * @return an int holding the radius.
+     */
+    public int getAsteroidRadius(int i) {
+		return this.radius[i];
+    }
+}
@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * The class which plays a game recorded by InputRecorder.class again.
+ * A new world is created with the recorded seed and stepped with the
+ * recorded controls, headless and as fast as the processor allows,
+ * so the game ends exactly as it did when it was recorded.
+ *
+ * Run with:
+ *   java Replay file [times]
+ * Prints how the game ended and how many times faster than real time
+ * it was replayed. Replaying more than once also checks every replay
+ * ends the same way.
+ */
+
+public class Replay {
+
+    /**
+     * The seed of the recorded world.
+     */
+    private long seed;
+
+    /**
+     * The encoded runs of controls, and where they start.
+     */
+    private byte[] bytes;
+    private int start;
+
+    /**
+     * Constructor for a replay of a recording.
+     * @param an array holding the recording, as written by
+     * InputRecorder.write().
+     */
+    public Replay(byte[] bytes) {
+		if (bytes.length < 12) {
+			throw new IllegalArgumentException("Recording is too short");
+		}
+		for (int i = 0; i < 4; i++) {
+			if (bytes[i] != InputRecorder.MAGIC[i]) {
+				throw new IllegalArgumentException("Not a recording, or recorded by another version");
+			}
+		}
+		for (int i = 0; i < 8; i++) {
+			this.seed = (this.seed << 8) | (bytes[4 + i] & 0xff);
+		}
+		this.bytes = bytes;
+		this.start = 12;
+    }
+
+    /**
+     * Method to load a replay from a file.
+     * @param a String holding the name of the file.
+     * @return the replay.
+     */
+    public static Replay load(String file) throws IOException {
+		return new Replay(Files.readAllBytes(Paths.get(file)));
+    }
+
+    public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java Replay file [times]");
+			return;
+		}
+		Replay replay = load(args[0]);
+		int times = 1;
+		if (args.length > 1) {
+			times = Integer.parseInt(args[1]);
+		}
+		String first = null;
+		long ticks = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < times; i++) {
+			World world = replay.play();
+			String result = "tick " + world.getTick() + ", level " + world.getGame().getLevel()
+				+ ", score " + world.getShip().getScore() + ", game over " + world.getGameOver();
+			if (first == null) {
+				first = result;
+			}
+			else {
+				if (!result.equals(first)) {
+					System.out.println("Replay " + i + " ended differently: " + result);
+				}
+			}
+			ticks += world.getTick();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println("Seed " + replay.getSeed() + ": " + first);
+		System.out.println((long)(ticks / seconds) + " ticks/second, "
+			+ (long)(ticks / seconds / World.TICKS_PER_SECOND) + " times real time");
+    }
+
+    /**
+     * Method to play the recording in a new world.
+     * @return the world, stepped to the end of the recording.
+     * @throws IllegalArgumentException if the recording ends partway
+     * through a run, or a number in it is too long.
+     */
+    public World play() {
+		World world = new World(this.seed);
+		int i = this.start;
+		while (i < this.bytes.length) {
+			// Read the control bits and the ticks they were held for
+			long controls = 0;
+			int shift = 0;
+			byte b;
+			do {
+				if ((i >= this.bytes.length) || (shift > 63)) {
+					throw new IllegalArgumentException("Truncated recording");
+				}
+				b = this.bytes[i++];
+				controls |= (long)(b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			long run = 0;
+			shift = 0;
+			do {
+				if ((i >= this.bytes.length) || (shift > 63)) {
+					throw new IllegalArgumentException("Truncated recording");
+				}
+				b = this.bytes[i++];
+				run |= (long)(b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			for (long t = 0; t < run; t++) {
+				world.step((int)controls);
+			}
+		}
+		return world;
+    }
+
+    /**
+     * Accessor method to get the seed of the recorded world.
+     * @return a long holding the seed.
+     */
+    public long getSeed() {
+		return this.seed;
+    }
+}
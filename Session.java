@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The class which holds one single-player game hosted by
+ * SessionHost.class: a World.class, whatever chooses its controls, and
+ * optionally whatever is sent its state, such as a spectator's socket.
+ *
+ * Each time the host's clock ticks, the session is woken and advances
+ * its world to the tick it is due to be at, then sends the state once.
+ * A session which has fallen behind catches up a few ticks at a time,
+ * sending only the latest state. A session which falls too far behind,
+ * because its sink is slow or the machine is overloaded, stops trying
+ * to catch up and its game runs slower instead, so it can never take
+ * more than its share of the machine. A paused session is not woken
+ * at all.
+ */
+
+public class Session {
+
+    /**
+     * The most ticks a session advances by each time it is woken.
+     */
+    public static final int MAX_CATCH_UP = 4;
+
+    /**
+     * The most ticks a session may be behind before it gives up the
+     * ticks it has missed.
+     */
+    public static final int MAX_LAG = 2 * World.TICKS_PER_SECOND;
+
+    /**
+     * Interface for whatever chooses the controls of a session, such
+     * as Bot.class or a queue of a remote player's input.
+     */
+    public interface Controller {
+
+		/**
+		 * Method to choose the controls for the next tick.
+		 * @param the world about to be advanced.
+		 * @return an int holding the control bits.
+		 */
+		int controls(World world);
+    }
+
+    /**
+     * Interface for whatever is sent the state of a session.
+     */
+    public interface Sink {
+
+		/**
+		 * Method to send the state of the world. May block, in which
+		 * case the session falls behind.
+		 * @param the world.
+		 */
+		void frame(World world) throws IOException;
+    }
+
+    /**
+     * Sends the state to the sink, telling the pool running the
+     * session (if any) that it may block, so the pool can start
+     * another thread to run other sessions meanwhile.
+     */
+    private class Send implements ForkJoinPool.ManagedBlocker {
+
+		private boolean done;
+		private IOException failure;
+
+		public boolean block() {
+			try {
+				sink.frame(world);
+			}
+			catch (IOException e) {
+				this.failure = e;
+			}
+			this.done = true;
+			return true;
+		}
+
+		public boolean isReleasable() {
+			return this.done;
+		}
+    }
+
+    /**
+     * The id of the session.
+     */
+    private int id;
+
+    /**
+     * The world, its controller and its sink, which may be null.
+     */
+    private World world;
+    private Controller controller;
+    private Sink sink;
+    private Send send = new Send();
+
+    /**
+     * The tick of the host's clock at which the world was at tick 0.
+     * Moved on when the session gives up ticks or is resumed.
+     */
+    private long origin;
+
+    /**
+     * Flags indicating whether the session is paused, whether it has
+     * finished, and whether it is waiting to be run, or is running, on
+     * the host's pool.
+     */
+    private volatile boolean paused;
+    private volatile boolean finished;
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * The thread the session runs on, if it has its own.
+     */
+    volatile Thread thread;
+
+    /**
+     * Statistics on the session. Only written by the thread running
+     * the session.
+     */
+    private volatile long stepNanos;
+    private volatile long sinkNanos;
+    private volatile long wakes;
+    private volatile long framesSent;
+    private volatile long ticksGivenUp;
+    private volatile long stalls;
+    private volatile long maxLag;
+
+    /**
+     * Constructor for a session.
+     * @param an int holding the id of the session.
+     * @param the world to play.
+     * @param whatever chooses the controls.
+     * @param whatever is sent the state, or null.
+     * @param a long holding the tick of the host's clock the session
+     * starts at.
+     */
+    Session(int id, World world, Controller controller, Sink sink, long origin) {
+		this.id = id;
+		this.world = world;
+		this.controller = controller;
+		this.sink = sink;
+		this.origin = origin - world.getTick();
+    }
+
+    /**
+     * Method to advance the world to the tick it is due to be at, and
+     * send its state. Only ever run by one thread at a time.
+     * @param a long holding the tick of the host's clock.
+     */
+    void wake(long clock) {
+		if (this.finished || this.paused) {
+			return;
+		}
+		long start = System.nanoTime();
+		this.wakes++;
+		long lag = clock - this.origin - this.world.getTick();
+		if (lag > this.maxLag) {
+			this.maxLag = lag;
+		}
+		if (lag > MAX_LAG) {
+			// Give up the ticks missed, so the game runs slower rather
+			// than taking more than its share to catch up.
+			this.origin += lag - 1;
+			this.ticksGivenUp += lag - 1;
+			this.stalls++;
+			lag = 1;
+		}
+		int steps = (int)Math.min(lag, MAX_CATCH_UP);
+		for (int i = 0; (i < steps) && !this.world.getGameOver(); i++) {
+			this.world.step(this.controller.controls(this.world));
+		}
+		long stepped = System.nanoTime();
+		this.stepNanos += stepped - start;
+		if ((this.sink != null) && (steps > 0)) {
+			this.send.done = false;
+			this.send.failure = null;
+			try {
+				ForkJoinPool.managedBlock(this.send);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (this.send.failure != null) {
+				// Nobody to send to, so stop
+				this.finished = true;
+			}
+			else {
+				this.framesSent++;
+			}
+			this.sinkNanos += System.nanoTime() - stepped;
+		}
+		if (this.world.getGameOver()) {
+			this.finished = true;
+		}
+    }
+
+    /**
+     * Method to pause the session. A paused session is not woken, and
+     * its game does not advance, until it is resumed.
+     */
+    public void pause() {
+		this.paused = true;
+    }
+
+    /**
+     * Method to resume a paused session, from the tick it was paused
+     * at.
+     * @param a long holding the tick of the host's clock.
+     */
+    void resume(long clock) {
+		if (this.paused) {
+			this.origin = clock - this.world.getTick();
+			this.paused = false;
+		}
+    }
+
+    /**
+     * Method to stop the session. Only called by the host, through
+     * SessionHost.stop(Session), which also wakes the session's thread
+     * so that it ends.
+     */
+    void stop() {
+		this.finished = true;
+    }
+
+    /**
+     * Accessor method to get the id of the session.
+     * @return an int holding the id.
+     */
+    public int getId() {
+		return this.id;
+    }
+
+    /**
+     * Accessor method to get the world. Should only be read while the
+     * session is paused or finished.
+     * @return the world.
+     */
+    public World getWorld() {
+		return this.world;
+    }
+
+    /**
+     * Accessor method to get the flag indicating whether the session
+     * is paused.
+     * @return the flag indicating the session is paused.
+     */
+    public boolean getPaused() {
+		return this.paused;
+    }
+
+    /**
+     * Accessor method to get the flag indicating whether the session
+     * has finished, because its game is over or it was stopped.
+     * @return the flag indicating the session has finished.
+     */
+    public boolean getFinished() {
+		return this.finished;
+    }
+
+    /**
+     * Accessor method to get the time spent advancing the world. This
+     * is the time the session's thread was running the game, so is the
+     * CPU time the session has taken unless the machine is overloaded.
+     * @return a long holding the time in nanoseconds.
+     */
+    public long getStepNanos() {
+		return this.stepNanos;
+    }
+
+    /**
+     * Accessor method to get the time spent sending the state to the
+     * sink, including any time blocked.
+     * @return a long holding the time in nanoseconds.
+     */
+    public long getSinkNanos() {
+		return this.sinkNanos;
+    }
+
+    /**
+     * Accessor method to get the number of times the session has been
+     * woken.
+     * @return a long holding the number of times.
+     */
+    public long getWakes() {
+		return this.wakes;
+    }
+
+    /**
+     * Accessor method to get the number of states sent to the sink.
+     * @return a long holding the number of states.
+     */
+    public long getFramesSent() {
+		return this.framesSent;
+    }
+
+    /**
+     * Accessor method to get the number of ticks given up because the
+     * session fell too far behind.
+     * @return a long holding the number of ticks.
+     */
+    public long getTicksGivenUp() {
+		return this.ticksGivenUp;
+    }
+
+    /**
+     * Accessor method to get the number of times the session fell too
+     * far behind and gave up ticks.
+     * @return a long holding the number of times.
+     */
+    public long getStalls() {
+		return this.stalls;
+    }
+
+    /**
+     * Accessor method to get the most ticks the session has been
+     * behind when woken.
+     * @return a long holding the number of ticks.
+     */
+    public long getMaxLag() {
+		return this.maxLag;
+    }
+}
@@ -0,0 +1,396 @@
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The class which hosts many independent single-player sessions on one
+ * JVM, such as games being spectated or bots being scored. Every
+ * session is woken by one shared clock which ticks at
+ * World.TICKS_PER_SECOND.
+ *
+ * Where the JVM has virtual threads, each session runs its game and
+ * sends its state on a virtual thread of its own, which waits for the
+ * clock between ticks, so a session may block on its sink without
+ * holding up any other. Otherwise each tick of the clock runs every
+ * session which is not still running its last tick on a pool with a
+ * thread per core. Either way a session which falls behind catches up
+ * a few ticks at a time, or gives ticks up (see Session.class), and a
+ * paused session is never woken, so costs nothing but its memory. A
+ * session which finishes is dropped by the host, so it costs nothing
+ * at all once its statistics have been added to the host's totals.
+ *
+ * Run with:
+ *   java SessionHost [sessions] [seconds] [paused fraction] [pooled]
+ * Each session is played by Bot.class, and a statistics line is
+ * printed every few seconds.
+ */
+
+public class SessionHost {
+
+    /**
+     * The sessions hosted. A session which has finished is removed once
+     * nothing is running it.
+     */
+    private Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Totals of the statistics of the sessions which have finished and
+     * been removed.
+     */
+    private LongAdder finished = new LongAdder();
+    private LongAdder finishedWakes = new LongAdder();
+    private LongAdder finishedStepNanos = new LongAdder();
+    private LongAdder finishedTicksGivenUp = new LongAdder();
+    private LongAdder finishedStalls = new LongAdder();
+    private AtomicLong finishedMaxLag = new AtomicLong();
+    private AtomicLong finishedBusiest = new AtomicLong();
+
+    /**
+     * The number of sessions started.
+     */
+    private int count;
+
+    /**
+     * The tick of the clock. Only advanced by the clock's thread.
+     */
+    private volatile long tick;
+
+    /**
+     * The threads waiting for the clock to tick.
+     */
+    private ConcurrentLinkedQueue<Thread> waiting = new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * The executor which starts a virtual thread for each session, or
+     * null if sessions are run on the pool.
+     */
+    private ExecutorService threads;
+
+    /**
+     * The pool sessions are run on, if they have no threads of their
+     * own.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * The thread which runs the clock.
+     */
+    private Thread clock;
+
+    /**
+     * Flag indicating whether the host has been stopped.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Counts the ticks on which the clock had to skip ahead because
+     * its thread was not run in time.
+     */
+    private volatile long clockSlips;
+
+    /**
+     * Constructor for the host, which starts the clock straight away.
+     * @param a boolean which is true to give each session a virtual
+     * thread if the JVM has them, or false to always use the pool.
+     */
+    public SessionHost(boolean virtual) {
+		if (virtual) {
+			this.threads = newVirtualThreadExecutor();
+		}
+		if (this.threads == null) {
+			this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+		this.clock = new Thread(this::runClock, "SessionHost clock");
+		this.clock.setDaemon(true);
+		this.clock.start();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+		int sessions = 10000;
+		int seconds = 20;
+		double paused = 0.9;
+		boolean virtual = true;
+		if (args.length > 0) {
+			sessions = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			seconds = Integer.parseInt(args[1]);
+		}
+		if (args.length > 2) {
+			paused = Double.parseDouble(args[2]);
+		}
+		if (args.length > 3) {
+			virtual = !args[3].equals("pooled");
+		}
+		SessionHost host = new SessionHost(virtual);
+		System.out.println("Running on " + (host.isVirtual() ? "virtual threads" : "a pool"));
+		Bot bot = new Bot();
+		for (int i = 0; i < sessions; i++) {
+			Session session = host.start(new World(i), bot::controls, null);
+			if (i < paused * sessions) {
+				session.pause();
+			}
+		}
+		for (int s = 0; s < seconds; s += 5) {
+			Thread.sleep(5000);
+			host.report();
+		}
+		host.stop();
+    }
+
+    /**
+     * Method to make an executor which starts a virtual thread for each
+     * task. Found by reflection, so the host still runs on JVMs
+     * without virtual threads.
+     * @return the executor, or null if the JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			// Either there is no such method, or it threw because
+			// virtual threads are a preview feature which is not enabled
+			return null;
+		}
+    }
+
+    /**
+     * Method to start a session. It is first woken on the next tick of
+     * the clock.
+     * @param the world to play.
+     * @param whatever chooses the controls.
+     * @param whatever is sent the state, or null.
+     * @return the session.
+     */
+    public synchronized Session start(World world, Session.Controller controller, Session.Sink sink) {
+		if (this.stopped) {
+			throw new IllegalStateException("Host has been stopped");
+		}
+		Session session = new Session(this.count++, world, controller, sink, this.tick);
+		this.sessions.add(session);
+		if (this.threads != null) {
+			this.threads.execute(() -> runSession(session));
+		}
+		return session;
+    }
+
+    /**
+     * Method to resume a paused session from the tick it was paused at.
+     * @param the session.
+     */
+    public void resume(Session session) {
+		session.resume(this.tick);
+		Thread thread = session.thread;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+    }
+
+    /**
+     * Method to stop a session. If it has a thread of its own, the
+     * thread is woken so that it ends, even if the session is paused.
+     * @param the session.
+     */
+    public void stop(Session session) {
+		session.stop();
+		Thread thread = session.thread;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+    }
+
+    /**
+     * Method to stop the clock and every session.
+     */
+    public void stop() throws InterruptedException {
+		this.stopped = true;
+		for (Session session : this.sessions) {
+			stop(session);
+		}
+		this.clock.join();
+		if (this.threads != null) {
+			this.threads.shutdown();
+			this.threads.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		else {
+			this.pool.shutdown();
+			this.pool.awaitTermination(10, TimeUnit.SECONDS);
+		}
+    }
+
+    /**
+     * Method run by the clock's thread, which ticks the clock until the
+     * host is stopped.
+     */
+    private void runClock() {
+		long next = System.nanoTime() + World.TICK_NANOS;
+		while (!this.stopped) {
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+				continue;
+			}
+			long now = this.tick + 1;
+			this.tick = now;
+			// Wake the sessions with threads of their own
+			Thread thread;
+			while ((thread = this.waiting.poll()) != null) {
+				LockSupport.unpark(thread);
+			}
+			// Run the other sessions on the pool, unless still running
+			// their last tick.
+			if (this.pool != null) {
+				for (Session session : this.sessions) {
+					if (session.getFinished()) {
+						// Stopped between ticks. Once its last tick has
+						// run, nothing else will run it.
+						if (session.scheduled.compareAndSet(false, true)) {
+							retire(session);
+						}
+					}
+					else if (!session.getPaused() && session.scheduled.compareAndSet(false, true)) {
+						this.pool.execute(() -> {
+							session.wake(now);
+							if (session.getFinished()) {
+								retire(session);
+							}
+							session.scheduled.set(false);
+						});
+					}
+				}
+			}
+			next += World.TICK_NANOS;
+			// Don't try to catch up after a stall
+			if (next < System.nanoTime()) {
+				next = System.nanoTime() + World.TICK_NANOS;
+				this.clockSlips++;
+			}
+		}
+		Thread thread;
+		while ((thread = this.waiting.poll()) != null) {
+			LockSupport.unpark(thread);
+		}
+    }
+
+    /**
+     * Method run by a session's own thread, which wakes the session
+     * each time the clock ticks until it finishes.
+     * @param the session.
+     */
+    private void runSession(Session session) {
+		session.thread = Thread.currentThread();
+		long seen = this.tick;
+		while (!session.getFinished() && !this.stopped) {
+			if (session.getPaused()) {
+				LockSupport.park(session);
+				continue;
+			}
+			seen = awaitTick(seen + 1);
+			session.wake(seen);
+		}
+		session.thread = null;
+		retire(session);
+    }
+
+    /**
+     * Method to remove a session which has finished, adding its
+     * statistics to the host's totals. Only to be called once nothing
+     * is running the session. Does nothing if it has already been
+     * removed.
+     * @param the session.
+     */
+    private void retire(Session session) {
+		if (!this.sessions.remove(session)) {
+			return;
+		}
+		this.finished.increment();
+		this.finishedWakes.add(session.getWakes());
+		this.finishedStepNanos.add(session.getStepNanos());
+		this.finishedTicksGivenUp.add(session.getTicksGivenUp());
+		this.finishedStalls.add(session.getStalls());
+		this.finishedMaxLag.accumulateAndGet(session.getMaxLag(), Math::max);
+		this.finishedBusiest.accumulateAndGet(session.getStepNanos(), Math::max);
+    }
+
+    /**
+     * Method to wait for the clock to reach a tick.
+     * @param a long holding the tick.
+     * @return a long holding the tick the clock has reached.
+     */
+    private long awaitTick(long target) {
+		long now;
+		while (((now = this.tick) < target) && !this.stopped) {
+			this.waiting.add(Thread.currentThread());
+			// The clock may have ticked before this thread was added
+			if (this.tick < target) {
+				LockSupport.park(this);
+			}
+		}
+		return now;
+    }
+
+    /**
+     * Method to print statistics on every session, including those
+     * which have finished and been removed.
+     */
+    public void report() {
+		int running = 0;
+		int paused = 0;
+		long finished = this.finished.sum();
+		long wakes = this.finishedWakes.sum();
+		long stepNanos = this.finishedStepNanos.sum();
+		long ticksGivenUp = this.finishedTicksGivenUp.sum();
+		long stalls = this.finishedStalls.sum();
+		long maxLag = this.finishedMaxLag.get();
+		long busiest = this.finishedBusiest.get();
+		for (Session session : this.sessions) {
+			if (session.getFinished()) {
+				finished++;
+			}
+			else if (session.getPaused()) {
+				paused++;
+			}
+			else {
+				running++;
+			}
+			wakes += session.getWakes();
+			stepNanos += session.getStepNanos();
+			ticksGivenUp += session.getTicksGivenUp();
+			stalls += session.getStalls();
+			maxLag = Math.max(maxLag, session.getMaxLag());
+			busiest = Math.max(busiest, session.getStepNanos());
+		}
+		System.out.println("Tick: " + this.tick
+			+ ", running: " + running + ", paused: " + paused + ", finished: " + finished
+			+ ", mean wake: " + (stepNanos / Math.max(1, wakes) / 1000) + " us"
+			+ ", busiest session: " + (busiest / 1000000) + " ms"
+			+ ", most behind: " + maxLag
+			+ ", stalls: " + stalls + " (" + ticksGivenUp + " ticks given up)"
+			+ ", clock slips: " + this.clockSlips);
+    }
+
+    /**
+     * Accessor method to get the flag indicating whether sessions run
+     * on virtual threads of their own.
+     * @return the flag indicating virtual threads.
+     */
+    public boolean isVirtual() {
+		return this.threads != null;
+    }
+
+    /**
+     * Accessor method to get the tick of the clock.
+     * @return a long holding the tick.
+     */
+    public long getTick() {
+		return this.tick;
+    }
+}
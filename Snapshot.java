@@ -0,0 +1,121 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The class which saves the whole state of a world into a compact
+ * binary snapshot, and restores a world from one. A restored world
+ * carries on exactly as the world the snapshot was taken of, since
+ * the state of its random source is saved too. Used to save games,
+ * clone worlds and rewind.
+ *
+ * Each snapshot starts with MAGIC and VERSION, followed by the state
+ * written by World.writeState(). Snapshots are little-endian, so the
+ * asteroid arrays are copied straight from memory on most processors.
+ * The snapshot is written into a direct buffer which is kept and
+ * reused, so once the buffer is large enough taking a snapshot
+ * allocates no memory. A snapshot of a typical level is well under a
+ * kilobyte and takes well under a microsecond, so a world can be
+ * snapshotted every tick.
+ */
+
+public class Snapshot {
+
+    /**
+     * The int every snapshot starts with: "AST" and a zero byte.
+     */
+    public static final int MAGIC = 0x41535400;
+
+    /**
+     * The version of the format. Increased whenever the state written
+     * by any writeState() method changes.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The number of bytes each asteroid takes up in a snapshot.
+     */
+    private static final int ASTEROID_BYTES = 4 * 8 + 2 * 4 + 2;
+
+    /**
+     * The buffer snapshots are written into.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor for a snapshot with a buffer large enough for
+     * most levels. The buffer grows if needed.
+     */
+    public Snapshot() {
+		this.buffer = allocate(4096);
+    }
+
+    /**
+     * Method to take a snapshot of a world. The snapshot is only
+     * valid until the next snapshot is taken with this object.
+     * @param the world.
+     * @return the buffer holding the snapshot, ready to be read from
+     * its position to its limit.
+     */
+    public ByteBuffer write(World world) {
+		int needed = 1024 + world.getGame().getAsteroids().getCount() * ASTEROID_BYTES;
+		if (this.buffer.capacity() < needed) {
+			this.buffer = allocate(2 * needed);
+		}
+		while (true) {
+			this.buffer.clear();
+			try {
+				this.buffer.putInt(MAGIC);
+				this.buffer.putInt(VERSION);
+				world.writeState(this.buffer);
+				this.buffer.flip();
+				return this.buffer;
+			}
+			catch (BufferOverflowException e) {
+				// Should never happen, but grow rather than fail
+				this.buffer = allocate(2 * this.buffer.capacity());
+			}
+		}
+    }
+
+    /**
+     * Method to restore a world from a snapshot. Every part of the
+     * world's state is replaced.
+     * @param the world to restore.
+     * @param the buffer holding the snapshot, from its position. The
+     * position is moved past the snapshot.
+     */
+    public static void read(World world, ByteBuffer buffer) {
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt() != MAGIC) {
+			throw new IllegalArgumentException("Not a snapshot");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Cannot read snapshot version " + version);
+		}
+		world.readState(buffer);
+    }
+
+    /**
+     * Method to create a copy of a world, which can be stepped on
+     * separately from the original.
+     * @param the world.
+     * @return the copy.
+     */
+    public World copy(World world) {
+		AsteroidField field = world.getGame().getAsteroids();
+		World copy = new World(world.getSeed(), field.getCapacity(), field.getMaxCapacity());
+		read(copy, write(world));
+		return copy;
+    }
+
+    /**
+     * Method to create a buffer to write snapshots into.
+     * @param an int holding the size of the buffer in bytes.
+     * @return the buffer.
+     */
+    private static ByteBuffer allocate(int capacity) {
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 
 /**
  * The class which defines the properties of a generic object which
@@ -137,6 +138,14 @@ public class SpaceObject {
 	    this.rotation = rotation;
     }
 
+    /**
+     * Accessor method to get the rotate speed of the object.
+     * @return an int holding the degrees turned each tick.
+     */
+    public int getRotateSpeed() {
+	    return this.rotateSpeed;
+    }
+
     /**
      * Mutator method to set the rotate speed of the object.
      * @return the rotate speed of the space object.
@@ -221,41 +230,70 @@ public class SpaceObject {
      * for a random object. A Random object can only start at the edge
      * of the screen, and has a random velocity which moves the object
      * away from that edge.
+     * @param the random source of the world the object is in.
      */
-    public void initRandomObject() {
+    public void initRandomObject(RandomSource random) {
         // left edge
-        int side = (int)(4* Math.random());
+        int side = (int)(4* random.nextDouble());
         if (side == 1) {
             this.xLocation = 0;
-            this.yLocation = 300* Math.random();
-            this.xVelocity = Math.random();
-            this.yVelocity = 2* Math.random() - 1;
+            this.yLocation = 300* random.nextDouble();
+            this.xVelocity = random.nextDouble();
+            this.yVelocity = 2* random.nextDouble() - 1;
         }
         else {
             // top edge	
             if (side == 2) {
-                this.xLocation = 300* Math.random();
+                this.xLocation = 300* random.nextDouble();
                 this.yLocation = 300;
-                this.xVelocity = 2* Math.random() - 1;
-                this.yVelocity = -1* Math.random();
+                this.xVelocity = 2* random.nextDouble() - 1;
+                this.yVelocity = -1* random.nextDouble();
             }
             else {
                 // right edge
                 if (side == 3) {
                     this.xLocation = 300;
-                    this.yLocation = 300* Math.random();
-                    this.xVelocity = -1* Math.random();
-                    this.yVelocity = 2* Math.random() - 1;
+                    this.yLocation = 300* random.nextDouble();
+                    this.xVelocity = -1* random.nextDouble();
+                    this.yVelocity = 2* random.nextDouble() - 1;
                 }
                 // bottom edge
                 else {
-                    this.xLocation = 300* Math.random();
+                    this.xLocation = 300* random.nextDouble();
                     this.yLocation = 0;
-                    this.xVelocity = 2* Math.random() - 1;
-                    this.yVelocity = Math.random();
+                    this.xVelocity = 2* random.nextDouble() - 1;
+                    this.yVelocity = random.nextDouble();
                 }
             }
         }
-    }		    		
-}
+    }
+
+    /**
+     * Method to write the state of the object into a snapshot.
+     * @param the buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+	    buffer.putDouble(this.xLocation);
+	    buffer.putDouble(this.yLocation);
+	    buffer.putDouble(this.xVelocity);
+	    buffer.putDouble(this.yVelocity);
+	    buffer.putInt(this.rotation);
+	    buffer.putInt(this.rotateSpeed);
+	    buffer.put((byte)(this.exists ? 1 : 0));
+    }
 
+    /**
+     * Method to read the state of the object from a snapshot written
+     * by writeState().
+     * @param the buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+	    this.xLocation = buffer.getDouble();
+	    this.yLocation = buffer.getDouble();
+	    this.xVelocity = buffer.getDouble();
+	    this.yVelocity = buffer.getDouble();
+	    this.rotation = buffer.getInt();
+	    this.rotateSpeed = buffer.getInt();
+	    this.exists = buffer.get() != 0;
+    }
+}
@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 
 /**
  * The class which creates and holds properties for the goodie
@@ -355,6 +356,16 @@ public class SpaceShip extends SpaceObject {
 	    this.rotateDirection = rotateDirection;
     }
 
+    /**
+     * Accessor method to get the degrees the ship turns each tick,
+     * which depends on the direction it is rotating.
+     * Overrides method in parent class.
+     * @return an int holding the degrees turned each tick.
+     */
+    public int getRotateSpeed() {
+        return 6 * this.rotateDirection;
+    }
+
     /**
      * Method to update the rotation property in the parent class.
      * Increments angle of rotation if the ship is rotating clockwise
@@ -384,4 +395,58 @@ public class SpaceShip extends SpaceObject {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Method to write the state of the ship into a snapshot. The flags
+     * are packed into a single byte.
+     * Overrides method in parent class.
+     */
+    public void writeState(ByteBuffer buffer) {
+	    super.writeState(buffer);
+	    int flags = 0;
+	    if (this.accelerating) {
+	        flags |= 1;
+	    }
+	    if (this.maxSpeedReached) {
+	        flags |= 2;
+	    }
+	    if (this.shieldsDamaged) {
+	        flags |= 4;
+	    }
+	    if (this.hyperspace) {
+	        flags |= 8;
+	    }
+	    if (this.laserUpgraded) {
+	        flags |= 16;
+	    }
+	    buffer.put((byte)flags);
+	    buffer.putDouble(this.speed);
+	    buffer.put((byte)this.rotateDirection);
+	    buffer.putInt(this.shieldsRemaining);
+	    buffer.putInt(this.shotsRemaining);
+	    buffer.putInt(this.brakesUsed);
+	    buffer.putInt(this.score);
+	    buffer.putInt(this.i);
+    }
+
+    /**
+     * Method to read the state of the ship from a snapshot.
+     * Overrides method in parent class.
+     */
+    public void readState(ByteBuffer buffer) {
+	    super.readState(buffer);
+	    int flags = buffer.get();
+	    this.accelerating = (flags & 1) != 0;
+	    this.maxSpeedReached = (flags & 2) != 0;
+	    this.shieldsDamaged = (flags & 4) != 0;
+	    this.hyperspace = (flags & 8) != 0;
+	    this.laserUpgraded = (flags & 16) != 0;
+	    this.speed = buffer.getDouble();
+	    this.rotateDirection = buffer.get();
+	    this.shieldsRemaining = buffer.getInt();
+	    this.shotsRemaining = buffer.getInt();
+	    this.brakesUsed = buffer.getInt();
+	    this.score = buffer.getInt();
+	    this.i = buffer.getInt();
+    }
+}
@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+/**
+ * The class which sorts the asteroids into a uniform grid of cells
+ * covering the screen, so that only the asteroids near an object
+ * need to be checked for collisions with it. The grid wraps around
+ * at the edges of the screen in the same way as the objects do.
+ * The grid is rebuilt from the asteroid field once per tick.
+ */
+
+public class SpatialGrid {
+
+    /**
+     * The size of the screen, which the grid covers.
+     */
+    private static final double SIZE = 300;
+
+    /**
+     * The smallest cell size. Twice the radius of the large (12)
+     * asteroids, so that medium (8) and small (6) asteroids fit in
+     * a cell too, and an asteroid can only ever touch an object in
+     * the cells next to the one holding it.
+     */
+    public static final double CELL_SIZE = 2 * 12;
+
+    /**
+     * The number of cells along each side of the grid.
+     */
+    private int cells;
+
+    /**
+     * The size of each cell. Stretched slightly from the cell size
+     * asked for so a whole number of cells covers the screen.
+     */
+    private double cellSize;
+
+    /**
+     * Array holding the place in cellItems at which each cell's
+     * asteroids start. Cell c holds the asteroids from cellStart[c]
+     * up to cellStart[c + 1].
+     */
+    private int[] cellStart;
+
+    /**
+     * Array holding the index of every asteroid, sorted by cell.
+     */
+    private int[] cellItems = new int[0];
+
+    /**
+     * Array holding the cell each asteroid was sorted into.
+     */
+    private int[] itemCell = new int[0];
+
+    /**
+     * Constructor for the grid.
+     * @param a double holding the smallest size of each cell.
+     */
+    public SpatialGrid(double cellSize) {
+		// At least three cells, so the cells next to a cell are
+		// never the same cell wrapped around.
+		this.cells = Math.max(3, (int)(SIZE / cellSize));
+		this.cellSize = SIZE / this.cells;
+		this.cellStart = new int[this.cells * this.cells + 1];
+    }
+
+    /**
+     * Method to sort every asteroid in the field into the cell which
+     * holds its centre. A counting sort, so takes time in proportion
+     * to the number of asteroids.
+     * @param the asteroid field.
+     */
+    public void rebuild(AsteroidField field) {
+		int n = field.getCount();
+		if (n > this.cellItems.length) {
+			// Make room for the field, which has grown
+			this.cellItems = new int[field.getCapacity()];
+			this.itemCell = new int[field.getCapacity()];
+		}
+		int[] start = this.cellStart;
+		Arrays.fill(start, 0);
+		// Count the asteroids in each cell
+		for (int i = 0; i < n; i++) {
+			int cell = cellOf(field.getXLocation(i), field.getYLocation(i));
+			this.itemCell[i] = cell;
+			start[cell + 1]++;
+		}
+		// Work out where each cell starts
+		for (int c = 0; c < start.length - 1; c++) {
+			start[c + 1] += start[c];
+		}
+		// Place the asteroids, using the start of each cell as a
+		// running position which is moved back afterwards.
+		for (int i = 0; i < n; i++) {
+			this.cellItems[start[this.itemCell[i]]++] = i;
+		}
+		for (int c = start.length - 1; c > 0; c--) {
+			start[c] = start[c - 1];
+		}
+		start[0] = 0;
+    }
+
+    /**
+     * Method to find the asteroids which might be within reach of a
+     * point. Every asteroid in a cell which overlaps the square of
+     * the given reach around the point is a candidate, including
+     * cells wrapped around the edges of the screen.
+     * @param the horizontal location of the point.
+     * @param the vertical location of the point.
+     * @param a double holding the reach around the point.
+     * @param an array to hold the index of each candidate. Must be
+     * large enough for every asteroid in the field.
+     * @return the number of candidates found.
+     */
+    public int query(double x, double y, double reach, int[] candidates) {
+		return query(x - reach, y - reach, x + reach, y + reach, candidates);
+    }
+
+    /**
+     * Method to find the asteroids in every cell which overlaps a
+     * box. The box may stretch past the edges of the screen, in
+     * which case the cells on the other side are used.
+     * @param the left edge of the box.
+     * @param the bottom edge of the box.
+     * @param the right edge of the box.
+     * @param the top edge of the box.
+     * @param an array to hold the index of each candidate. Must be
+     * large enough for every asteroid in the field.
+     * @return the number of candidates found.
+     */
+    public int query(double minX, double minY, double maxX, double maxY, int[] candidates) {
+		int x0 = (int)Math.floor(minX / this.cellSize);
+		int x1 = (int)Math.floor(maxX / this.cellSize);
+		int y0 = (int)Math.floor(minY / this.cellSize);
+		int y1 = (int)Math.floor(maxY / this.cellSize);
+		// Never visit the same cell twice
+		if (x1 - x0 >= this.cells) {
+			x0 = 0;
+			x1 = this.cells - 1;
+		}
+		if (y1 - y0 >= this.cells) {
+			y0 = 0;
+			y1 = this.cells - 1;
+		}
+		int found = 0;
+		for (int cy = y0; cy <= y1; cy++) {
+			int row = wrap(cy) * this.cells;
+			for (int cx = x0; cx <= x1; cx++) {
+				int cell = row + wrap(cx);
+				for (int k = this.cellStart[cell]; k < this.cellStart[cell + 1]; k++) {
+					candidates[found++] = this.cellItems[k];
+				}
+			}
+		}
+		return found;
+    }
+
+    /**
+     * Method to get the cell holding a location on screen.
+     * @param the horizontal location.
+     * @param the vertical location.
+     * @return an int holding the index of the cell.
+     */
+    private int cellOf(double x, double y) {
+		int cx = Math.min(this.cells - 1, Math.max(0, (int)(x / this.cellSize)));
+		int cy = Math.min(this.cells - 1, Math.max(0, (int)(y / this.cellSize)));
+		return cy * this.cells + cx;
+    }
+
+    /**
+     * Method to wrap a cell column or row around the edges of the
+     * grid.
+     * @param an int holding the column or row.
+     * @return the column or row within the grid.
+     */
+    private int wrap(int c) {
+		if (c < 0) {
+			return c + this.cells;
+		}
+		if (c >= this.cells) {
+			return c - this.cells;
+		}
+		return c;
+    }
+}
@@ -0,0 +1,318 @@
+import gl4java.GLEnum;
+import gl4java.GLFunc;
+import gl4java.GLUFunc;
+import gl4java.utils.textures.PngTextureLoader;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The class which keeps the textures of the game resident, so that
+ * each PNG is decoded and uploaded once rather than every time the
+ * level changes. Textures are looked up by the name of their file.
+ *
+ * A texture may be pinned, such as the asteroid texture, which is used
+ * on every level and is never deleted. Any other texture, such as a
+ * background, is kept while the textures resident fit in the memory
+ * budget; when a new texture would take them over it, those used least
+ * recently are deleted with glDeleteTextures until they fit again. The
+ * texture last looked up with get() is never deleted to make room, and
+ * a texture loaded ahead of time with preload() only makes room by
+ * deleting textures which have been used, so preloading never throws
+ * out what was preloaded before it.
+ *
+ * Only to be used by the thread which draws, while its GL context is
+ * current.
+ */
+
+public class TextureCache {
+
+    /**
+     * The budget used if none is given: room for every background at
+     * 512 by 512, with some to spare.
+     */
+    public static final long DEFAULT_BUDGET = 8L * 1024 * 1024;
+
+    /**
+     * The GL functions used to upload and delete textures, and the
+     * state cache which must forget any texture deleted.
+     */
+    private GLFunc gl;
+    private GLUFunc glu;
+    private GLStateCache state;
+
+    /**
+     * Where the PNG files are read from.
+     */
+    private URL base;
+
+    /**
+     * The most bytes of texture memory to keep resident, and the bytes
+     * resident now.
+     */
+    private long budget;
+    private long resident;
+
+    /**
+     * The textures resident, by name, from the least recently used to
+     * the most.
+     */
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /**
+     * The entry last looked up with get(), which is in use.
+     */
+    private Entry inUse;
+
+    /**
+     * Counts of the lookups found resident, the textures loaded, and
+     * the textures deleted to make room.
+     */
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * A texture which is resident.
+     */
+    private static class Entry {
+		private int texture;
+		private long bytes;
+		private boolean pinned;
+		private boolean used;
+    }
+
+    /**
+     * Constructor for the cache. The budget is taken from the
+     * asteroids.textureBudget system property, in bytes, if it is set.
+     * @param the GL functions of the canvas.
+     * @param the GLU functions of the canvas.
+     * @param the state cache of the canvas.
+     * @param the URL the PNG files are read from.
+     */
+    public TextureCache(GLFunc gl, GLUFunc glu, GLStateCache state, URL base) {
+		this(gl, glu, state, base, Long.getLong("asteroids.textureBudget", DEFAULT_BUDGET).longValue());
+    }
+
+    /**
+     * Constructor for the cache.
+     * @param the GL functions of the canvas.
+     * @param the GLU functions of the canvas.
+     * @param the state cache of the canvas.
+     * @param the URL the PNG files are read from.
+     * @param a long holding the most bytes of texture memory to keep
+     * resident.
+     */
+    public TextureCache(GLFunc gl, GLUFunc glu, GLStateCache state, URL base, long budget) {
+		this.gl = gl;
+		this.glu = glu;
+		this.state = state;
+		this.base = base;
+		this.budget = budget;
+    }
+
+    /**
+     * Method to get a texture which is kept for as long as the cache,
+     * loading it if it is not resident.
+     * @param a String holding the name of the file.
+     * @return an int holding the texture, or 0 if it could not be
+     * loaded.
+     */
+    public int pin(String name) {
+		Entry entry = lookup(name);
+		if (entry == null) {
+			return 0;
+		}
+		entry.pinned = true;
+		return entry.texture;
+    }
+
+    /**
+     * Method to get a texture, loading it if it is not resident and
+     * deleting those used least recently if it takes the textures
+     * resident over the budget.
+     * @param a String holding the name of the file.
+     * @return an int holding the texture, or 0 if it could not be
+     * loaded.
+     */
+    public int get(String name) {
+		Entry entry = lookup(name);
+		if (entry == null) {
+			return 0;
+		}
+		entry.used = true;
+		this.inUse = entry;
+		evict(null);
+		return entry.texture;
+    }
+
+    /**
+     * Method to load a texture before it is needed, so that it can be
+     * got later without a pause. If there is no room for it without
+     * deleting the texture in use, a pinned texture, or one preloaded
+     * and not yet used, it is not kept.
+     * @param a String holding the name of the file.
+     * @return a boolean which is true if the texture is resident.
+     */
+    public boolean preload(String name) {
+		if (this.entries.containsKey(name)) {
+			return true;
+		}
+		Entry entry = load(name);
+		if (entry == null) {
+			return false;
+		}
+		// Make room among the older textures, or give the new one up
+		evict(entry);
+		if (this.resident + entry.bytes > this.budget) {
+			delete(entry);
+			return false;
+		}
+		this.entries.put(name, entry);
+		this.resident += entry.bytes;
+		return true;
+    }
+
+    /**
+     * Method to find a texture, loading it if it is not resident.
+     * @param a String holding the name of the file.
+     * @return the entry of the texture, or null if it could not be
+     * loaded.
+     */
+    private Entry lookup(String name) {
+		Entry entry = this.entries.get(name);
+		if (entry != null) {
+			this.hits++;
+			return entry;
+		}
+		entry = load(name);
+		if (entry != null) {
+			this.entries.put(name, entry);
+			this.resident += entry.bytes;
+		}
+		return entry;
+    }
+
+    /**
+     * Method to decode a PNG file and upload it as a new texture.
+     * @param a String holding the name of the file.
+     * @return the entry of the texture, or null if it could not be
+     * loaded.
+     */
+    private Entry load(String name) {
+		PngTextureLoader loader = new PngTextureLoader(this.gl, this.glu);
+		loader.readTexture(this.base, name);
+		if (!loader.isOk()) {
+			return null;
+		}
+		this.misses++;
+		int[] texture = new int[1];
+		this.gl.glGenTextures(1, texture);
+		this.state.bindTexture(texture[0]);
+		this.gl.glTexParameteri(GLEnum.GL_TEXTURE_2D, GLEnum.GL_TEXTURE_MAG_FILTER, GLEnum.GL_LINEAR);
+		this.gl.glTexParameteri(GLEnum.GL_TEXTURE_2D, GLEnum.GL_TEXTURE_MIN_FILTER, GLEnum.GL_LINEAR);
+		this.gl.glTexImage2D(GLEnum.GL_TEXTURE_2D, 0, 3, loader.getImageWidth(), loader.getImageHeight(), 0,
+			GLEnum.GL_RGB, GLEnum.GL_UNSIGNED_BYTE, loader.getTexture());
+		Entry entry = new Entry();
+		entry.texture = texture[0];
+		// RGB, three bytes a texel
+		entry.bytes = 3L * loader.getImageWidth() * loader.getImageHeight();
+		return entry;
+    }
+
+    /**
+     * Method to delete the textures used least recently, other than
+     * the one in use and those pinned, until the textures resident fit
+     * in the budget.
+     * @param the entry of a texture which is being preloaded, whose
+     * bytes must also fit and which may only replace textures which
+     * have been used, or null.
+     */
+    private void evict(Entry adding) {
+		long needed = (adding == null) ? 0 : adding.bytes;
+		Iterator<Entry> i = this.entries.values().iterator();
+		while ((this.resident + needed > this.budget) && i.hasNext()) {
+			Entry entry = i.next();
+			if (entry.pinned || (entry == this.inUse) || ((adding != null) && !entry.used)) {
+				continue;
+			}
+			i.remove();
+			this.resident -= entry.bytes;
+			delete(entry);
+			this.evictions++;
+		}
+    }
+
+    /**
+     * Method to delete a texture from GL.
+     * @param the entry of the texture.
+     */
+    private void delete(Entry entry) {
+		this.gl.glDeleteTextures(1, new int[] { entry.texture });
+		this.state.forgetTexture(entry.texture);
+    }
+
+    /**
+     * Method to delete every texture, pinned or not.
+     */
+    public void clear() {
+		for (Entry entry : this.entries.values()) {
+			delete(entry);
+		}
+		this.entries.clear();
+		this.resident = 0;
+		this.inUse = null;
+    }
+
+    /**
+     * Accessor method to get the number of lookups which found the
+     * texture resident.
+     * @return a long holding the number of lookups.
+     */
+    public long getHits() {
+		return this.hits;
+    }
+
+    /**
+     * Accessor method to get the number of textures loaded.
+     * @return a long holding the number of textures.
+     */
+    public long getMisses() {
+		return this.misses;
+    }
+
+    /**
+     * Accessor method to get the number of textures deleted to make
+     * room for others.
+     * @return a long holding the number of textures.
+     */
+    public long getEvictions() {
+		return this.evictions;
+    }
+
+    /**
+     * Accessor method to get the number of textures resident.
+     * @return an int holding the number of textures.
+     */
+    public int getResidentCount() {
+		return this.entries.size();
+    }
+
+    /**
+     * Accessor method to get the bytes of texture memory resident.
+     * @return a long holding the number of bytes.
+     */
+    public long getResidentBytes() {
+		return this.resident;
+    }
+
+    /**
+     * Accessor method to get the most bytes of texture memory kept
+     * resident.
+     * @return a long holding the number of bytes.
+     */
+    public long getBudget() {
+		return this.budget;
+    }
+}
@@ -0,0 +1,402 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The class which times each phase of a tick of the world, and of each
+ * frame drawn, so a dropped frame can be put down to the phase which
+ * took too long. Each thread which steps a world or draws a frame
+ * times its own phases with a Timer, which at the end of the tick adds
+ * the time each phase took into a histogram shared by every thread.
+ * The histograms are lock-free, so worlds stepped on many threads at
+ * once, as in SessionHost.class, can all be profiled.
+ *
+ * Profiling is enabled by setting the system property
+ * asteroids.profile to true, in which case the timings and counters
+ * are published over JMX as asteroids:type=TickProfiler. Otherwise
+ * every method returns straight away. ENABLED is read from the
+ * property when the class is loaded, so it is not a constant to javac
+ * and the calls stay in the bytecode, but as a static final field it
+ * is folded by the JIT, which then drops the calls it has inlined.
+ */
+
+public class TickProfiler implements TickProfilerMBean {
+
+    /**
+     * Flag indicating whether profiling is enabled. Fixed when the
+     * class is loaded.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("asteroids.profile");
+
+    /**
+     * The phases timed. The first four are timed by World.class each
+     * tick, and the rest by the canvas each frame.
+     */
+    public static final int INPUT = 0;
+    public static final int MOVEMENT = 1;
+    public static final int COLLISIONS = 2;
+    public static final int LEVEL = 3;
+    public static final int TEXTURES = 4;
+    public static final int DRAW = 5;
+    public static final int SWAP = 6;
+    private static final String[] PHASES = {
+		"input", "movement", "collisions", "level", "textures", "draw", "swap"
+    };
+
+    /**
+     * The counters. Ticks and frames are counted by the Timer which
+     * times them.
+     */
+    public static final int TICKS = 0;
+    public static final int FRAMES = 1;
+    public static final int COLLISION_TESTS = 2;
+    public static final int SPLITS = 3;
+    public static final int EXPLOSIONS = 4;
+    private static final LongAdder[] counters = {
+		new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()
+    };
+
+    /**
+     * The number of asteroids alive after the latest tick of any
+     * world.
+     */
+    private static volatile long asteroidsAlive;
+
+    /**
+     * The histogram of the times taken by each phase.
+     */
+    private static final Histogram[] histograms = new Histogram[PHASES.length];
+
+    /**
+     * The profiler published over JMX. Holds no state of its own.
+     */
+    private static final TickProfiler instance = new TickProfiler();
+
+    static {
+		for (int p = 0; p < PHASES.length; p++) {
+			histograms[p] = new Histogram();
+		}
+		if (ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(instance,
+					new ObjectName("asteroids:type=TickProfiler"));
+			}
+			catch (JMException e) {
+				System.err.println("Could not publish the tick profiler: " + e);
+			}
+		}
+    }
+
+    /**
+     * The class which records times in buckets which get wider as the
+     * times get longer, so each time is kept to within an eighth of
+     * its value. Times below 16 nanoseconds have a bucket each, and
+     * each power of two above that is split into eight buckets.
+     */
+    private static class Histogram {
+
+		private static final int BUCKETS = 16 + 59 * 8;
+
+		private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private AtomicLong max = new AtomicLong();
+
+		/**
+		 * Method to add a time to the histogram.
+		 * @param a long holding the time in nanoseconds.
+		 */
+		void record(long nanos) {
+			if (nanos < 0) {
+				nanos = 0;
+			}
+			this.counts.incrementAndGet(bucket(nanos));
+			long m;
+			while (nanos > (m = this.max.get())) {
+				if (this.max.compareAndSet(m, nanos)) {
+					break;
+				}
+			}
+		}
+
+		/**
+		 * Method to find the bucket which holds a time.
+		 * @param a long holding the time in nanoseconds.
+		 * @return an int holding the index of the bucket.
+		 */
+		private static int bucket(long nanos) {
+			if (nanos < 16) {
+				return (int)nanos;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+			int fraction = (int)(nanos >>> (exponent - 3)) & 7;
+			return 16 + (exponent - 4) * 8 + fraction;
+		}
+
+		/**
+		 * Method to find the longest time held by a bucket.
+		 * @param an int holding the index of the bucket.
+		 * @return a long holding the time in nanoseconds.
+		 */
+		private static long upperBound(int bucket) {
+			if (bucket < 16) {
+				return bucket;
+			}
+			int exponent = (bucket - 16) / 8 + 4;
+			long fraction = (bucket - 16) % 8;
+			return ((9 + fraction) << (exponent - 3)) - 1;
+		}
+
+		/**
+		 * Method to find a percentile of the times recorded. Times
+		 * recorded while the percentile is found may or may not be
+		 * counted.
+		 * @param a double holding the percentile, from 0 to 1.
+		 * @return a long holding the time in nanoseconds, no more than
+		 * the longest time recorded.
+		 */
+		long percentile(double p) {
+			long total = getCount();
+			if (total == 0) {
+				return 0;
+			}
+			long target = Math.max(1, (long)Math.ceil(p * total));
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				seen += this.counts.get(b);
+				if (seen >= target) {
+					return Math.min(upperBound(b), this.max.get());
+				}
+			}
+			return this.max.get();
+		}
+
+		long getCount() {
+			long total = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				total += this.counts.get(b);
+			}
+			return total;
+		}
+
+		long getMax() {
+			return this.max.get();
+		}
+
+		void reset() {
+			for (int b = 0; b < BUCKETS; b++) {
+				this.counts.set(b, 0);
+			}
+			this.max.set(0);
+		}
+    }
+
+    /**
+     * The class which times the phases of a tick or frame on one
+     * thread. Each is only used by one thread at a time, and adds
+     * nothing to the shared histograms until the tick ends.
+     */
+    public static class Timer {
+
+		/**
+		 * The counter bumped each time a tick is ended.
+		 */
+		private int counter;
+
+		/**
+		 * The time taken by each phase so far this tick, and the phases
+		 * timed this tick.
+		 */
+		private long[] pending = new long[PHASES.length];
+		private int timed;
+
+		/**
+		 * The time the last phase ended.
+		 */
+		private long mark;
+
+		/**
+		 * Constructor for the timer.
+		 * @param an int holding the counter to bump each tick, such as
+		 * TICKS or FRAMES.
+		 */
+		public Timer(int counter) {
+			this.counter = counter;
+		}
+
+		/**
+		 * Method to start a tick.
+		 */
+		public void begin() {
+			if (!ENABLED) {
+				return;
+			}
+			this.timed = 0;
+			this.mark = System.nanoTime();
+		}
+
+		/**
+		 * Method to end a phase, adding the time since the last phase
+		 * ended to its time for this tick. A phase may end many times
+		 * in one tick.
+		 * @param an int holding the phase, such as MOVEMENT.
+		 */
+		public void lap(int phase) {
+			if (!ENABLED) {
+				return;
+			}
+			long now = System.nanoTime();
+			if ((this.timed & (1 << phase)) == 0) {
+				this.pending[phase] = 0;
+				this.timed |= 1 << phase;
+			}
+			this.pending[phase] += now - this.mark;
+			this.mark = now;
+		}
+
+		/**
+		 * Method to end a tick, adding the time each phase timed took
+		 * into its histogram. Phases not timed this tick are left out,
+		 * so that a phase which rarely happens is not swamped by
+		 * ticks where it took no time.
+		 */
+		public void end() {
+			if (!ENABLED) {
+				return;
+			}
+			for (int p = 0; p < PHASES.length; p++) {
+				if ((this.timed & (1 << p)) != 0) {
+					histograms[p].record(this.pending[p]);
+				}
+			}
+			this.timed = 0;
+			counters[this.counter].increment();
+		}
+    }
+
+    /**
+     * Method to add to a counter.
+     * @param an int holding the counter, such as SPLITS.
+     * @param a long holding the amount to add.
+     */
+    public static void count(int counter, long amount) {
+		if (ENABLED) {
+			counters[counter].add(amount);
+		}
+    }
+
+    /**
+     * Mutator method to set the number of asteroids alive after a
+     * tick.
+     * @param an int holding the number of asteroids.
+     */
+    public static void setAsteroidsAlive(int count) {
+		if (ENABLED) {
+			asteroidsAlive = count;
+		}
+    }
+
+    /**
+     * Method to get the profiler published over JMX, to read its
+     * timings and counters directly.
+     * @return the profiler.
+     */
+    public static TickProfiler get() {
+		return instance;
+    }
+
+    public String[] getPhases() {
+		return PHASES.clone();
+    }
+
+    public long[] getP50Nanos() {
+		long[] times = new long[PHASES.length];
+		for (int p = 0; p < PHASES.length; p++) {
+			times[p] = histograms[p].percentile(0.5);
+		}
+		return times;
+    }
+
+    public long[] getP99Nanos() {
+		long[] times = new long[PHASES.length];
+		for (int p = 0; p < PHASES.length; p++) {
+			times[p] = histograms[p].percentile(0.99);
+		}
+		return times;
+    }
+
+    public long[] getMaxNanos() {
+		long[] times = new long[PHASES.length];
+		for (int p = 0; p < PHASES.length; p++) {
+			times[p] = histograms[p].getMax();
+		}
+		return times;
+    }
+
+    public long[] getSamples() {
+		long[] samples = new long[PHASES.length];
+		for (int p = 0; p < PHASES.length; p++) {
+			samples[p] = histograms[p].getCount();
+		}
+		return samples;
+    }
+
+    public long getTicks() {
+		return counters[TICKS].sum();
+    }
+
+    public long getFrames() {
+		return counters[FRAMES].sum();
+    }
+
+    public long getAsteroidsAlive() {
+		return asteroidsAlive;
+    }
+
+    public long getCollisionTests() {
+		return counters[COLLISION_TESTS].sum();
+    }
+
+    public double getCollisionTestsPerTick() {
+		return (double)getCollisionTests() / Math.max(1, getTicks());
+    }
+
+    public long getSplits() {
+		return counters[SPLITS].sum();
+    }
+
+    public long getExplosions() {
+		return counters[EXPLOSIONS].sum();
+    }
+
+    public void reset() {
+		for (int p = 0; p < PHASES.length; p++) {
+			histograms[p].reset();
+		}
+		for (int c = 0; c < counters.length; c++) {
+			counters[c].reset();
+		}
+    }
+
+    public String report() {
+		StringBuffer b = new StringBuffer();
+		b.append("Ticks: " + getTicks() + ", frames: " + getFrames()
+			+ ", asteroids alive: " + getAsteroidsAlive()
+			+ ", collision tests/tick: " + Math.round(getCollisionTestsPerTick())
+			+ ", splits: " + getSplits() + ", explosions: " + getExplosions());
+		long[] p50 = getP50Nanos();
+		long[] p99 = getP99Nanos();
+		long[] max = getMaxNanos();
+		long[] samples = getSamples();
+		for (int p = 0; p < PHASES.length; p++) {
+			if (samples[p] > 0) {
+				b.append("\n  " + PHASES[p] + ": p50 " + p50[p] + " ns"
+					+ ", p99 " + p99[p] + " ns"
+					+ ", max " + max[p] + " ns"
+					+ " (" + samples[p] + " samples)");
+			}
+		}
+		return b.toString();
+    }
+}
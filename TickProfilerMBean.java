@@ -0,0 +1,96 @@
+/**
+ * The management interface of TickProfiler.class, published over JMX
+ * as asteroids:type=TickProfiler when profiling is enabled. Arrays of
+ * timings are indexed in the same order as getPhases().
+ */
+
+public interface TickProfilerMBean {
+
+    /**
+     * Accessor method to get the names of the phases timed.
+     * @return an array of the names.
+     */
+    String[] getPhases();
+
+    /**
+     * Accessor method to get the median time of each phase.
+     * @return an array of times in nanoseconds.
+     */
+    long[] getP50Nanos();
+
+    /**
+     * Accessor method to get the 99th percentile time of each phase.
+     * @return an array of times in nanoseconds.
+     */
+    long[] getP99Nanos();
+
+    /**
+     * Accessor method to get the longest time of each phase.
+     * @return an array of times in nanoseconds.
+     */
+    long[] getMaxNanos();
+
+    /**
+     * Accessor method to get the number of times each phase has been
+     * timed.
+     * @return an array of counts.
+     */
+    long[] getSamples();
+
+    /**
+     * Accessor method to get the number of ticks the world has been
+     * stepped.
+     * @return a long holding the number of ticks.
+     */
+    long getTicks();
+
+    /**
+     * Accessor method to get the number of frames drawn.
+     * @return a long holding the number of frames.
+     */
+    long getFrames();
+
+    /**
+     * Accessor method to get the number of asteroids alive after the
+     * latest tick.
+     * @return a long holding the number of asteroids.
+     */
+    long getAsteroidsAlive();
+
+    /**
+     * Accessor method to get the number of asteroids tested for
+     * collisions.
+     * @return a long holding the number of tests.
+     */
+    long getCollisionTests();
+
+    /**
+     * Accessor method to get the mean number of asteroids tested for
+     * collisions each tick.
+     * @return a double holding the number of tests.
+     */
+    double getCollisionTestsPerTick();
+
+    /**
+     * Accessor method to get the number of asteroids split.
+     * @return a long holding the number of splits.
+     */
+    long getSplits();
+
+    /**
+     * Accessor method to get the number of explosions started.
+     * @return a long holding the number of explosions.
+     */
+    long getExplosions();
+
+    /**
+     * Method to clear every timing and counter.
+     */
+    void reset();
+
+    /**
+     * Method to describe every timing and counter.
+     * @return a String holding the description.
+     */
+    String report();
+}
@@ -0,0 +1,90 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The class which checks one object for collisions against many
+ * asteroids using the vector API, so several asteroids are checked
+ * with each processor instruction. Gives the same results as
+ * BatchCollider.class, which it is loaded in place of.
+ *
+ * Needs the incubating vector module to compile and run:
+ *   javac --add-modules jdk.incubator.vector VectorBatchCollider.java
+ *   java --add-modules jdk.incubator.vector ...
+ * Without it, BatchCollider.get() falls back to checking one asteroid
+ * at a time.
+ */
+
+public class VectorBatchCollider extends BatchCollider {
+
+    /**
+     * The widest double vector the processor supports.
+     */
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * An int vector with the same number of lanes, used to load the
+     * radius of each asteroid.
+     */
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED
+		.withShape(VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    /**
+     * Method to find every asteroid which collides with an object.
+     * Overrides method in parent class.
+     */
+    public int collide(double px, double py, int probeRadius, double[] x, double[] y,
+		int[] radius, int count, int[] hits) {
+		int lanes = DOUBLES.length();
+		int end = DOUBLES.loopBound(count);
+		DoubleVector probeX = DoubleVector.broadcast(DOUBLES, px);
+		DoubleVector probeY = DoubleVector.broadcast(DOUBLES, py);
+		DoubleVector yReach = DoubleVector.broadcast(DOUBLES, probeRadius);
+		int found = 0;
+		int i = 0;
+		for (; i < end; i += lanes) {
+			DoubleVector dx = wrap(DoubleVector.fromArray(DOUBLES, x, i).sub(probeX));
+			DoubleVector dy = wrap(DoubleVector.fromArray(DOUBLES, y, i).sub(probeY));
+			DoubleVector reach = yReach;
+			if (radius != null) {
+				reach = reach.add((DoubleVector)IntVector.fromArray(INTS, radius, i)
+					.convertShape(VectorOperators.I2D, DOUBLES, 0));
+			}
+			VectorMask<Double> hit = dx.abs().lt(reach.add(1))
+				.and(dy.abs().lt(reach));
+			// Write out the index of each lane which hit
+			long bits = hit.toLong();
+			while (bits != 0) {
+				hits[found++] = i + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+			}
+		}
+		// Check the asteroids left over one at a time
+		for (; i < count; i++) {
+			int reach = probeRadius;
+			if (radius != null) {
+				reach += radius[i];
+			}
+			double dx = wrap(x[i] - px);
+			double dy = wrap(y[i] - py);
+			if ((Math.abs(dx) < reach + 1) && (Math.abs(dy) < reach)) {
+				hits[found++] = i;
+			}
+		}
+		return found;
+    }
+
+    /**
+     * Method to wrap the distance in every lane, so that it is never
+     * more than half the width of the screen.
+     * @param the distances along one axis.
+     * @return the shortest distances along that axis.
+     */
+    private static DoubleVector wrap(DoubleVector distance) {
+		distance = distance.blend(distance.sub(300), distance.compare(VectorOperators.GT, 150));
+		return distance.blend(distance.add(300), distance.compare(VectorOperators.LT, -150));
+    }
+}
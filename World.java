@@ -0,0 +1,518 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The class which holds the complete state of a game in progress and
+ * advances it one fixed time step (tick) at a time. Contains no AWT
+ * or OpenGL code, so a game can be run headless, by bots, servers or
+ * tests, as fast as the processor allows. AstApplication.class steps
+ * the world at a fixed rate and only reads its state to draw it.
+ */
+
+public class World {
+
+    /**
+     * The number of ticks the world is advanced by every second
+     * when a game is played in real time.
+     */
+    public static final int TICKS_PER_SECOND = 30;
+
+    /**
+     * The length of one tick in nanoseconds.
+     */
+    public static final long TICK_NANOS = 1000000000L / TICKS_PER_SECOND;
+
+    /**
+     * Control bits which make up the control state passed into
+     * step(). LEFT, RIGHT and UP are held down, FIRE, BRAKE and
+     * TELEPORT only need to be set for the tick they happen on.
+     */
+    public static final int LEFT = 1;
+    public static final int RIGHT = 2;
+    public static final int UP = 4;
+    public static final int FIRE = 8;
+    public static final int BRAKE = 16;
+    public static final int TELEPORT = 32;
+
+    /**
+     * The number of ticks the shield is shown for after the ship
+     * has been hit.
+     */
+    private static final int SHIELD_TICKS = 10;
+
+    /**
+     * The goodie ship object. Starting position is centre of screen.
+     */
+    private SpaceShip ship = new SpaceShip(150.0, 150.0);
+
+    /**
+     * The seed the world was created with.
+     */
+    private long seed;
+
+    /**
+     * The random source every random choice in the world is taken
+     * from, so the seed fully determines the game.
+     */
+    private RandomSource random;
+
+    /**
+     * The baddie ship. Baddie ship appears at random times.
+     */
+    private EnemyShip baddie;
+
+    /**
+     * The power up object. Power up object appears at random times
+     * and takes different forms.
+     */
+    private PowerUp p;
+
+    /**
+     * The collision detector, which is polled to check for relevant
+     * object collisions.
+     */
+    private CollisionDetector cd = new CollisionDetector();
+
+    /**
+     * The laser object which appears when the goodie ship fires.
+     */
+    private Laser goodieLaser = new Laser(0.0, 0.0);
+
+    /**
+     * The laser object which appears when the baddie ship fires.
+     */
+    private Laser baddieLaser = new Laser(0.0, 0.0);
+
+    /**
+     * The game object which creates the asteroids at the beginning
+     * of each level, and also manages the appearance of random space
+     * objects.
+     */
+    private Game game;
+
+    /**
+     * The number of ticks the world has been advanced by.
+     */
+    private long tick;
+
+    /**
+     * Counts the ticks the shield has been shown for since the ship
+     * was last hit.
+     */
+    private int shieldTimer;
+
+    /**
+     * Flag indicating whether the ship was in hyperspace during the
+     * last tick. Held here since SpaceShip.getHyperspace() advances
+     * the hyperspace timer each time it is called.
+     */
+    private boolean hyperspace;
+
+    /**
+     * Flag which is set once the ship has been destroyed and its
+     * explosion has finished.
+     */
+    private boolean gameOver;
+
+    /**
+     * Times each phase of a tick, if profiling is enabled.
+     */
+    private TickProfiler.Timer timer = new TickProfiler.Timer(TickProfiler.TICKS);
+
+    /**
+     * Constructor for a world with a random seed and an asteroid
+     * field of the default size.
+     */
+    public World() {
+		this(new RandomSource().nextLong());
+    }
+
+    /**
+     * Constructor for a world with an asteroid field of the default
+     * size.
+     * @param a long holding the seed.
+     */
+    public World(long seed) {
+		this(seed, Game.DEFAULT_CAPACITY, AsteroidField.MAX_CAPACITY);
+    }
+
+    /**
+     * Constructor for a world with an asteroid field of a given size.
+     * Two worlds created with the same seed and stepped with the same
+     * controls play exactly the same game.
+     * @param a long holding the seed.
+     * @param an int holding the number of asteroids the field is
+     * created to hold.
+     * @param an int holding the most asteroids the field can grow to
+     * hold.
+     */
+    public World(long seed, int capacity, int maxCapacity) {
+		this.seed = seed;
+		this.random = new RandomSource(seed);
+		this.baddie = new EnemyShip(random);
+		this.p = new PowerUp(random);
+		this.game = new Game(ship, cd, random, capacity, maxCapacity);
+    }
+
+    /**
+     * Method to advance the world by one tick. Moves every object,
+     * checks for collisions and levels up when all asteroids have
+     * been destroyed.
+     * @param an int holding the control bits held or pressed during
+     * this tick.
+     */
+    public void step(int controls) {
+		// Nothing more happens once the game is over
+		if (this.gameOver) {
+			return;
+		}
+		this.tick++;
+		timer.begin();
+		// Check players ship has not been destroyed
+		if (ship.getExists()) {
+			applyControls(ship, goodieLaser, random, controls);
+			timer.lap(TickProfiler.INPUT);
+			// Update ship movement and rotation
+			ship.updateXLocation();
+			ship.updateYLocation();
+			ship.updateRotation();
+			// Let the shield fade out after a hit
+			this.shieldTimer = updateShield(ship, this.shieldTimer);
+			this.hyperspace = ship.getHyperspace();
+			// Check to see if goodie ship is firing
+			if (goodieLaser.getExists()) {
+				// Update location of goodie laser
+				goodieLaser.updateXLocation();
+				goodieLaser.updateYLocation();
+				// Get rid of laser if it has travelled distance of screen
+				goodieLaser.setExists(goodieLaser.checkDistance());
+			}
+			// Randomly generate the enemy ship
+			game.showEnemyShip(baddie);
+			if (baddie.getExists()) {
+				// Update the location of the baddie ship
+				baddie.updateXLocation();
+				baddie.updateYLocation();
+				// Spin the baddie ship continuously
+				baddie.updateRotation();
+				// Randomly fire the baddie laser
+				baddie.generateFiring(baddieLaser, ship);
+				if (baddieLaser.getExists()) {
+					// Update the location of the baddie laser
+					baddieLaser.updateXLocation();
+					baddieLaser.updateYLocation();
+					// Get rid of laser if it had travelled distance of screen
+					baddieLaser.setExists(baddieLaser.checkDistance());
+				}
+				timer.lap(TickProfiler.MOVEMENT);
+				// Check for all collisions between the goodie ship,
+				// the baddie ship and the two ships' lasers.
+				cd.checkCollisions(baddie, goodieLaser, baddieLaser, ship);
+				timer.lap(TickProfiler.COLLISIONS);
+			}
+			// Randomly generate powerups
+			game.showPowerUp(p);
+			if (p.getExists()) {
+				// Update the location of the powerup
+				p.updateXLocation();
+				p.updateYLocation();
+				timer.lap(TickProfiler.MOVEMENT);
+				// Check for collision between the ship and the powerup
+				cd.checkCollisions(ship, p);
+				timer.lap(TickProfiler.COLLISIONS);
+			}
+			// Move the asteroids and check them for collisions
+			game.getAsteroids().update();
+			timer.lap(TickProfiler.MOVEMENT);
+			cd.checkCollisions(ship, goodieLaser, game);
+			timer.lap(TickProfiler.COLLISIONS);
+			// Checks to see if the level should be increased
+			game.checkLevel();
+			timer.lap(TickProfiler.LEVEL);
+			cd.updateExplosion();
+		}
+		else { // Ship has been destroyed
+			// Explode the ship!
+			cd.startExplosion(ship.getXLocation(), ship.getYLocation(), 3);
+			cd.updateExplosion();
+			// Game is over when the explosion has finished
+			if (!cd.getExplosionExist()) {
+				this.gameOver = true;
+			}
+		}
+		// Shock wave only appears when seismic laser has been obtained
+		if (cd.getShockWaveExist()) {
+			cd.updateShockWave();
+			// Stop the laser along with the shock wave
+			if (!cd.getShockWaveExist()) {
+				goodieLaser.setExists(false);
+			}
+		}
+		timer.lap(TickProfiler.MOVEMENT);
+		timer.end();
+		TickProfiler.setAsteroidsAlive(game.getAsteroidsRemaining());
+    }
+
+    /**
+     * Method to act on the control bits for the current tick. The
+     * ship cannot rotate whilst accelerating, or accelerate whilst
+     * rotating. Static so that Arena.class can control many ships.
+     * @param the ship.
+     * @param the ship's laser.
+     * @param the random source used to teleport.
+     * @param an int holding the control bits.
+     */
+    static void applyControls(SpaceShip ship, Laser goodieLaser, RandomSource random,
+		int controls) {
+		// Stop accelerating when up is released
+		if ((controls & UP) == 0) {
+			ship.setAccelerating(false);
+		}
+		// Stop rotating when left and right are released
+		if ((controls & (LEFT | RIGHT)) == 0) {
+			ship.setRotateDirection(0);
+		}
+		// Check up is not being pressed
+		if (!ship.getAccelerating()) {
+			if ((controls & RIGHT) != 0) {
+				ship.setRotateDirection(1);
+			}
+			else {
+				if ((controls & LEFT) != 0) {
+					ship.setRotateDirection(-1);
+				}
+			}
+		}
+		// Check left or right are not being pressed
+		if (((controls & UP) != 0) && (ship.getRotateDirection() == 0)) {
+			ship.setAccelerating(true);
+		}
+		if ((controls & FIRE) != 0) {
+			fire(ship, goodieLaser);
+		}
+		if ((controls & BRAKE) != 0) {
+			brake(ship);
+		}
+		if ((controls & TELEPORT) != 0) {
+			teleport(ship, random);
+		}
+    }
+
+    /**
+     * Method to fire the goodie laser in the direction the ship is
+     * pointing, if it is not already being fired.
+     * @param the ship.
+     * @param the ship's laser.
+     */
+    private static void fire(SpaceShip ship, Laser goodieLaser) {
+		// Check laser is not already being fired
+		if (!goodieLaser.getExists()) {
+			goodieLaser.setExists(true);
+			// Point laser in direction of ship
+			goodieLaser.setRotation(ship.getRotation());
+			goodieLaser.laserFire(ship.getXLocation(), ship.getYLocation());
+			if (ship.getLaserUpgraded()) {
+				// Reduce number of seismic lasers remaining
+				ship.setShotsRemaining(ship.getShotsRemaining() - 1);
+			}
+		}
+    }
+
+    /**
+     * Method to use one of the ships emergency brakes.
+     * @param the ship.
+     */
+    private static void brake(SpaceShip ship) {
+		if (ship.getBrakesUsed() < 2) {
+			// Avoids wasting emergency brake if ship is not moving
+			if (ship.getXVelocity() == 0 && ship.getYVelocity() != 0) {
+				// Stop ship dead
+				ship.setXVelocity(0);
+				ship.setYVelocity(0);
+				ship.setBrakesUsed(ship.getBrakesUsed() + 1);
+			}
+		}
+    }
+
+    /**
+     * Method to move the ship to a random location and stop it.
+     * @param the ship.
+     * @param the random source.
+     */
+    private static void teleport(SpaceShip ship, RandomSource random) {
+		ship.setXLocation(300* random.nextDouble());
+		ship.setYLocation(300* random.nextDouble());
+		ship.setXVelocity(0);
+		ship.setYVelocity(0);
+    }
+
+    /**
+     * Method to count the ticks the shield has been shown for, and
+     * stop showing it once it has faded out.
+     * @param the ship.
+     * @param an int holding the ticks the shield has been shown for.
+     * @return an int holding the new number of ticks.
+     */
+    static int updateShield(SpaceShip ship, int shieldTimer) {
+		if (ship.getShieldsDamaged()) {
+			shieldTimer++;
+			if (shieldTimer > SHIELD_TICKS) {
+				shieldTimer = 0;
+				// Set flag to false so shields can stop being shown
+				ship.setShieldsDamaged(false);
+			}
+		}
+		return shieldTimer;
+    }
+
+    /**
+     * Accessor method to get the seed the world was created with.
+     * @return a long holding the seed.
+     */
+    public long getSeed() {
+		return this.seed;
+    }
+
+    /**
+     * Accessor method to get the random source of the world.
+     * @return the random source.
+     */
+    public RandomSource getRandom() {
+		return this.random;
+    }
+
+    /**
+     * Accessor method to get the number of ticks the world has been
+     * advanced by.
+     * @return a long holding the number of ticks.
+     */
+    public long getTick() {
+		return this.tick;
+    }
+
+    /**
+     * Accessor method to get the number of ticks the shield has been
+     * shown for since the ship was last hit.
+     * @return an int holding the number of ticks.
+     */
+    public int getShieldTimer() {
+		return this.shieldTimer;
+    }
+
+    /**
+     * Accessor method to get the flag indicating whether the ship
+     * was in hyperspace during the last tick.
+     * @return the flag indicating hyperspace.
+     */
+    public boolean getHyperspace() {
+		return this.hyperspace;
+    }
+
+    /**
+     * Accessor method to get the flag indicating the ship has been
+     * destroyed and its explosion has finished.
+     * @return true if the game is over.
+     */
+    public boolean getGameOver() {
+		return this.gameOver;
+    }
+
+    /**
+     * Accessor method to get the goodie ship.
+     * @return the goodie ship.
+     */
+    public SpaceShip getShip() {
+		return this.ship;
+    }
+
+    /**
+     * Accessor method to get the baddie ship.
+     * @return the baddie ship.
+     */
+    public EnemyShip getBaddie() {
+		return this.baddie;
+    }
+
+    /**
+     * Accessor method to get the powerup.
+     * @return the powerup.
+     */
+    public PowerUp getPowerUp() {
+		return this.p;
+    }
+
+    /**
+     * Accessor method to get the collision detector.
+     * @return the collision detector.
+     */
+    public CollisionDetector getCollisionDetector() {
+		return this.cd;
+    }
+
+    /**
+     * Accessor method to get the goodie laser.
+     * @return the goodie laser.
+     */
+    public Laser getGoodieLaser() {
+		return this.goodieLaser;
+    }
+
+    /**
+     * Accessor method to get the baddie laser.
+     * @return the baddie laser.
+     */
+    public Laser getBaddieLaser() {
+		return this.baddieLaser;
+    }
+
+    /**
+     * Accessor method to get the game.
+     * @return the game.
+     */
+    public Game getGame() {
+		return this.game;
+    }
+
+    /**
+     * Method to write the state of the whole world into a snapshot.
+     * Use Snapshot.class rather than calling this directly, so that
+     * the snapshot is versioned.
+     * @param the buffer to write to.
+     */
+    public void writeState(ByteBuffer buffer) {
+		buffer.putLong(this.seed);
+		buffer.putLong(this.tick);
+		buffer.putInt(this.shieldTimer);
+		buffer.put((byte)(this.hyperspace ? 1 : 0));
+		buffer.put((byte)(this.gameOver ? 1 : 0));
+		random.writeState(buffer);
+		ship.writeState(buffer);
+		baddie.writeState(buffer);
+		p.writeState(buffer);
+		goodieLaser.writeState(buffer);
+		baddieLaser.writeState(buffer);
+		cd.writeState(buffer);
+		game.writeState(buffer);
+    }
+
+    /**
+     * Method to read the state of the whole world from a snapshot
+     * written by writeState(). Afterwards the world carries on exactly
+     * as the world the snapshot was taken of.
+     * @param the buffer to read from.
+     */
+    public void readState(ByteBuffer buffer) {
+		this.seed = buffer.getLong();
+		this.tick = buffer.getLong();
+		this.shieldTimer = buffer.getInt();
+		this.hyperspace = buffer.get() != 0;
+		this.gameOver = buffer.get() != 0;
+		random.readState(buffer);
+		ship.readState(buffer);
+		baddie.readState(buffer);
+		p.readState(buffer);
+		goodieLaser.readState(buffer);
+		baddieLaser.readState(buffer);
+		cd.readState(buffer);
+		game.readState(buffer);
+    }
+}